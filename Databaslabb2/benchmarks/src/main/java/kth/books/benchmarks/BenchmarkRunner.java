@@ -0,0 +1,60 @@
+package kth.books.benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the benchmarks with allocation profiling and writes the results as JSON.
+ * <p>
+ * This is the same as running JMH with {@code -prof gc -rf json -rff results/latest.json}, so that
+ * bytes allocated per operation ({@code gc.alloc.rate.norm}) are always reported next to the time
+ * per operation. Any other JMH command line options, such as a benchmark filter or
+ * {@code -p catalogSize=1000}, are passed through, and listing options such as {@code -l} behave as in JMH.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args JMH command line options
+     * @throws CommandLineOptionException if the options are invalid
+     * @throws RunnerException if a benchmark fails
+     * @throws IOException if the results directory cannot be created
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        Path result = Path.of(System.getProperty("books.bench.result", "results/latest.json"));
+        if (result.getParent() != null) {
+            Files.createDirectories(result.getParent());
+        }
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .build();
+        new Runner(options).run();
+    }
+}
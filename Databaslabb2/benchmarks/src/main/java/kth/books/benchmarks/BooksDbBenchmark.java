@@ -0,0 +1,185 @@
+package kth.books.benchmarks;
+
+import com.mongodb.client.MongoDatabase;
+import kth.books.DbConnect;
+import kth.books.model.Book;
+import kth.books.model.BooksDbImpl;
+import kth.books.model.BooksDbInterface;
+import kth.books.model.BookRow;
+import kth.books.model.EmbeddedBooksDb;
+import kth.books.model.InMemoryBooksDb;
+import kth.books.model.IndexManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the {@link BooksDbImpl} operations the application uses most, at several catalog sizes,
+ * and of the same operations on {@link EmbeddedBooksDb}, which stores each book as one document, and on
+ * {@link InMemoryBooksDb}, which needs no server.
+ * <p>
+ * The MongoDB schemas run against the server at {@code books.db.url} (a local mongod by default), in
+ * the separate {@code BooksBenchmark} database, which is dropped and reseeded by {@link CatalogSeeder}
+ * at the start of each trial. Seeding drops the indexes with the collections, so they are rebuilt before
+ * the trial starts rather than in the background. Use {@code -p schema=inmemory} to run without a server.
+ * The write benchmarks add books and ratings to the catalog while they run, so the catalog grows
+ * somewhat during a measurement.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dbooks.db.name=BooksBenchmark")
+public class BooksDbBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int catalogSize;
+
+    @Param({"normalized", "embedded", "inmemory"})
+    private String schema;
+
+    private BooksDbInterface booksDb;
+
+    /**
+     * Seeds the catalog, opens the database and waits for its indexes to be built.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("inmemory".equals(schema)) {
+            booksDb = new InMemoryBooksDb();
+            CatalogSeeder.seed(booksDb, catalogSize);
+            return;
+        }
+        boolean embedded = "embedded".equals(schema);
+        CatalogSeeder.seed(catalogSize, embedded);
+        booksDb = embedded ? new EmbeddedBooksDb() : new BooksDbImpl();
+        MongoDatabase database = DbConnect.getDatabase();
+        try {
+            // Text searches fail until book_text exists, so the indexes must not be built during warmup.
+            for (String problem : new IndexManager(database, embedded).ensureIndexes()) {
+                System.err.println("Index drift: " + problem);
+            }
+        } finally {
+            DbConnect.release();
+        }
+    }
+
+    /**
+     * Closes the database.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        booksDb.close();
+    }
+
+    /**
+     * Loads the whole catalog without details.
+     *
+     * @return the books
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Book> getAllBooks() {
+        return booksDb.getAllBooks();
+    }
+
+    /**
+     * Searches for one of the title topics with the configured search engine.
+     *
+     * @return the matching books
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Book> searchBooks() {
+        return booksDb.searchBooks(CatalogSeeder.TOPICS[ThreadLocalRandom.current().nextInt(CatalogSeeder.TOPICS.length)]);
+    }
+
+    /**
+     * Loads a page of 50 random books with authors, genres and ratings, as the detail prefetcher does.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> getBookRowsWithDetails() {
+        List<Integer> bookIds = new ArrayList<>(50);
+        for (int i = 0; i < 50; i++) {
+            bookIds.add(randomBookId());
+        }
+        return booksDb.getBookRowsWithDetails(bookIds);
+    }
+
+    /**
+     * Looks up the authors of a random book.
+     *
+     * @return the authors
+     */
+    @Benchmark
+    public Object getAuthorsForBook() {
+        return booksDb.getAuthorsForBook(randomBookId());
+    }
+
+    /**
+     * Looks up the genres of a random book.
+     *
+     * @return the genres
+     */
+    @Benchmark
+    public Object getGenresForBook() {
+        return booksDb.getGenresForBook(randomBookId());
+    }
+
+    /**
+     * Looks up the ratings of a random book.
+     *
+     * @return the ratings
+     */
+    @Benchmark
+    public Object getRatingsForBook() {
+        return booksDb.getRatingsForBook(randomBookId());
+    }
+
+    /**
+     * Adds a new book.
+     *
+     * @return the ID assigned to the book
+     */
+    @Benchmark
+    public int addBook() {
+        return booksDb.addBook(new Book(0, "9780000000000", "Benchmark Book", "2024-01-01", ""));
+    }
+
+    /**
+     * Adds a rating to a random book.
+     */
+    @Benchmark
+    public void addRatingToBook() {
+        booksDb.addRatingToBook(randomBookId(), 1 + ThreadLocalRandom.current().nextInt(5));
+    }
+
+    /**
+     * Picks a random book from the seeded catalog.
+     *
+     * @return the ID of the book
+     */
+    private int randomBookId() {
+        return 1 + ThreadLocalRandom.current().nextInt(catalogSize);
+    }
+}
@@ -0,0 +1,149 @@
+package kth.books.benchmarks;
+
+import kth.books.model.BookRow;
+import kth.books.model.BookRowCodec;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding raw BSON into rows through {@link Document}s with decoding it directly with
+ * {@link BookRowCodec}, without a server, so the difference in time and bytes allocated per operation is
+ * not hidden by network latency. Each operation decodes a whole result set: plain Book documents for
+ * {@code getAllBooks}, and documents from the book details pipeline for {@code searchBooks}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BsonDecodeBenchmark {
+    private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+    @Param({"1000", "10000"})
+    private int resultSize;
+
+    private final DocumentCodec documentCodec = new DocumentCodec();
+    private final BookRowCodec bookRowCodec = new BookRowCodec();
+    private List<byte[]> books;
+    private List<byte[]> booksWithDetails;
+
+    /**
+     * Encodes the result sets the benchmarks decode.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        books = new ArrayList<>();
+        booksWithDetails = new ArrayList<>();
+        for (int bookId = 1; bookId <= resultSize; bookId++) {
+            Document book = new Document("_id", new org.bson.types.ObjectId())
+                    .append("book_id", bookId)
+                    .append("ISBN", String.format("978%010d", bookId))
+                    .append("title", "Book " + bookId + " about " + CatalogSeeder.TOPICS[bookId % CatalogSeeder.TOPICS.length])
+                    .append("publication_date", (1950 + bookId % 75) + "-01-01")
+                    .append("rating", "")
+                    .append("rating_summary", new Document("count", 3).append("sum", 11).append("min", 3)
+                            .append("max", 5).append("latest", 4).append("latest_date", "2024-01-03"))
+                    .append("updated_at", new Date());
+            books.add(encode(book));
+            booksWithDetails.add(encode(new Document(book)
+                    .append("authors", List.of(
+                            new Document("author_id", bookId * 2).append("first_name", "First").append("last_name", "Last"),
+                            new Document("author_id", bookId * 2 + 1).append("first_name", "Other").append("last_name", "Writer")))
+                    .append("genres", List.of(new Document("genre_id", 1 + bookId % 7).append("name", "Fantasy")))));
+        }
+    }
+
+    /**
+     * Decodes plain Book documents into Documents and copies them into rows.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> getAllBooksViaDocument() {
+        return viaDocument(books);
+    }
+
+    /**
+     * Decodes plain Book documents straight into rows.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> getAllBooksViaCodec() {
+        return viaCodec(books);
+    }
+
+    /**
+     * Decodes details pipeline results into Documents and copies them into rows.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> searchBooksViaDocument() {
+        return viaDocument(booksWithDetails);
+    }
+
+    /**
+     * Decodes details pipeline results straight into rows.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> searchBooksViaCodec() {
+        return viaCodec(booksWithDetails);
+    }
+
+    private List<BookRow> viaDocument(List<byte[]> encoded) {
+        List<BookRow> rows = new ArrayList<>(encoded.size());
+        for (byte[] bytes : encoded) {
+            try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bytes))) {
+                rows.add(DocumentMapping.toBookRow(documentCodec.decode(reader, DECODER_CONTEXT)));
+            }
+        }
+        return rows;
+    }
+
+    private List<BookRow> viaCodec(List<byte[]> encoded) {
+        List<BookRow> rows = new ArrayList<>(encoded.size());
+        for (byte[] bytes : encoded) {
+            try (BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bytes))) {
+                rows.add(bookRowCodec.decode(reader, DECODER_CONTEXT));
+            }
+        }
+        return rows;
+    }
+
+    private byte[] encode(Document document) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+            documentCodec.encode(writer, document, EncoderContext.builder().build());
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,218 @@
+package kth.books.benchmarks;
+
+import com.mongodb.client.MongoDatabase;
+import kth.books.DbConnect;
+import kth.books.model.Author;
+import kth.books.model.AuthorResolver;
+import kth.books.model.Book;
+import kth.books.model.BooksDbInterface;
+import kth.books.model.InMemoryBooksDb;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Fills the benchmark database with a synthetic catalog of a given size.
+ * <p>
+ * Every book has one or two authors, one or two of the seven genres and three ratings, and its
+ * title contains one of a fixed set of topics, so that a search for a topic matches about one
+ * book in eight. The documents are written directly with batched inserts, in the same layout
+ * that {@code BooksDbImpl} or {@code EmbeddedBooksDb} writes, so seeding a large catalog takes
+ * seconds rather than minutes. A backend that needs no server, such as {@link InMemoryBooksDb},
+ * is seeded with the same catalog through its own methods instead.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public final class CatalogSeeder {
+    /**
+     * The topics that appear in the book titles.
+     */
+    public static final String[] TOPICS = {"Java", "Databases", "Dragons", "Space", "Murder", "Love", "Ghosts", "History"};
+
+    private static final String[] COLLECTIONS = {"Book", "Author", "BookAuthor", "BookGenre", "BookRating", "Counters", "BookTombstone", "RatingBucket"};
+    private static final int GENRE_COUNT = 7;
+    private static final int BATCH_SIZE = 1_000;
+
+    private CatalogSeeder() {
+    }
+
+    /**
+     * Drops the catalog collections and inserts a new catalog with book IDs 1 to {@code bookCount}
+     * in the normalized schema.
+     *
+     * @param bookCount the number of books to insert
+     */
+    public static void seed(int bookCount) {
+        seed(bookCount, false);
+    }
+
+    /**
+     * Drops the catalog collections and inserts a new catalog with book IDs 1 to {@code bookCount}.
+     *
+     * @param bookCount the number of books to insert
+     * @param embedded whether to write the embedded-document schema instead of the normalized one
+     */
+    public static void seed(int bookCount, boolean embedded) {
+        MongoDatabase database = DbConnect.getDatabase();
+        try {
+            for (String collection : COLLECTIONS) {
+                database.getCollection(collection).drop();
+            }
+
+            Batch books = new Batch(database, "Book");
+            Batch authors = new Batch(database, "Author");
+            Batch bookAuthors = new Batch(database, "BookAuthor");
+            Batch bookGenres = new Batch(database, "BookGenre");
+            Batch ratings = new Batch(database, "BookRating");
+            Batch buckets = new Batch(database, "RatingBucket");
+
+            int authorId = 0;
+            int ratingId = 0;
+            for (int bookId = 1; bookId <= bookCount; bookId++) {
+                List<Document> authorRefs = new ArrayList<>();
+                int authorCount = 1 + bookId % 2;
+                for (int i = 0; i < authorCount; i++) {
+                    authorId++;
+                    Document author = new Document("author_id", authorId)
+                            .append("first_name", "First" + authorId)
+                            .append("last_name", "Last" + authorId);
+                    if (embedded) {
+                        authorRefs.add(new Document(author));
+                    } else {
+                        bookAuthors.add(new Document("book_id", bookId).append("author_id", authorId));
+                    }
+                    authors.add(author.append("name_key", AuthorResolver.nameKey(
+                            author.getString("first_name"), author.getString("last_name"))));
+                }
+
+                List<Integer> genreIds = new ArrayList<>();
+                genreIds.add(1 + bookId % GENRE_COUNT);
+                if (bookId % 3 == 0) {
+                    genreIds.add(1 + (bookId + 1) % GENRE_COUNT);
+                }
+                List<Document> genreRefs = new ArrayList<>();
+                for (int genreId : genreIds) {
+                    if (embedded) {
+                        genreRefs.add(new Document("genre_id", genreId));
+                    } else {
+                        bookGenres.add(new Document("book_id", bookId).append("genre_id", genreId));
+                    }
+                }
+
+                int sum = 0;
+                int min = 5;
+                int max = 1;
+                int latest = 0;
+                List<Document> bucketRatings = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    int value = 1 + (bookId + i) % 5;
+                    ratingId++;
+                    Document rating = new Document("rating_id", ratingId)
+                            .append("value", value)
+                            .append("rating_date", "2024-01-0" + (i + 1));
+                    if (embedded) {
+                        bucketRatings.add(rating);
+                    } else {
+                        ratings.add(rating.append("book_id", bookId));
+                    }
+                    sum += value;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    latest = value;
+                }
+
+                if (embedded) {
+                    buckets.add(new Document("book_id", bookId)
+                            .append("count", bucketRatings.size())
+                            .append("ratings", bucketRatings));
+                }
+
+                Document book = new Document("book_id", bookId)
+                        .append("ISBN", String.format("978%010d", bookId))
+                        .append("title", "Book " + bookId + " about " + TOPICS[bookId % TOPICS.length])
+                        .append("publication_date", (1950 + bookId % 75) + "-01-01")
+                        .append("rating", "")
+                        .append("rating_summary", new Document("count", 3)
+                                .append("sum", sum)
+                                .append("min", min)
+                                .append("max", max)
+                                .append("latest", latest)
+                                .append("latest_date", "2024-01-03"))
+                        .append("updated_at", new Date());
+                if (embedded) {
+                    book.append("authors", authorRefs).append("genres", genreRefs);
+                }
+                books.add(book);
+            }
+
+            for (Batch batch : List.of(books, authors, bookAuthors, bookGenres, ratings, buckets)) {
+                batch.flush();
+            }
+        } finally {
+            DbConnect.release();
+        }
+    }
+
+    /**
+     * Adds the same catalog as {@link #seed(int)} to an empty backend through its methods, so that
+     * book IDs 1 to {@code bookCount} are assigned in order. The ratings are dated today.
+     *
+     * @param booksDb the backend to add the books to
+     * @param bookCount the number of books to add
+     */
+    public static void seed(BooksDbInterface booksDb, int bookCount) {
+        int authorId = 0;
+        for (int bookId = 1; bookId <= bookCount; bookId++) {
+            List<Author> authors = new ArrayList<>();
+            int authorCount = 1 + bookId % 2;
+            for (int i = 0; i < authorCount; i++) {
+                authorId++;
+                authors.add(new Author(0, "First" + authorId, "Last" + authorId));
+            }
+
+            List<Integer> genreIds = new ArrayList<>();
+            genreIds.add(1 + bookId % GENRE_COUNT);
+            if (bookId % 3 == 0) {
+                genreIds.add(1 + (bookId + 1) % GENRE_COUNT);
+            }
+
+            Book book = new Book(0, String.format("978%010d", bookId),
+                    "Book " + bookId + " about " + TOPICS[bookId % TOPICS.length],
+                    (1950 + bookId % 75) + "-01-01", "");
+            int addedId = booksDb.addBookWithDetails(book, authors, genreIds, 1 + bookId % 5).bookId();
+            for (int i = 1; i < 3; i++) {
+                booksDb.addRatingToBook(addedId, 1 + (bookId + i) % 5);
+            }
+        }
+    }
+
+    /**
+     * Documents waiting to be inserted into one collection.
+     */
+    private static final class Batch {
+        private final MongoDatabase database;
+        private final String collection;
+        private final List<Document> documents = new ArrayList<>();
+
+        Batch(MongoDatabase database, String collection) {
+            this.database = database;
+            this.collection = collection;
+        }
+
+        void add(Document document) {
+            documents.add(document);
+            if (documents.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (!documents.isEmpty()) {
+                database.getCollection(collection).insertMany(documents);
+                documents.clear();
+            }
+        }
+    }
+}
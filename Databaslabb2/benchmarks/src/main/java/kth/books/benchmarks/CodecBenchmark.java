@@ -0,0 +1,117 @@
+package kth.books.benchmarks;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import kth.books.DbConnect;
+import kth.books.model.BookDetailsPipeline;
+import kth.books.model.BookRow;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@code getAllBooks} and {@code searchBooks} queries against the server when results are
+ * decoded through {@link Document}s and when they are decoded directly into rows by the model codecs.
+ * Runs against the same seeded {@code BooksBenchmark} database as {@link BooksDbBenchmark}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dbooks.db.name=BooksBenchmark")
+public class CodecBenchmark {
+
+    @Param({"1000", "10000"})
+    private int catalogSize;
+
+    private MongoDatabase database;
+    private List<Bson> searchPipeline;
+
+    /**
+     * Seeds the catalog and opens the database.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        CatalogSeeder.seed(catalogSize);
+        database = DbConnect.getDatabase();
+        searchPipeline = new ArrayList<>();
+        searchPipeline.add(Aggregates.match(Filters.regex("title", "Dragons", "i")));
+        searchPipeline.addAll(BookDetailsPipeline.stages());
+    }
+
+    /**
+     * Releases the database.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DbConnect.release();
+    }
+
+    /**
+     * Reads the whole catalog as Documents and copies them into rows.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> getAllBooksViaDocument() {
+        List<BookRow> rows = new ArrayList<>();
+        for (Document doc : database.getCollection("Book").find()) {
+            rows.add(DocumentMapping.toBookRow(doc));
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the whole catalog straight into rows.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> getAllBooksViaCodec() {
+        return database.getCollection("Book", BookRow.class).find().into(new ArrayList<>());
+    }
+
+    /**
+     * Runs a search with details as Documents and copies them into rows.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> searchBooksViaDocument() {
+        List<BookRow> rows = new ArrayList<>();
+        for (Document doc : database.getCollection("Book").aggregate(searchPipeline)) {
+            rows.add(DocumentMapping.toBookRow(doc));
+        }
+        return rows;
+    }
+
+    /**
+     * Runs a search with details straight into rows.
+     *
+     * @return the rows
+     */
+    @Benchmark
+    public List<BookRow> searchBooksViaCodec() {
+        return database.getCollection("Book").aggregate(searchPipeline, BookRow.class).into(new ArrayList<>());
+    }
+}
@@ -0,0 +1,52 @@
+package kth.books.benchmarks;
+
+import kth.books.model.AuthorRef;
+import kth.books.model.BookRow;
+import kth.books.model.GenreRef;
+import kth.books.model.RatingSummary;
+import org.bson.Document;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The mapping from decoded {@link Document}s to rows that BooksDbImpl used before the model codecs,
+ * kept as the baseline the codec benchmarks compare against.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+final class DocumentMapping {
+
+    private DocumentMapping() {
+    }
+
+    /**
+     * Copies a Book document, with or without the details arrays, into a row.
+     *
+     * @param doc the Book document
+     * @return the row
+     */
+    static BookRow toBookRow(Document doc) {
+        int bookId = doc.getInteger("book_id");
+        List<AuthorRef> authors = new ArrayList<>();
+        for (Document author : doc.getList("authors", Document.class, List.of())) {
+            authors.add(new AuthorRef(author.getInteger("author_id"), author.getString("first_name"), author.getString("last_name")));
+        }
+        List<GenreRef> genres = new ArrayList<>();
+        for (Document genre : doc.getList("genres", Document.class, List.of())) {
+            genres.add(new GenreRef(genre.getInteger("genre_id"), genre.getString("name")));
+        }
+        Document summary = doc.get("rating_summary", Document.class);
+        RatingSummary rating = summary == null || summary.getInteger("count", 0) == 0 ? RatingSummary.empty(bookId)
+                : new RatingSummary(bookId,
+                summary.get("count", Number.class).intValue(),
+                summary.get("sum", Number.class).longValue(),
+                summary.get("min", Number.class).intValue(),
+                summary.get("max", Number.class).intValue(),
+                summary.get("latest", Number.class).intValue(),
+                summary.getString("latest_date") != null ? LocalDate.parse(summary.getString("latest_date")) : null);
+        return new BookRow(bookId, doc.getString("ISBN"), doc.getString("title"), doc.getString("publication_date"),
+                authors, genres, rating);
+    }
+}
@@ -0,0 +1,56 @@
+package kth.books;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command listener recording the latency, failures and returned documents of every command the
+ * driver sends, by command name (find, aggregate, getMore, insert, update and so on), in the
+ * {@code MongoCommand} group of {@link Metrics}. Unlike the BooksDbInterface metrics, these show
+ * the time spent on the server and the network, one round trip at a time.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class CommandMetrics implements CommandListener {
+    static final String GROUP = "MongoCommand";
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Metrics.operation(GROUP, event.getCommandName())
+                .recordSuccess(event.getElapsedTime(TimeUnit.NANOSECONDS), documentsIn(event.getResponse()));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        Metrics.operation(GROUP, event.getCommandName()).recordError(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Counts the documents a command returned: the batch of a cursor reply, or the number
+     * of documents written.
+     *
+     * @param response the reply
+     * @return the number of documents
+     */
+    private static long documentsIn(BsonDocument response) {
+        if (response == null) {
+            return 0;
+        }
+        BsonValue cursor = response.get("cursor");
+        if (cursor != null && cursor.isDocument()) {
+            BsonValue batch = cursor.asDocument().get("firstBatch");
+            if (batch == null) {
+                batch = cursor.asDocument().get("nextBatch");
+            }
+            return batch instanceof BsonArray array ? array.size() : 0;
+        }
+        BsonValue n = response.get("n");
+        return n != null && n.isNumber() ? n.asNumber().longValue() : 0;
+    }
+}
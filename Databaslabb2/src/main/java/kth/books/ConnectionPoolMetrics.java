@@ -0,0 +1,151 @@
+package kth.books;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pool listener collecting checkout, wait time and in-use statistics,
+ * used to size the pool for the number of concurrent background tasks.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class ConnectionPoolMetrics implements ConnectionPoolListener {
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder checkoutFailures = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong waiting = new AtomicLong();
+    private final AtomicLong inUse = new AtomicLong();
+    private final AtomicLong maxInUse = new AtomicLong();
+    private final AtomicLong open = new AtomicLong();
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+        waiting.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        waiting.decrementAndGet();
+        checkouts.increment();
+        long waitNanos = event.getElapsedTime(TimeUnit.NANOSECONDS);
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        maxInUse.accumulateAndGet(inUse.incrementAndGet(), Math::max);
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        waiting.decrementAndGet();
+        checkoutFailures.increment();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        inUse.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        open.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        open.decrementAndGet();
+    }
+
+    /**
+     * Retrieves the number of successful connection checkouts.
+     *
+     * @return the number of checkouts
+     */
+    public long getCheckouts() {
+        return checkouts.sum();
+    }
+
+    /**
+     * Retrieves the number of checkouts that failed, for example because the wait queue timed out.
+     *
+     * @return the number of failed checkouts
+     */
+    public long getCheckoutFailures() {
+        return checkoutFailures.sum();
+    }
+
+    /**
+     * Retrieves the average time a checkout waited for a connection.
+     *
+     * @return the average wait time in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = checkouts.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / (count * 1_000_000.0);
+    }
+
+    /**
+     * Retrieves the longest time a checkout waited for a connection.
+     *
+     * @return the maximum wait time in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Retrieves the number of threads currently waiting for a connection.
+     *
+     * @return the number of waiting threads
+     */
+    public long getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * Retrieves the number of connections currently checked out.
+     *
+     * @return the number of connections in use
+     */
+    public long getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Retrieves the highest number of connections that were checked out at the same time.
+     *
+     * @return the peak number of connections in use
+     */
+    public long getMaxInUse() {
+        return maxInUse.get();
+    }
+
+    /**
+     * Retrieves the number of open connections in the pool.
+     *
+     * @return the number of open connections
+     */
+    public long getOpen() {
+        return open.get();
+    }
+
+    /**
+     * Returns a one-line summary of the pool statistics.
+     *
+     * @return the pool statistics
+     */
+    @Override
+    public String toString() {
+        return String.format("Pool: open=%d inUse=%d (max %d) waiting=%d checkouts=%d failed=%d wait avg=%.2fms max=%.2fms",
+                getOpen(), getInUse(), getMaxInUse(), getWaiting(), getCheckouts(), getCheckoutFailures(),
+                getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
@@ -1,23 +1,142 @@
 package kth.books;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.ClientSession;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
-import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
-import org.bson.Document;
+import com.mongodb.connection.ConnectionPoolSettings;
+import kth.books.model.BooksCodecs;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * Utility class for establishing a connection to the database.
+ * <p>
+ * A single MongoClient, and with it a single connection pool, is shared by the whole process.
+ * Every caller of {@link #getDatabase()} must call {@link #release()} once it is done; the client
+ * and its pool and monitor threads are closed when the last user releases it.
+ * The pool can be tuned with the system properties {@code books.db.pool.maxSize},
+ * {@code books.db.pool.minSize}, {@code books.db.pool.maxWaitMs} and {@code books.db.pool.maxIdleMs}.
  * @author Majd & Majid
  * @version 1.0
  */
 
 public class DbConnect {
-    private static final String URL = "mongodb://localhost:27017";
-    private static final String DATABASE_NAME = "Books";
+    private static final String URL = System.getProperty("books.db.url", "mongodb://localhost:27017");
+    private static final String DATABASE_NAME = System.getProperty("books.db.name", "Books");
+
+    private static final int POOL_MAX_SIZE = Integer.getInteger("books.db.pool.maxSize", 20);
+    private static final int POOL_MIN_SIZE = Integer.getInteger("books.db.pool.minSize", 0);
+    private static final long POOL_MAX_WAIT_MS = Long.getLong("books.db.pool.maxWaitMs", 5_000);
+    private static final long POOL_MAX_IDLE_MS = Long.getLong("books.db.pool.maxIdleMs", 60_000);
+
+    private static final ConnectionPoolMetrics POOL_METRICS = new ConnectionPoolMetrics();
+    private static final CommandMetrics COMMAND_METRICS = new CommandMetrics();
+    private static final SlowQueryLog SLOW_QUERY_LOG = new SlowQueryLog();
 
-    public static MongoDatabase getDatabase(){
-        MongoClient mongoClient = MongoClients.create(URL);
+    private static MongoClient mongoClient;
+    private static int references;
+
+    /**
+     * Retrieves the application database, creating the shared client on first use.
+     *
+     * @return the database
+     */
+    public static synchronized MongoDatabase getDatabase(){
+        if (mongoClient == null) {
+            mongoClient = MongoClients.create(createSettings());
+        }
+        references++;
         return mongoClient.getDatabase(DATABASE_NAME);
     }
+
+    /**
+     * Starts a client session on the shared client, for example to run a multi-document transaction.
+     * The caller must hold a reference obtained from {@link #getDatabase()} and close the session.
+     *
+     * @return the new session
+     */
+    public static synchronized ClientSession startSession() {
+        if (mongoClient == null) {
+            throw new IllegalStateException("The database client is not open");
+        }
+        return mongoClient.startSession();
+    }
+
+    /**
+     * Releases one reference to the shared client and closes it when no references remain.
+     */
+    public static synchronized void release() {
+        if (references == 0) {
+            return;
+        }
+        references--;
+        if (references == 0) {
+            mongoClient.close();
+            mongoClient = null;
+        }
+    }
+
+    /**
+     * Retrieves the connection pool statistics of the shared client.
+     *
+     * @return the pool metrics
+     */
+    public static ConnectionPoolMetrics getPoolMetrics() {
+        return POOL_METRICS;
+    }
+
+    /**
+     * Retrieves the slow-query log of the shared client.
+     *
+     * @return the slow-query log
+     */
+    public static SlowQueryLog getSlowQueryLog() {
+        return SLOW_QUERY_LOG;
+    }
+
+    /**
+     * Retrieves a database of the shared client without taking a reference, for example to explain
+     * a query in the background.
+     *
+     * @param name the name of the database
+     * @return the database, or null if the client is closed
+     */
+    static synchronized MongoDatabase getOpenDatabase(String name) {
+        return mongoClient != null ? mongoClient.getDatabase(name) : null;
+    }
+
+    /**
+     * Builds the client settings, including the connection pool configuration.
+     *
+     * @return the client settings
+     */
+    private static MongoClientSettings createSettings() {
+        return MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(URL))
+                .codecRegistry(BooksCodecs.registry())
+                .addCommandListener(COMMAND_METRICS)
+                .addCommandListener(SLOW_QUERY_LOG)
+                .applyToConnectionPoolSettings(DbConnect::configurePool)
+                .build();
+    }
+
+    /**
+     * Configures the connection pool. A {@code books.db.pool.maxIdleMs} of 0 or less means that idle
+     * connections are never closed, so the driver's defaults for idle time and maintenance are kept.
+     *
+     * @param pool the pool settings to configure
+     */
+    private static void configurePool(ConnectionPoolSettings.Builder pool) {
+        pool.maxSize(POOL_MAX_SIZE)
+                .minSize(POOL_MIN_SIZE)
+                .maxWaitTime(POOL_MAX_WAIT_MS, TimeUnit.MILLISECONDS)
+                .addConnectionPoolListener(POOL_METRICS);
+        if (POOL_MAX_IDLE_MS > 0) {
+            pool.maxConnectionIdleTime(POOL_MAX_IDLE_MS, TimeUnit.MILLISECONDS)
+                    .maintenanceFrequency(Math.max(1, POOL_MAX_IDLE_MS / 2), TimeUnit.MILLISECONDS);
+        }
+    }
 }
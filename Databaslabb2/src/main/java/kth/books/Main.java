@@ -3,8 +3,16 @@ package kth.books;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import kth.books.controller.BackgroundTasks;
+import kth.books.model.BookChangeFeed;
+import kth.books.model.BooksDbAsync;
 import kth.books.model.BooksDbImpl;
 import kth.books.model.BooksDbInterface;
+import kth.books.model.BooksDbSchema;
+import kth.books.model.CachingBooksDb;
+import kth.books.model.EmbeddedBooksDb;
+import kth.books.model.InMemoryBooksDb;
+import kth.books.model.MetricsBooksDb;
 import kth.books.view.MainView;
 
 /**
@@ -21,15 +29,36 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage primaryStage) {
-        BooksDbInterface booksDb = new BooksDbImpl();
+        boolean inMemory = "memory".equals(System.getProperty("books.db.backend", "mongodb"));
+        CachingBooksDb booksDb = new CachingBooksDb(new MetricsBooksDb(inMemory ? new InMemoryBooksDb() : openMongoBackend()));
+        Metrics.startReporting();
         MainView mainView = new MainView(booksDb);
 
+        // The feed only knows the collections of the normalized schema; the in-memory backend has no other clients.
+        BookChangeFeed changeFeed = booksDb.getSchema() == BooksDbSchema.NORMALIZED ? new BookChangeFeed() : null;
+        if (changeFeed != null) {
+            changeFeed.start(change -> {
+                booksDb.invalidateBook(change.bookId());
+                mainView.onBookChanged(change);
+            });
+        }
+
         Scene scene = new Scene(mainView.getView(), 800, 600);
         primaryStage.setTitle("Library System");
         primaryStage.setScene(scene);
 
         primaryStage.setOnCloseRequest(event -> {
             try {
+                if (changeFeed != null) {
+                    changeFeed.close();
+                }
+                BackgroundTasks.shutdown();
+                BooksDbAsync.shutdown();
+                System.out.println("Cache statistics: " + booksDb.getCacheStats());
+                Metrics.stopReporting();
+                System.out.println(Metrics.snapshot());
+                System.out.println(DbConnect.getSlowQueryLog().summary());
+                DbConnect.getSlowQueryLog().close();
                 booksDb.close();
                 System.out.println("Database connection closed.");
             } catch (Exception e) {
@@ -39,4 +68,16 @@ public class Main extends Application {
 
         primaryStage.show();
     }
+
+    /**
+     * Opens the MongoDB backend for the schema chosen with {@code books.db.schema}: {@code normalized}
+     * (the default) stores authors, genres and ratings in collections of their own, {@code embedded}
+     * stores them in the Book documents.
+     *
+     * @return the backend
+     */
+    private static BooksDbInterface openMongoBackend() {
+        return "embedded".equals(System.getProperty("books.db.schema", "normalized"))
+                ? new EmbeddedBooksDb() : new BooksDbImpl();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package kth.books;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide registry of operation metrics.
+ * <p>
+ * Metrics are grouped, for example the calls through BooksDbInterface and the commands sent to MongoDB,
+ * and every operation is registered as an MXBean named {@code kth.books:type=<group>,name=<operation>}
+ * the first time it is used, so it can be watched in JConsole or VisualVM. {@link #startReporting()}
+ * also prints a snapshot of all used operations every {@code books.metrics.logSeconds} seconds
+ * (60 by default, 0 disables it).
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public final class Metrics {
+    private static final long LOG_SECONDS = Long.getLong("books.metrics.logSeconds", 60);
+
+    private static final Map<String, Map<String, OperationMetrics>> GROUPS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {
+    }
+
+    /**
+     * Retrieves the metrics of an operation, creating and registering them on first use.
+     *
+     * @param group the group of the operation, such as {@code BooksDb}
+     * @param name the name of the operation
+     * @return the metrics
+     */
+    public static OperationMetrics operation(String group, String name) {
+        Map<String, OperationMetrics> operations = GROUPS.computeIfAbsent(group, g -> new ConcurrentHashMap<>());
+        OperationMetrics metrics = operations.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        return operations.computeIfAbsent(name, n -> register(group, new OperationMetrics(n)));
+    }
+
+    /**
+     * Starts printing a snapshot of the metrics periodically, unless disabled or already started.
+     */
+    public static synchronized void startReporting() {
+        if (LOG_SECONDS <= 0 || reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("books-metrics").daemon(true).factory());
+        reporter.scheduleAtFixedRate(() -> System.out.println(snapshot()), LOG_SECONDS, LOG_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops printing snapshots.
+     */
+    public static synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Summarizes every operation that has been called, one line each, grouped.
+     *
+     * @return the snapshot
+     */
+    public static String snapshot() {
+        StringBuilder text = new StringBuilder("Database metrics:");
+        for (Map.Entry<String, Map<String, OperationMetrics>> group : GROUPS.entrySet()) {
+            List<OperationMetrics> used = new ArrayList<>();
+            for (OperationMetrics metrics : group.getValue().values()) {
+                if (metrics.getCalls() > 0) {
+                    used.add(metrics);
+                }
+            }
+            used.sort((a, b) -> a.getName().compareTo(b.getName()));
+            for (OperationMetrics metrics : used) {
+                text.append(System.lineSeparator()).append("  ").append(group.getKey()).append(' ').append(metrics);
+            }
+        }
+        return text.toString();
+    }
+
+    private static OperationMetrics register(String group, OperationMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("kth.books:type=" + group + ",name=" + metrics.getName());
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metrics, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register metrics MBean: " + e.getMessage());
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,111 @@
+package kth.books;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call, error and document counters and a latency histogram for one database operation or command.
+ * All updates are lock-free.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String name;
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder documents = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Constructs the metrics of an operation.
+     *
+     * @param name the name of the operation
+     */
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param nanos the latency of the call in nanoseconds
+     * @param documentCount the number of documents or rows it returned
+     */
+    public void recordSuccess(long nanos, long documentCount) {
+        latency.record(nanos);
+        if (documentCount > 0) {
+            documents.add(documentCount);
+        }
+    }
+
+    /**
+     * Records a failed call.
+     *
+     * @param nanos the latency of the call in nanoseconds
+     */
+    public void recordError(long nanos) {
+        latency.record(nanos);
+        errors.increment();
+    }
+
+    /**
+     * Retrieves the name of the operation.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCalls() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getDocuments() {
+        return documents.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.getMeanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.getPercentileNanos(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP95Millis() {
+        return latency.getPercentileNanos(95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.getPercentileNanos(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMaxNanos() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Summarizes the metrics on one line.
+     *
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return String.format("%-28s calls=%d errors=%d docs=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                name, getCalls(), getErrors(), getDocuments(), getMeanMillis(),
+                getP50Millis(), getP95Millis(), getP99Millis(), getMaxMillis());
+    }
+}
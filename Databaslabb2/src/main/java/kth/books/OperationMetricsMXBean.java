@@ -0,0 +1,49 @@
+package kth.books;
+
+/**
+ * The JMX view of the metrics of one database operation or command.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public interface OperationMetricsMXBean {
+
+    /**
+     * @return the number of calls
+     */
+    long getCalls();
+
+    /**
+     * @return the number of calls that failed
+     */
+    long getErrors();
+
+    /**
+     * @return the number of documents or rows returned by all calls
+     */
+    long getDocuments();
+
+    /**
+     * @return the mean latency in milliseconds
+     */
+    double getMeanMillis();
+
+    /**
+     * @return the median latency in milliseconds
+     */
+    double getP50Millis();
+
+    /**
+     * @return the 95th percentile latency in milliseconds
+     */
+    double getP95Millis();
+
+    /**
+     * @return the 99th percentile latency in milliseconds
+     */
+    double getP99Millis();
+
+    /**
+     * @return the highest latency in milliseconds
+     */
+    double getMaxMillis();
+}
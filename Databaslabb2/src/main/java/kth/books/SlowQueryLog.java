@@ -0,0 +1,394 @@
+package kth.books;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Command listener that detects slow queries and writes them to a rotating slow-query log.
+ * <p>
+ * Every find, aggregate, count and distinct command that takes at least {@code books.slowQuery.thresholdMs}
+ * milliseconds (200 by default, a negative value disables the log) is recorded with the BooksDbInterface
+ * operation that sent it, its filter, sort and projection or pipeline, and its query shape, that is the
+ * filter with every value replaced by {@code ?}. The query is then explained with {@code executionStats}
+ * on a background thread and the plan stages, documents examined and keys examined are written with it,
+ * so a COLLSCAN stands out from a slow network or a large result. Each shape is explained at most once
+ * every {@code books.slowQuery.explainIntervalSeconds} seconds (300 by default).
+ * <p>
+ * The log is written to {@code books.slowQuery.file} ({@code slow-queries.%g.log} by default), rotating
+ * through five files of at most {@code books.slowQuery.fileBytes} bytes. {@link #summary()} groups the
+ * slow queries by shape.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class SlowQueryLog implements CommandListener {
+    private static final long THRESHOLD_MS = Long.getLong("books.slowQuery.thresholdMs", 200);
+    private static final long EXPLAIN_INTERVAL_MS = Long.getLong("books.slowQuery.explainIntervalSeconds", 300) * 1_000;
+    private static final String FILE = System.getProperty("books.slowQuery.file", "slow-queries.%g.log");
+    private static final int FILE_BYTES = Integer.getInteger("books.slowQuery.fileBytes", 5_000_000);
+    private static final int FILE_COUNT = 5;
+
+    private static final Set<String> QUERY_COMMANDS = Set.of("find", "aggregate", "count", "distinct");
+    private static final Set<String> EXPLAINED_FIELDS = Set.of(
+            "find", "filter", "sort", "projection", "skip", "limit", "hint", "collation",
+            "aggregate", "pipeline", "count", "query", "distinct", "key");
+    private static final ThreadLocal<String> OPERATION = new ThreadLocal<>();
+
+    private final Map<Integer, PendingQuery> pending = new ConcurrentHashMap<>();
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final ExecutorService explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(100), Thread.ofPlatform().name("books-explain").daemon(true).factory(),
+            new ThreadPoolExecutor.DiscardPolicy());
+    private Logger logger;
+
+    /**
+     * A query command that has been sent and not yet answered.
+     *
+     * @param operation the BooksDbInterface operation that sent it, or null if unknown
+     * @param databaseName the database the command was sent to
+     * @param command the fields of the command needed to explain it
+     */
+    private record PendingQuery(String operation, String databaseName, BsonDocument command) {
+    }
+
+    /**
+     * The slow queries of one shape.
+     */
+    private static final class ShapeStats {
+        private final String shape;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+        private final AtomicLong lastExplained = new AtomicLong(Long.MIN_VALUE);
+        private volatile String plan = "not explained";
+
+        private ShapeStats(String shape) {
+            this.shape = shape;
+        }
+
+        /**
+         * Claims the right to explain this shape if it has not been explained recently.
+         *
+         * @param now the current time in milliseconds
+         * @return true if the caller should explain the query
+         */
+        private boolean claimExplain(long now) {
+            long last = lastExplained.get();
+            return (last == Long.MIN_VALUE || now - last >= EXPLAIN_INTERVAL_MS)
+                    && lastExplained.compareAndSet(last, now);
+        }
+    }
+
+    /**
+     * Marks the current thread as running a BooksDbInterface operation, so that slow commands
+     * it sends are logged with the operation name.
+     *
+     * @param operation the name of the operation
+     * @return the operation the thread was running before, to be passed to {@link #exitOperation(String)}
+     */
+    public static String enterOperation(String operation) {
+        String previous = OPERATION.get();
+        OPERATION.set(operation);
+        return previous;
+    }
+
+    /**
+     * Marks the current thread as done with an operation.
+     *
+     * @param previous the value returned by {@link #enterOperation(String)}
+     */
+    public static void exitOperation(String previous) {
+        if (previous == null) {
+            OPERATION.remove();
+        } else {
+            OPERATION.set(previous);
+        }
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (THRESHOLD_MS < 0 || !QUERY_COMMANDS.contains(event.getCommandName())) {
+            return;
+        }
+        // The event's command is only valid during this call, so the fields needed later are copied.
+        BsonDocument command = new BsonDocument();
+        for (Map.Entry<String, BsonValue> field : event.getCommand().entrySet()) {
+            if (EXPLAINED_FIELDS.contains(field.getKey())) {
+                command.put(field.getKey(), field.getValue());
+            }
+        }
+        pending.put(event.getRequestId(), new PendingQuery(OPERATION.get(), event.getDatabaseName(), command.clone()));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        finished(event.getRequestId(), event.getElapsedTime(TimeUnit.MILLISECONDS), null);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        finished(event.getRequestId(), event.getElapsedTime(TimeUnit.MILLISECONDS), event.getThrowable());
+    }
+
+    /**
+     * Summarizes the slow queries so far by shape, the most frequent first.
+     *
+     * @return the summary
+     */
+    public String summary() {
+        List<ShapeStats> sorted = new ArrayList<>(shapes.values());
+        sorted.sort((a, b) -> Long.compare(b.count.sum(), a.count.sum()));
+        StringBuilder text = new StringBuilder("Slow queries by shape (threshold " + THRESHOLD_MS + " ms):");
+        if (sorted.isEmpty()) {
+            text.append(" none");
+        }
+        for (ShapeStats stats : sorted) {
+            long count = stats.count.sum();
+            if (count == 0) {
+                continue;
+            }
+            text.append(System.lineSeparator())
+                    .append(String.format("  count=%d mean=%dms max=%dms plan=%s%n    %s",
+                            count, stats.totalMillis.sum() / count, stats.maxMillis.get(), stats.plan, stats.shape));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes the summary to the slow-query log and stops explaining queries.
+     */
+    public void close() {
+        explainer.shutdownNow();
+        if (!shapes.isEmpty()) {
+            log(summary());
+        }
+        synchronized (this) {
+            if (logger != null) {
+                for (var handler : logger.getHandlers()) {
+                    handler.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a query command that has been answered, if it was slow.
+     *
+     * @param requestId the request ID of the command
+     * @param millis the time the command took
+     * @param failure the reason the command failed, or null if it succeeded
+     */
+    private void finished(int requestId, long millis, Throwable failure) {
+        PendingQuery query = pending.remove(requestId);
+        if (query == null || millis < THRESHOLD_MS) {
+            return;
+        }
+        String shape = shapeOf(query.command());
+        ShapeStats stats = shapes.computeIfAbsent(shape, ShapeStats::new);
+        stats.count.increment();
+        stats.totalMillis.add(millis);
+        stats.maxMillis.accumulate(millis);
+
+        StringBuilder entry = new StringBuilder()
+                .append(Instant.now()).append(' ').append(millis).append("ms")
+                .append(" operation=").append(query.operation() != null ? query.operation() : "unknown")
+                .append(failure != null ? " failed=" + failure.getMessage() : "")
+                .append(System.lineSeparator()).append("  command: ").append(query.command().toJson())
+                .append(System.lineSeparator()).append("  shape: ").append(shape);
+        if (stats.claimExplain(System.currentTimeMillis())) {
+            explainer.execute(() -> {
+                stats.plan = explain(query);
+                log(entry.append(System.lineSeparator()).append("  explain: ").append(stats.plan).toString());
+            });
+        } else {
+            log(entry.append(System.lineSeparator()).append("  explain: ").append(stats.plan).append(" (cached)").toString());
+        }
+    }
+
+    /**
+     * Explains a query with execution statistics and summarizes the winning plan.
+     *
+     * @param query the query
+     * @return the plan stages, documents examined, keys examined and documents returned
+     */
+    private static String explain(PendingQuery query) {
+        try {
+            MongoDatabase database = DbConnect.getOpenDatabase(query.databaseName());
+            if (database == null) {
+                return "not explained, the client is closed";
+            }
+            BsonDocument command = query.command().clone();
+            if (command.containsKey("aggregate")) {
+                command.put("cursor", new BsonDocument());
+            }
+            BsonDocument explained = database.runCommand(new BsonDocument("explain", command)
+                    .append("verbosity", new BsonString("executionStats")), BsonDocument.class);
+            return summarizePlan(explained);
+        } catch (RuntimeException e) {
+            return "explain failed: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Summarizes an explain result. The plan of an aggregation that could not be pushed down
+     * entirely into the query layer is found under its first stage.
+     *
+     * @param explained the explain result
+     * @return the summary
+     */
+    private static String summarizePlan(BsonDocument explained) {
+        BsonDocument source = explained;
+        if (!source.containsKey("queryPlanner") && source.get("stages") instanceof BsonArray stages
+                && !stages.isEmpty() && stages.get(0).isDocument()
+                && stages.get(0).asDocument().get("$cursor") instanceof BsonDocument cursor) {
+            source = cursor;
+        }
+        BsonDocument planner = source.getDocument("queryPlanner", new BsonDocument());
+        BsonDocument plan = planner.getDocument("winningPlan", new BsonDocument());
+        if (plan.get("queryPlan") instanceof BsonDocument queryPlan) {
+            plan = queryPlan;
+        }
+        List<String> stages = new ArrayList<>();
+        for (BsonValue stage = plan; stage instanceof BsonDocument document; stage = document.get("inputStage")) {
+            BsonValue name = document.get("stage");
+            if (name != null && name.isString()) {
+                String indexName = document.get("indexName") instanceof BsonString index ? "(" + index.getValue() + ")" : "";
+                stages.add(name.asString().getValue() + indexName);
+            }
+        }
+        BsonDocument execution = source.getDocument("executionStats", new BsonDocument());
+        return String.format("%s docsExamined=%s keysExamined=%s returned=%s",
+                stages.isEmpty() ? "unknown" : String.join(" <- ", stages),
+                numberOf(execution, "totalDocsExamined"), numberOf(execution, "totalKeysExamined"),
+                numberOf(execution, "nReturned"));
+    }
+
+    private static String numberOf(BsonDocument document, String key) {
+        BsonValue value = document.get(key);
+        return value != null && value.isNumber() ? String.valueOf(value.asNumber().longValue()) : "?";
+    }
+
+    /**
+     * Describes the shape of a query: its collection, filter, sort and projection or pipeline,
+     * with every value being compared replaced by {@code ?}.
+     *
+     * @param command the query command
+     * @return the shape
+     */
+    static String shapeOf(BsonDocument command) {
+        BsonDocument shape = new BsonDocument();
+        for (Map.Entry<String, BsonValue> field : command.entrySet()) {
+            switch (field.getKey()) {
+                case "find", "aggregate", "count", "distinct", "key", "sort", "projection", "hint" ->
+                        shape.put(field.getKey(), field.getValue());
+                case "filter", "query", "pipeline" -> shape.put(field.getKey(), withoutValues(field.getValue()));
+                default -> {
+                    // Skip, limit and collation do not change which index can be used.
+                }
+            }
+        }
+        return shape.toJson();
+    }
+
+    /**
+     * Copies a filter or pipeline, replacing every value by {@code ?} and every regular expression
+     * by {@code /?/}. Field names, operators, field paths and the layout of documents are kept,
+     * and an array of values becomes a single {@code ?}.
+     *
+     * @param value the filter or pipeline
+     * @return the copy
+     */
+    private static BsonValue withoutValues(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument copy = new BsonDocument();
+            for (Map.Entry<String, BsonValue> field : value.asDocument().entrySet()) {
+                String key = field.getKey();
+                // Stage options such as $lookup's collection names and $project's fields are part of the shape.
+                boolean keepValue = key.equals("from") || key.equals("localField") || key.equals("foreignField")
+                        || key.equals("as") || key.equals("$project") || key.equals("$sort")
+                        || key.equals("$unwind");
+                copy.put(key, keepValue ? field.getValue() : withoutValues(field.getValue()));
+            }
+            return copy;
+        }
+        if (value.isArray()) {
+            BsonArray array = value.asArray();
+            boolean documents = !array.isEmpty() && array.get(0).isDocument();
+            if (!documents) {
+                return new BsonString("?");
+            }
+            BsonArray copy = new BsonArray();
+            for (BsonValue element : array) {
+                copy.add(withoutValues(element));
+            }
+            return copy;
+        }
+        if (value.isRegularExpression()) {
+            return new BsonString("/?/");
+        }
+        return value.isString() && value.asString().getValue().startsWith("$")
+                ? value : new BsonString("?");
+    }
+
+    /**
+     * Writes an entry to the slow-query log, opening the log on first use.
+     *
+     * @param entry the entry
+     */
+    private void log(String entry) {
+        Logger log;
+        synchronized (this) {
+            if (logger == null) {
+                logger = openLogger();
+            }
+            log = logger;
+        }
+        log.info(entry);
+    }
+
+    private static Logger openLogger() {
+        Logger log = Logger.getLogger("kth.books.slowQueries");
+        log.setUseParentHandlers(false);
+        try {
+            FileHandler handler = new FileHandler(FILE, FILE_BYTES, FILE_COUNT, true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return record.getMessage() + System.lineSeparator();
+                }
+            });
+            log.addHandler(handler);
+        } catch (IOException e) {
+            System.err.println("Could not open the slow-query log, logging to the console: " + e.getMessage());
+            log.setUseParentHandlers(true);
+        }
+        log.setLevel(Level.INFO);
+        return log;
+    }
+}
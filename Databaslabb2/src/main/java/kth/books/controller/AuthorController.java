@@ -1,6 +1,5 @@
 package kth.books.controller;
 
-import javafx.application.Platform;
 import kth.books.DbConnect;
 import kth.books.model.Author;
 import kth.books.model.BooksDbInterface;
@@ -8,6 +7,8 @@ import kth.books.model.BooksDbInterface;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Controller class for managing author-related operations.
@@ -17,6 +18,7 @@ import java.util.List;
 public class AuthorController {
 
     private final BooksDbInterface booksDb;
+    private final BackgroundTasks tasks = BackgroundTasks.forController(AuthorController.class);
 
     /**
      * Constructs an AuthorController with the provided database interface.
@@ -31,13 +33,16 @@ public class AuthorController {
      * Adds a new author to the database.
      *
      * @param author the author to add
+     * @return the ID assigned to the author, or -1 if it could not be added
      */
-    public void addAuthor(Author author) {
+    public int addAuthor(Author author) {
         try {
-            booksDb.addAuthor(author);
+            int authorId = booksDb.addAuthor(author);
             System.out.println("Author added successfully!");
+            return authorId;
         } catch (Exception e) {
             System.err.println("Error adding author: " + e.getMessage());
+            return -1;
         }
     }
 
@@ -90,31 +95,21 @@ public class AuthorController {
      *
      * @param bookId the ID of the book
      * @param onComplete the callback to execute upon completion
+     * @return a handle to the background task
      */
-    public void getAuthorsForBookInBackground(int bookId, Runnable onComplete) {
-        Thread thread = new Thread(() -> {
-            List<Author> authors = getAuthorsForBook(bookId);
-            Platform.runLater(() -> {
-                onComplete.run();
-            });
-        });
-        thread.setDaemon(true);
-        thread.start();
+    public Future<List<Author>> getAuthorsForBookInBackground(int bookId, Runnable onComplete) {
+        return tasks.submit(() -> getAuthorsForBook(bookId), authors -> onComplete.run());
     }
 
     /**
-     * Adds an author in the background thread and executes a callback on completion.
+     * Adds an author in the background thread and passes the assigned ID to a callback on completion.
      *
      * @param author the author to add
-     * @param onComplete the callback to execute upon completion
+     * @param onComplete the callback receiving the ID of the author, or -1 if it could not be added
+     * @return a handle to the background task
      */
-    public void addAuthorInBackground(Author author, Runnable onComplete) {
-        Thread thread = new Thread(() -> {
-            addAuthor(author);
-            Platform.runLater(onComplete);
-        });
-        thread.setDaemon(true);
-        thread.start();
+    public Future<Integer> addAuthorInBackground(Author author, Consumer<Integer> onComplete) {
+        return tasks.submit(() -> addAuthor(author), onComplete);
     }
 
     /**
@@ -123,13 +118,9 @@ public class AuthorController {
      * @param bookId the ID of the book
      * @param authorId the ID of the author
      * @param onComplete the callback to execute upon completion
+     * @return a handle to the background task
      */
-    public void linkAuthorToBookInBackground(int bookId, int authorId, Runnable onComplete) {
-        Thread thread = new Thread(() -> {
-            linkAuthorToBook(bookId, authorId);
-            Platform.runLater(onComplete);
-        });
-        thread.setDaemon(true);
-        thread.start();
+    public Future<?> linkAuthorToBookInBackground(int bookId, int authorId, Runnable onComplete) {
+        return tasks.run(() -> linkAuthorToBook(bookId, authorId), onComplete);
     }
 }
\ No newline at end of file
@@ -0,0 +1,299 @@
+package kth.books.controller;
+
+import javafx.application.Platform;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+/**
+ * Shared execution of background database work for the controllers.
+ * <p>
+ * All controllers submit their work to one process-wide executor, which runs tasks on virtual
+ * threads by default or on a bounded pool when {@code books.tasks.virtual} is false
+ * ({@code books.tasks.poolSize} sets its size). Each controller gets its own instance, which limits
+ * how many of its database operations run at the same time, so a large refresh cannot flood the
+ * connection pool. Tasks over the limit wait in the controller's queue rather than on a thread of the
+ * executor, so one busy controller never holds up the others.
+ * <p>
+ * A task that fails passes its exception to a failure callback on the JavaFX thread, which is the
+ * handler set with {@link #setFailureHandler(Consumer)} unless the task was submitted with its own.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class BackgroundTasks {
+    private static final boolean VIRTUAL_THREADS = Boolean.parseBoolean(System.getProperty("books.tasks.virtual", "true"));
+    private static final int POOL_SIZE = Integer.getInteger("books.tasks.poolSize", 8);
+    private static final int MAX_CONCURRENT_PER_CONTROLLER = Integer.getInteger("books.tasks.maxPerController", 4);
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+    private static final Map<String, BackgroundTasks> CONTROLLER_TASKS = new ConcurrentHashMap<>();
+    private static volatile Consumer<Throwable> failureHandler = error -> { };
+
+    private final int maxConcurrent;
+    private final Queue<Task<?>> waiting = new ArrayDeque<>();
+    private int running;
+    private final Map<String, Future<?>> latestByKey = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the task runner for one controller.
+     *
+     * @param maxConcurrent the maximum number of database operations running at the same time
+     */
+    private BackgroundTasks(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Retrieves the task runner shared by all instances of a controller.
+     *
+     * @param controller the controller class
+     * @return the task runner for the controller
+     */
+    public static BackgroundTasks forController(Class<?> controller) {
+        return CONTROLLER_TASKS.computeIfAbsent(controller.getSimpleName(),
+                name -> new BackgroundTasks(MAX_CONCURRENT_PER_CONTROLLER));
+    }
+
+    /**
+     * Sets the callback that tasks submitted without a failure callback of their own run on the JavaFX
+     * thread when they fail. Until one is set, such failures are ignored.
+     *
+     * @param handler the callback receiving the exception thrown by the task
+     */
+    public static void setFailureHandler(Consumer<Throwable> handler) {
+        failureHandler = handler;
+    }
+
+    /**
+     * Runs a task in the background and executes a callback on the JavaFX thread upon completion.
+     *
+     * @param task the task to run
+     * @param onComplete the callback to execute upon completion
+     * @return a handle that can be used to wait for or cancel the task
+     */
+    public Future<?> run(Runnable task, Runnable onComplete) {
+        return run(task, onComplete, null);
+    }
+
+    /**
+     * Runs a task in the background and executes one of two callbacks on the JavaFX thread upon completion.
+     *
+     * @param task the task to run
+     * @param onComplete the callback to execute if the task succeeded
+     * @param onFailure the callback receiving the exception if the task failed, or null for the failure handler
+     * @return a handle that can be used to wait for or cancel the task
+     */
+    public Future<?> run(Runnable task, Runnable onComplete, Consumer<Throwable> onFailure) {
+        return submit(() -> {
+            task.run();
+            return null;
+        }, result -> onComplete.run(), onFailure);
+    }
+
+    /**
+     * Computes a result in the background and passes it to a callback on the JavaFX thread.
+     * The callback is not executed if the task is cancelled.
+     *
+     * @param task the task to run
+     * @param onSuccess the callback receiving the result
+     * @param <T> the type of the result
+     * @return a handle that can be used to wait for or cancel the task
+     */
+    public <T> Future<T> submit(Callable<T> task, Consumer<T> onSuccess) {
+        return submit(task, onSuccess, null);
+    }
+
+    /**
+     * Computes a result in the background and passes it, or the exception if the task failed, to a
+     * callback on the JavaFX thread. Neither callback is executed if the task is cancelled.
+     *
+     * @param task the task to run
+     * @param onSuccess the callback receiving the result
+     * @param onFailure the callback receiving the exception, or null for the failure handler
+     * @param <T> the type of the result
+     * @return a handle that can be used to wait for or cancel the task
+     */
+    public <T> Future<T> submit(Callable<T> task, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        Task<T> future = new Task<>(task, onSuccess, onFailure, null);
+        schedule(future);
+        return future;
+    }
+
+    /**
+     * Computes a result in the background and cancels any earlier task submitted with the same key,
+     * so that stale work, such as an old load when a new search starts, never reaches the view.
+     *
+     * @param key the key identifying the kind of work
+     * @param task the task to run
+     * @param onSuccess the callback receiving the result
+     * @param <T> the type of the result
+     * @return a handle that can be used to wait for or cancel the task
+     */
+    public <T> Future<T> submitLatest(String key, Callable<T> task, Consumer<T> onSuccess) {
+        return submitLatest(key, task, onSuccess, null);
+    }
+
+    /**
+     * Computes a result in the background and cancels any earlier task submitted with the same key,
+     * passing the result, or the exception if the task failed, to a callback on the JavaFX thread.
+     *
+     * @param key the key identifying the kind of work
+     * @param task the task to run
+     * @param onSuccess the callback receiving the result
+     * @param onFailure the callback receiving the exception, or null for the failure handler
+     * @param <T> the type of the result
+     * @return a handle that can be used to wait for or cancel the task
+     */
+    public <T> Future<T> submitLatest(String key, Callable<T> task, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        Task<T> future = new Task<>(task, onSuccess, onFailure, key);
+        Future<?> previous = latestByKey.put(key, future);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+        schedule(future);
+        return future;
+    }
+
+    /**
+     * Cancels the latest task submitted with the given key, if it is still running.
+     *
+     * @param key the key identifying the kind of work
+     */
+    public void cancel(String key) {
+        Future<?> previous = latestByKey.remove(key);
+        if (previous != null) {
+            previous.cancel(true);
+        }
+    }
+
+    /**
+     * Stops accepting new work and interrupts running tasks.
+     */
+    public static void shutdown() {
+        EXECUTOR.shutdownNow();
+    }
+
+    /**
+     * Hands a task to the executor if fewer than the maximum number of the controller's tasks are
+     * running, and otherwise queues it until one of them finishes.
+     *
+     * @param task the task to run
+     */
+    private void schedule(Task<?> task) {
+        synchronized (waiting) {
+            if (running >= maxConcurrent) {
+                waiting.add(task);
+                return;
+            }
+            running++;
+        }
+        EXECUTOR.execute(task);
+    }
+
+    /**
+     * Hands the next queued task that has not been cancelled to the executor, in place of a task that finished.
+     */
+    private void startNext() {
+        Task<?> next;
+        synchronized (waiting) {
+            do {
+                next = waiting.poll();
+            } while (next != null && next.isDone());
+            if (next == null) {
+                running--;
+                return;
+            }
+        }
+        EXECUTOR.execute(next);
+    }
+
+    /**
+     * Creates the shared executor, using virtual threads or a bounded pool of daemon threads.
+     *
+     * @return the executor
+     */
+    private static ExecutorService createExecutor() {
+        if (VIRTUAL_THREADS) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("books-task-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(POOL_SIZE, Thread.ofPlatform().name("books-task-", 0).daemon(true).factory());
+    }
+
+    /**
+     * A background task that counts as one of the controller's running tasks from the moment it is handed
+     * to the executor until it has finished, and delivers its result or failure to the JavaFX thread
+     * unless it was cancelled or superseded.
+     *
+     * @param <T> the type of the result
+     */
+    private class Task<T> extends FutureTask<T> {
+        private final Consumer<T> onSuccess;
+        private final Consumer<Throwable> onFailure;
+        private final String key;
+
+        Task(Callable<T> task, Consumer<T> onSuccess, Consumer<Throwable> onFailure, String key) {
+            super(task);
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                startNext();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                synchronized (waiting) {
+                    waiting.remove(this);
+                }
+                return;
+            }
+            try {
+                T result = get();
+                Platform.runLater(() -> {
+                    if (!isSuperseded()) {
+                        onSuccess.accept(result);
+                    }
+                });
+            } catch (ExecutionException e) {
+                Consumer<Throwable> callback = onFailure != null ? onFailure : failureHandler;
+                Platform.runLater(() -> {
+                    if (!isSuperseded()) {
+                        callback.accept(e.getCause());
+                    }
+                });
+            } catch (InterruptedException | CancellationException e) {
+                // The task was cancelled while the result was being retrieved.
+            } finally {
+                if (key != null) {
+                    latestByKey.remove(key, this);
+                }
+            }
+        }
+
+        private boolean isSuperseded() {
+            if (key == null) {
+                return false;
+            }
+            Future<?> latest = latestByKey.get(key);
+            return latest != null && latest != this;
+        }
+    }
+}
@@ -1,12 +1,27 @@
 package kth.books.controller;
 
-import javafx.application.Platform;
 import kth.books.DbConnect;
+import kth.books.io.CatalogExporter;
+import kth.books.io.CatalogImporter;
+import kth.books.io.ImportProgress;
+import kth.books.model.AddedBook;
+import kth.books.model.Author;
+import kth.books.model.AuthorDeduplicator;
 import kth.books.model.Book;
 import kth.books.model.BookRating;
+import kth.books.model.BookRow;
+import kth.books.model.BooksDbAsync;
 import kth.books.model.BooksDbInterface;
+import kth.books.model.BooksDbSchema;
+import kth.books.model.RatingSummary;
+import kth.books.model.Search;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Controller class for managing book-related operations.
@@ -14,8 +29,11 @@ import java.util.List;
  * @version 1.0
  */
 public class BookController  {
+    private static final String CATALOG_TASK = "catalog";
 
     private final BooksDbInterface booksDb;
+    private final BooksDbAsync asyncDb;
+    private final BackgroundTasks tasks = BackgroundTasks.forController(BookController.class);
 
     /**
      * Constructs a BookController with the provided database interface.
@@ -24,22 +42,48 @@ public class BookController  {
      */
     public BookController(BooksDbInterface booksDb) {
         this.booksDb = booksDb;
+        this.asyncDb = new BooksDbAsync(booksDb);
     }
 
     /**
      * Adds a new book to the database.
      *
      * @param book the book to add
+     * @return the ID assigned to the book, or -1 if it could not be added
      */
-    public void addBook(Book book) {
+    public int addBook(Book book) {
         try {
-            booksDb.addBook(book);
+            int bookId = booksDb.addBook(book);
             System.out.println("Book added successfully!");
+            return bookId;
         } catch (Exception e) {
             System.err.println("Error adding book: " + e.getMessage());
+            return -1;
         }
     }
 
+    /**
+     * Adds a new book together with its authors, genres and first rating in one atomic operation,
+     * without blocking the caller.
+     *
+     * @param book the book to add
+     * @param authors the authors of the book, found or created by name
+     * @param genreIds the IDs of the genres of the book
+     * @param ratingValue the first rating of the book, or 0 to add it without a rating
+     * @return a future completing with the IDs assigned, or null if the book could not be added
+     */
+    public CompletableFuture<AddedBook> addBookWithDetailsAsync(Book book, List<Author> authors, List<Integer> genreIds, int ratingValue) {
+        return asyncDb.addBookWithDetails(book, authors, genreIds, ratingValue)
+                .thenApply(added -> {
+                    System.out.println("Book added successfully!");
+                    return added;
+                })
+                .exceptionally(e -> {
+                    System.err.println("Error adding book: " + e.getMessage());
+                    return null;
+                });
+    }
+
     /**
      * Deletes a book from the database.
      *
@@ -68,6 +112,51 @@ public class BookController  {
         }
     }
 
+    /**
+     * Retrieves all books with authors, genres and a summarized rating populated.
+     *
+     * @return a list of fully populated books
+     */
+    public List<Book> getAllBooksWithDetails() {
+        try {
+            return booksDb.getAllBooksWithDetails();
+        } catch (Exception e) {
+            System.err.println("Error fetching books with details: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves one page of books ordered by ID, starting after the given book ID.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return the next page of books
+     */
+    public List<Book> getBooksAfter(int afterBookId, int pageSize) {
+        try {
+            return booksDb.getBooksAfter(afterBookId, pageSize);
+        } catch (Exception e) {
+            System.err.println("Error fetching page of books: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the given books with authors, genres and a summarized rating populated.
+     *
+     * @param bookIds the IDs of the books
+     * @return a list of fully populated books
+     */
+    public List<Book> getBooksWithDetails(List<Integer> bookIds) {
+        try {
+            return booksDb.getBooksWithDetails(bookIds);
+        } catch (Exception e) {
+            System.err.println("Error fetching book details: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Retrieves the ID of the last inserted book.
      *
@@ -83,18 +172,14 @@ public class BookController  {
     }
 
     /**
-     * Adds a book in the background thread and executes a callback on completion.
+     * Adds a book in the background thread and passes the assigned ID to a callback on completion.
      *
      * @param book the book to add
-     * @param onComplete the callback to execute upon completion
+     * @param onComplete the callback receiving the ID of the book, or -1 if it could not be added
+     * @return a handle to the background task
      */
-    public void addBookInBackground(Book book, Runnable onComplete) {
-        Thread thread = new Thread(() -> {
-            addBook(book);
-            Platform.runLater(onComplete);
-        });
-        thread.setDaemon(true);
-        thread.start();
+    public Future<Integer> addBookInBackground(Book book, Consumer<Integer> onComplete) {
+        return tasks.submit(() -> addBook(book), onComplete);
     }
 
     /**
@@ -102,14 +187,10 @@ public class BookController  {
      *
      * @param bookId the ID of the book to delete
      * @param onComplete the callback to execute upon completion
+     * @return a handle to the background task
      */
-    public void deleteBookInBackground(int bookId, Runnable onComplete) {
-        Thread thread = new Thread(() -> {
-            deleteBook(bookId);
-            Platform.runLater(onComplete);
-        });
-        thread.setDaemon(true);
-        thread.start();
+    public Future<?> deleteBookInBackground(int bookId, Runnable onComplete) {
+        return tasks.run(() -> deleteBook(bookId), onComplete);
     }
 
     /**
@@ -117,18 +198,147 @@ public class BookController  {
      *
      * @param onComplete the callback to execute upon completion
      * @param outputBooks the list to update with the retrieved books
+     * @return a handle to the background task
+     */
+    public Future<List<Book>> getAllBooksInBackground(Runnable onComplete, List<Book> outputBooks) {
+        return tasks.submitLatest(CATALOG_TASK, this::getAllBooks, books -> {
+            outputBooks.clear();
+            if (books != null) {
+                outputBooks.addAll(books);
+            }
+            onComplete.run();
+        });
+    }
+
+    /**
+     * Retrieves all books with their details in the background thread and updates the output list, then executes a callback.
+     * Any catalog load or search still running is cancelled.
+     *
+     * @param onComplete the callback to execute upon completion
+     * @param outputBooks the list to update with the retrieved books
+     * @return a handle to the background task
      */
-    public void getAllBooksInBackground(Runnable onComplete, List<Book> outputBooks) {
-        Thread thread = new Thread(() -> {
-            List<Book> books = getAllBooks();
-            Platform.runLater(() -> {
-                outputBooks.clear();
+    public Future<List<Book>> getAllBooksWithDetailsInBackground(Runnable onComplete, List<Book> outputBooks) {
+        return tasks.submitLatest(CATALOG_TASK, this::getAllBooksWithDetails, books -> {
+            outputBooks.clear();
+            if (books != null) {
                 outputBooks.addAll(books);
-                onComplete.run();
-            });
+            }
+            onComplete.run();
+        });
+    }
+
+    /**
+     * Retrieves one page of books in the background thread and passes it to a callback.
+     * Any catalog load or search still running is cancelled.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @param onComplete the callback receiving the page, or null if it could not be fetched
+     * @return a handle to the background task
+     */
+    public Future<List<Book>> getBooksAfterInBackground(int afterBookId, int pageSize, Consumer<List<Book>> onComplete) {
+        return tasks.submitLatest(CATALOG_TASK, () -> toBooks(getBookRowsAfter(afterBookId, pageSize)), onComplete);
+    }
+
+    /**
+     * Retrieves one page of books ordered by ID as immutable rows, starting after the given book ID.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return the next page of rows, or null if it could not be fetched
+     */
+    public List<BookRow> getBookRowsAfter(int afterBookId, int pageSize) {
+        try {
+            return booksDb.getBookRowsAfter(afterBookId, pageSize);
+        } catch (Exception e) {
+            System.err.println("Error fetching page of books: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the given books as immutable rows with their details.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rows, or null if they could not be fetched
+     */
+    public List<BookRow> getBookRowsWithDetails(List<Integer> bookIds) {
+        try {
+            return booksDb.getBookRowsWithDetails(bookIds);
+        } catch (Exception e) {
+            System.err.println("Error fetching books with details: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retrieves the given books as immutable rows with their details in the background thread and passes them to a callback.
+     *
+     * @param bookIds the IDs of the books
+     * @param onComplete the callback receiving the rows, or null if they could not be fetched
+     * @return a handle to the background task
+     */
+    public Future<List<BookRow>> getBookRowsWithDetailsInBackground(List<Integer> bookIds, Consumer<List<BookRow>> onComplete) {
+        return tasks.submit(() -> getBookRowsWithDetails(bookIds), onComplete);
+    }
+
+    /**
+     * Retrieves the given books with their details in the background thread and passes them to a callback.
+     *
+     * @param bookIds the IDs of the books
+     * @param onComplete the callback receiving the books, or null if they could not be fetched
+     * @return a handle to the background task
+     */
+    public Future<List<Book>> getBooksWithDetailsInBackground(List<Integer> bookIds, Consumer<List<Book>> onComplete) {
+        return tasks.submit(() -> getBooksWithDetails(bookIds), onComplete);
+    }
+
+    /**
+     * Searches for books with their details in the background thread and updates the output list, then executes a callback.
+     * Any catalog load or search still running is cancelled, so an older, slower result never replaces a newer one.
+     *
+     * @param searchTerm the term to search for
+     * @param outputBooks the list to update with the matching books
+     * @param onComplete the callback to execute upon completion
+     * @return a handle to the background task
+     */
+    public Future<List<Book>> searchBooksWithDetailsInBackground(String searchTerm, List<Book> outputBooks, Runnable onComplete) {
+        Search search = new Search(booksDb);
+        return tasks.submitLatest(CATALOG_TASK, () -> toBooks(search.searchBookRows(searchTerm)), books -> {
+            outputBooks.clear();
+            if (books != null) {
+                outputBooks.addAll(books);
+            }
+            onComplete.run();
         });
-        thread.setDaemon(true);
-        thread.start();
+    }
+
+    /**
+     * Searches for books with their details in the background and passes them to a callback on the JavaFX thread.
+     * Any catalog load or search still running is cancelled, which interrupts it and closes its cursor on the server.
+     *
+     * @param searchTerm the term to search for
+     * @param onResults the callback receiving the matching books
+     * @return a handle to the background task
+     */
+    public Future<List<Book>> searchBooksWithDetailsInBackground(String searchTerm, Consumer<List<Book>> onResults) {
+        Search search = new Search(booksDb);
+        return tasks.submitLatest(CATALOG_TASK, () -> toBooks(search.searchBookRows(searchTerm)), onResults);
+    }
+
+    /**
+     * Searches for books while the user types, matching the term at the start of words, and passes them
+     * with their details to a callback on the JavaFX thread. Like a submitted search, it cancels any catalog
+     * load or search still running.
+     *
+     * @param searchTerm the text typed so far
+     * @param onResults the callback receiving the matching books
+     * @return a handle to the background task
+     */
+    public Future<List<Book>> searchAsYouTypeInBackground(String searchTerm, Consumer<List<Book>> onResults) {
+        Search search = Search.asYouType(booksDb);
+        return tasks.submitLatest(CATALOG_TASK, () -> toBooks(search.searchBookRows(searchTerm)), onResults);
     }
 
     /*// Add rating to a book
@@ -183,4 +393,168 @@ public class BookController  {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the rating summary of a specific book.
+     *
+     * @param bookId the ID of the book
+     * @return the rating summary
+     */
+    public RatingSummary getRatingSummary(int bookId) {
+        try {
+            return booksDb.getRatingSummary(bookId);
+        } catch (Exception e) {
+            System.err.println("Error fetching rating summary for book: " + e.getMessage());
+            return RatingSummary.empty(bookId);
+        }
+    }
+
+    /**
+     * Recomputes the rating summaries of all books.
+     */
+    public void rebuildRatingSummaries() {
+        try {
+            booksDb.rebuildRatingSummaries();
+            System.out.println("Rating summaries rebuilt successfully!");
+        } catch (Exception e) {
+            System.err.println("Error rebuilding rating summaries: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recomputes the rating summaries of all books in the background thread and executes a callback on completion.
+     *
+     * @param onComplete the callback to execute upon completion
+     * @return a handle to the background task
+     */
+    public Future<?> rebuildRatingSummariesInBackground(Runnable onComplete) {
+        return tasks.run(this::rebuildRatingSummaries, onComplete);
+    }
+
+    /**
+     * Checks whether the catalog import and export and the author merge can run. They work on the
+     * collections of the normalized MongoDB schema directly, so they are not available for other databases.
+     *
+     * @return true if the database uses the normalized MongoDB schema
+     */
+    public boolean supportsCatalogJobs() {
+        return booksDb.getSchema() == BooksDbSchema.NORMALIZED;
+    }
+
+    /**
+     * Merges authors stored more than once under the same normalized name and rewrites their book links.
+     *
+     * @return the outcome of the merge, or null if it failed
+     */
+    public AuthorDeduplicator.Result deduplicateAuthors() {
+        if (!supportsCatalogJobs()) {
+            System.err.println("Error deduplicating authors: not supported by the " + booksDb.getSchema() + " database");
+            return null;
+        }
+        try (AuthorDeduplicator deduplicator = new AuthorDeduplicator()) {
+            AuthorDeduplicator.Result result = deduplicator.run();
+            System.out.println("Authors deduplicated: " + result);
+            return result;
+        } catch (Exception e) {
+            System.err.println("Error deduplicating authors: " + e.getMessage());
+            return null;
+        } finally {
+            // Books were changed behind the backend, even if the job failed part way.
+            booksDb.invalidateCaches();
+        }
+    }
+
+    /**
+     * Merges duplicate authors in the background thread and passes the outcome to a callback.
+     *
+     * @param onComplete the callback receiving the outcome, or null if the merge failed
+     * @return a handle to the background task
+     */
+    public Future<AuthorDeduplicator.Result> deduplicateAuthorsInBackground(Consumer<AuthorDeduplicator.Result> onComplete) {
+        return tasks.submit(this::deduplicateAuthors, onComplete);
+    }
+
+    /**
+     * Imports books from a CSV or NDJSON file, resuming an earlier interrupted import of the same file.
+     *
+     * @param file the file to import
+     * @return the result of the import, or null if it failed
+     */
+    public ImportProgress importCatalog(Path file) {
+        if (!supportsCatalogJobs()) {
+            System.err.println("Error importing catalog: not supported by the " + booksDb.getSchema() + " database");
+            return null;
+        }
+        try (CatalogImporter importer = new CatalogImporter(booksDb.getAllGenres())) {
+            ImportProgress progress = importer.importFile(file, batch -> System.out.println("Importing " + file.getFileName() + ": " + batch));
+            System.out.println("Catalog imported successfully!");
+            return progress;
+        } catch (Exception e) {
+            System.err.println("Error importing catalog: " + e.getMessage());
+            return null;
+        } finally {
+            // Books were changed behind the backend, even if the job failed part way.
+            booksDb.invalidateCaches();
+        }
+    }
+
+    /**
+     * Imports books from a file in the background thread and passes the result to a callback on completion.
+     *
+     * @param file the file to import
+     * @param onComplete the callback receiving the result of the import, or null if it failed
+     * @return a handle to the background task
+     */
+    public Future<ImportProgress> importCatalogInBackground(Path file, Consumer<ImportProgress> onComplete) {
+        return tasks.submit(() -> importCatalog(file), onComplete);
+    }
+
+    /**
+     * Exports the whole catalog to a CSV or NDJSON file, gzip-compressed if the name ends in .gz.
+     *
+     * @param file the file to write
+     * @return the number of books exported, or -1 if the export failed
+     */
+    public long exportCatalog(Path file) {
+        if (!supportsCatalogJobs()) {
+            System.err.println("Error exporting catalog: not supported by the " + booksDb.getSchema() + " database");
+            return -1;
+        }
+        try (CatalogExporter exporter = new CatalogExporter()) {
+            long exported = exporter.exportTo(file, count -> System.out.println("Exporting " + file.getFileName() + ": " + count + " books written"));
+            System.out.println("Catalog exported successfully!");
+            return exported;
+        } catch (Exception e) {
+            System.err.println("Error exporting catalog: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Exports the whole catalog in the background thread and passes the number of books to a callback on completion.
+     *
+     * @param file the file to write
+     * @param onComplete the callback receiving the number of books exported, or -1 if the export failed
+     * @return a handle to the background task
+     */
+    public Future<Long> exportCatalogInBackground(Path file, Consumer<Long> onComplete) {
+        return tasks.submit(() -> exportCatalog(file), onComplete);
+    }
+
+    /**
+     * Turns rows into property-backed books for binding to the table.
+     *
+     * @param rows the rows, or null
+     * @return the books, or null if the rows are null
+     */
+    private static List<Book> toBooks(List<BookRow> rows) {
+        if (rows == null) {
+            return null;
+        }
+        List<Book> books = new ArrayList<>(rows.size());
+        for (BookRow row : rows) {
+            books.add(row.toBook());
+        }
+        return books;
+    }
+}
@@ -1,6 +1,5 @@
 package kth.books.controller;
 
-import javafx.application.Platform;
 import kth.books.model.BooksDbInterface;
 import kth.books.model.Genre;
 import kth.books.DbConnect;
@@ -8,6 +7,7 @@ import kth.books.DbConnect;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Controller class for managing genre-related operations.
@@ -16,6 +16,7 @@ import java.util.List;
  */
 public class GenreController {
     private final BooksDbInterface booksDb;
+    private final BackgroundTasks tasks = BackgroundTasks.forController(GenreController.class);
 
     /**
      * Constructs a GenreController with the provided database interface.
@@ -40,6 +41,23 @@ public class GenreController {
         }
     }
 
+    /**
+     * Adds a new genre to the genre catalog.
+     *
+     * @param genre the genre to add
+     * @return the ID assigned to the genre, or -1 if it could not be added
+     */
+    public int addGenre(Genre genre) {
+        try {
+            int genreId = booksDb.addGenre(genre);
+            System.out.println("Genre added successfully!");
+            return genreId;
+        } catch (Exception e) {
+            System.err.println("Error adding genre: " + e.getMessage());
+            return -1;
+        }
+    }
+
     /**
      * Retrieves genres associated with a specific book from the database.
      *
@@ -75,18 +93,14 @@ public class GenreController {
      *
      * @param outputGenres the list to update with the retrieved genres
      * @param onComplete the callback to execute upon completion
+     * @return a handle to the background task
      */
-    public void getAllGenresInBackground(List<Genre> outputGenres, Runnable onComplete) {
-        Thread thread = new Thread(() -> {
-            List<Genre> genres = getAllGenres();
-            Platform.runLater(() -> {
-                outputGenres.clear();
-                outputGenres.addAll(genres);
-                onComplete.run();
-            });
+    public Future<List<Genre>> getAllGenresInBackground(List<Genre> outputGenres, Runnable onComplete) {
+        return tasks.submit(this::getAllGenres, genres -> {
+            outputGenres.clear();
+            outputGenres.addAll(genres);
+            onComplete.run();
         });
-        thread.setDaemon(true);
-        thread.start();
     }
 
     /**
@@ -95,18 +109,14 @@ public class GenreController {
      * @param bookId the ID of the book
      * @param outputGenres the list to update with the retrieved genres
      * @param onComplete the callback to execute upon completion
+     * @return a handle to the background task
      */
-    public void getGenresForBookInBackground(int bookId, List<Genre> outputGenres, Runnable onComplete) {
-        Thread thread = new Thread(() -> {
-            List<Genre> genres = getGenresForBook(bookId);
-            Platform.runLater(() -> {
-                outputGenres.clear();
-                outputGenres.addAll(genres);
-                onComplete.run();
-            });
+    public Future<List<Genre>> getGenresForBookInBackground(int bookId, List<Genre> outputGenres, Runnable onComplete) {
+        return tasks.submit(() -> getGenresForBook(bookId), genres -> {
+            outputGenres.clear();
+            outputGenres.addAll(genres);
+            onComplete.run();
         });
-        thread.setDaemon(true);
-        thread.start();
     }
 
     /**
@@ -115,13 +125,9 @@ public class GenreController {
      * @param bookId the ID of the book
      * @param genreId the ID of the genre
      * @param onComplete the callback to execute upon completion
+     * @return a handle to the background task
      */
-    public void linkGenreToBookInBackground(int bookId, int genreId, Runnable onComplete) {
-        Thread thread = new Thread(() -> {
-            linkGenreToBook(bookId, genreId);
-            Platform.runLater(onComplete);
-        });
-        thread.setDaemon(true);
-        thread.start();
+    public Future<?> linkGenreToBookInBackground(int bookId, int genreId, Runnable onComplete) {
+        return tasks.run(() -> linkGenreToBook(bookId, genreId), onComplete);
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package kth.books.io;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Sorts;
+import kth.books.DbConnect;
+import kth.books.model.BookDetailsPipeline;
+import kth.books.model.GenreDictionary;
+import kth.books.model.GenreRef;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the whole catalog to a CSV or NDJSON file.
+ * <p>
+ * Books are read through a server-side cursor in batches of {@code books.export.batchSize}, joined
+ * with their authors and genres by the {@link BookDetailsPipeline}, given their genre names from the
+ * Genre collection, which is read once per export, and written line by line through
+ * a buffered file channel, gzip-compressed when the file name ends in {@code .gz}. Only one batch
+ * is held in memory at a time, so the heap used does not depend on the size of the catalog.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class CatalogExporter implements AutoCloseable {
+    private static final int DEFAULT_BATCH_SIZE = Integer.getInteger("books.export.batchSize", 500);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PROGRESS_INTERVAL = 10_000;
+
+    private final MongoDatabase database;
+    private final int batchSize;
+
+    /**
+     * Constructs a CatalogExporter with the configured cursor batch size.
+     */
+    public CatalogExporter() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs a CatalogExporter.
+     *
+     * @param batchSize the number of books fetched per cursor round trip
+     */
+    public CatalogExporter(int batchSize) {
+        this.database = DbConnect.getDatabase();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Exports the catalog, choosing the format and compression from the file name.
+     *
+     * @param file the file to write; an existing file is replaced
+     * @param progressListener the listener receiving the number of books written so far
+     * @return the number of books written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportTo(Path file, LongConsumer progressListener) throws IOException {
+        boolean gzip = file.getFileName().toString().toLowerCase().endsWith(".gz");
+        return exportTo(file, ExportFormat.of(file), gzip, progressListener);
+    }
+
+    /**
+     * Exports the catalog in the given format.
+     *
+     * @param file the file to write; an existing file is replaced
+     * @param format the format to write
+     * @param gzip true to compress the file with gzip
+     * @param progressListener the listener receiving the number of books written so far
+     * @return the number of books written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportTo(Path file, ExportFormat format, boolean gzip, LongConsumer progressListener) throws IOException {
+        List<Bson> pipeline = new ArrayList<>();
+        pipeline.add(Aggregates.sort(Sorts.ascending("book_id")));
+        pipeline.addAll(BookDetailsPipeline.stages());
+        GenreDictionary genreNames = readGenres();
+
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = gzip
+                     ? new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)
+                     : Channels.newOutputStream(channel);
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+             MongoCursor<Document> cursor = database.getCollection("Book")
+                     .aggregate(pipeline)
+                     .allowDiskUse(true)
+                     .batchSize(batchSize)
+                     .cursor()) {
+            if (format.header() != null) {
+                writer.write(format.header());
+                writer.write('\n');
+            }
+            while (cursor.hasNext()) {
+                writer.write(format.format(cursor.next(), genreNames));
+                writer.write('\n');
+                written++;
+                if (written % PROGRESS_INTERVAL == 0) {
+                    progressListener.accept(written);
+                }
+            }
+        }
+        progressListener.accept(written);
+        return written;
+    }
+
+    /**
+     * Reads the genre names. If the Genre collection has not been seeded yet, no book can refer to
+     * a genre outside {@link GenreDictionary#DEFAULT_GENRES}, so those are used.
+     *
+     * @return the genre dictionary
+     */
+    private GenreDictionary readGenres() {
+        List<GenreRef> genres = database.getCollection("Genre", GenreRef.class).find().into(new ArrayList<>());
+        return new GenreDictionary(genres.isEmpty() ? GenreDictionary.DEFAULT_GENRES : genres);
+    }
+
+    /**
+     * Releases the database client.
+     */
+    @Override
+    public void close() {
+        DbConnect.release();
+    }
+}
@@ -0,0 +1,351 @@
+package kth.books.io;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import kth.books.DbConnect;
+import kth.books.model.AuthorRef;
+import kth.books.model.AuthorResolver;
+import kth.books.model.BooksDbException;
+import kth.books.model.Genre;
+import kth.books.model.IdAllocator;
+import org.bson.Document;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Imports books from CSV or NDJSON files in bulk.
+ * <p>
+ * Lines are read in batches of {@code books.import.batchSize} and parsed in parallel on
+ * {@code books.import.parallelism} threads, while batches are written one after another in file
+ * order. For each batch the book and rating IDs are reserved in one round trip, authors are
+ * resolved against an in-memory map, with one lookup and one bulk upsert on the normalized name
+ * for the names not seen before, and genres are
+ * looked up by name. Each collection is then written with a single unordered bulkWrite. Progress is
+ * checkpointed after every batch (see {@link ImportCheckpoint}), so an interrupted import can be
+ * resumed by importing the same file again.
+ * <p>
+ * The books are written in the layout of {@link kth.books.model.BooksDbImpl}, with BookAuthor, BookGenre
+ * and BookRating links, which an {@link kth.books.model.EmbeddedBooksDb} never reads.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class CatalogImporter implements AutoCloseable {
+    private static final int DEFAULT_BATCH_SIZE = Integer.getInteger("books.import.batchSize", 1_000);
+    private static final int DEFAULT_PARALLELISM = Integer.getInteger("books.import.parallelism",
+            Runtime.getRuntime().availableProcessors());
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+    private static final UpdateOptions UPDATE_UPSERT = new UpdateOptions().upsert(true);
+
+    private final MongoDatabase database;
+    private final IdAllocator idAllocator;
+    private final AuthorResolver authorResolver;
+    private final int batchSize;
+    private final int parallelism;
+    private final Map<String, Genre> genresByName = new HashMap<>();
+    private final Map<String, Integer> authorIds = new HashMap<>();
+
+    private long linesRead;
+    private long booksImported;
+    private long linesRejected;
+
+    /**
+     * A line read from the file.
+     *
+     * @param number the line number
+     * @param text the content of the line
+     */
+    private record Line(long number, String text) {
+    }
+
+    /**
+     * A batch of parsed lines.
+     *
+     * @param firstLine the number of the first line in the batch
+     * @param lastLine the number of the last line in the batch
+     * @param records the records parsed from the batch
+     * @param rejected the number of lines that could not be parsed
+     */
+    private record ParsedBatch(long firstLine, long lastLine, List<ImportRecord> records, int rejected) {
+    }
+
+    /**
+     * Constructs a CatalogImporter with the configured batch size and parallelism.
+     *
+     * @param genres the genres books can be linked to
+     */
+    public CatalogImporter(List<Genre> genres) {
+        this(genres, DEFAULT_BATCH_SIZE, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Constructs a CatalogImporter.
+     *
+     * @param genres the genres books can be linked to
+     * @param batchSize the number of lines written per bulk write
+     * @param parallelism the number of threads parsing lines
+     */
+    public CatalogImporter(List<Genre> genres, int batchSize, int parallelism) {
+        this.database = DbConnect.getDatabase();
+        this.idAllocator = new IdAllocator(database);
+        this.authorResolver = new AuthorResolver(database, idAllocator);
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        for (Genre genre : genres) {
+            genresByName.put(genre.getName().toLowerCase(Locale.ROOT), genre);
+        }
+    }
+
+    /**
+     * Imports a file, resuming from its checkpoint if an earlier import of it was interrupted.
+     *
+     * @param file the CSV or NDJSON file to import
+     * @param progressListener the listener receiving the progress after every batch
+     * @return the final progress
+     * @throws IOException if the file cannot be read
+     */
+    public ImportProgress importFile(Path file, Consumer<ImportProgress> progressListener) throws IOException {
+        ImportFormat format = ImportFormat.of(file);
+        ImportCheckpoint checkpoint = ImportCheckpoint.load(file);
+        int batch = checkpoint.getBatchSize() > 0 ? checkpoint.getBatchSize() : batchSize;
+        long start = System.nanoTime();
+        linesRead = 0;
+        booksImported = 0;
+        linesRejected = 0;
+
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("catalog-import-", 0).daemon(true).factory());
+        Deque<Future<ParsedBatch>> parsing = new ArrayDeque<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<Line> lines = new ArrayList<>(batch);
+            long lineNumber = 0;
+            String text;
+            while ((text = reader.readLine()) != null) {
+                lineNumber++;
+                linesRead++;
+                if ((lineNumber == 1 && format.hasHeader()) || lineNumber <= checkpoint.getCommittedLine() || text.isBlank()) {
+                    continue;
+                }
+                lines.add(new Line(lineNumber, text));
+                if (lines.size() == batch) {
+                    List<Line> toParse = lines;
+                    parsing.add(parsers.submit(() -> parse(format, toParse)));
+                    lines = new ArrayList<>(batch);
+                    // Keep a bounded number of batches in memory while the database catches up.
+                    if (parsing.size() > parallelism) {
+                        write(parsing.poll().get(), batch, checkpoint);
+                        progressListener.accept(progress(start));
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                List<Line> toParse = lines;
+                parsing.add(parsers.submit(() -> parse(format, toParse)));
+            }
+            while (!parsing.isEmpty()) {
+                write(parsing.poll().get(), batch, checkpoint);
+                progressListener.accept(progress(start));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BooksDbException("Import of " + file + " was interrupted");
+        } catch (ExecutionException e) {
+            throw new BooksDbException("Error parsing " + file, e.getCause());
+        } finally {
+            parsers.shutdownNow();
+        }
+        checkpoint.delete();
+        return progress(start);
+    }
+
+    /**
+     * Releases the database client.
+     */
+    @Override
+    public void close() {
+        DbConnect.release();
+    }
+
+    /**
+     * Parses a batch of lines, counting the lines that cannot be parsed instead of failing.
+     *
+     * @param format the format of the file
+     * @param lines the lines to parse
+     * @return the parsed batch
+     */
+    private static ParsedBatch parse(ImportFormat format, List<Line> lines) {
+        List<ImportRecord> records = new ArrayList<>(lines.size());
+        int rejected = 0;
+        for (Line line : lines) {
+            try {
+                records.add(format.parse(line.number(), line.text()));
+            } catch (RuntimeException e) {
+                rejected++;
+                System.err.println("Skipping line " + line.number() + ": " + e.getMessage());
+            }
+        }
+        return new ParsedBatch(lines.get(0).number(), lines.get(lines.size() - 1).number(), records, rejected);
+    }
+
+    /**
+     * Writes a parsed batch with one unordered bulk write per collection.
+     *
+     * @param parsed the parsed batch
+     * @param batch the batch size of the import
+     * @param checkpoint the checkpoint of the import
+     */
+    private void write(ParsedBatch parsed, int batch, ImportCheckpoint checkpoint) {
+        linesRejected += parsed.rejected();
+        List<ImportRecord> records = parsed.records();
+        if (records.isEmpty()) {
+            checkpoint.commit(parsed.lastLine());
+            return;
+        }
+
+        int ratingCount = 0;
+        for (ImportRecord record : records) {
+            if (record.rating() != null) {
+                ratingCount++;
+            }
+        }
+        int firstBookId;
+        int firstRatingId;
+        if (checkpoint.isPending(parsed.firstLine())) {
+            firstBookId = checkpoint.getPendingFirstBookId();
+            firstRatingId = checkpoint.getPendingFirstRatingId();
+        } else {
+            firstBookId = idAllocator.reserve("Book", "book_id", records.size()).first();
+            firstRatingId = ratingCount == 0 ? 0 : idAllocator.reserve("BookRating", "rating_id", ratingCount).first();
+        }
+        checkpoint.begin(batch, parsed.firstLine(), firstBookId, firstRatingId);
+
+        Map<String, Integer> authors = resolveAuthors(records);
+        String today = LocalDate.now().toString();
+        List<WriteModel<Document>> books = new ArrayList<>(records.size());
+        List<WriteModel<Document>> bookAuthors = new ArrayList<>();
+        List<WriteModel<Document>> bookGenres = new ArrayList<>();
+        List<WriteModel<Document>> ratings = new ArrayList<>(ratingCount);
+
+        int bookId = firstBookId;
+        int ratingId = firstRatingId;
+        for (ImportRecord record : records) {
+            Document book = new Document("book_id", bookId)
+                    .append("ISBN", record.isbn())
+                    .append("title", record.title())
+                    .append("publication_date", record.publicationDate());
+            if (record.rating() != null) {
+                int value = record.rating();
+                book.append("rating_summary", new Document("count", 1).append("sum", value).append("min", value)
+                        .append("max", value).append("latest", value).append("latest_date", today));
+                Document rating = new Document("rating_id", ratingId)
+                        .append("book_id", bookId)
+                        .append("value", value)
+                        .append("rating_date", today);
+                ratings.add(new ReplaceOneModel<>(Filters.eq("rating_id", ratingId), rating, UPSERT));
+                ratingId++;
+            }
+            // updated_at is set from the server's clock, which the change feeds of all clients compare against.
+            books.add(new UpdateOneModel<>(Filters.eq("book_id", bookId),
+                    new Document("$set", book).append("$currentDate", new Document("updated_at", true)), UPDATE_UPSERT));
+
+            for (ImportRecord.AuthorName author : record.authors()) {
+                Document link = new Document("book_id", bookId).append("author_id", authors.get(authorKey(author)));
+                bookAuthors.add(new ReplaceOneModel<>(link, link, UPSERT));
+            }
+            for (String genreName : record.genres()) {
+                Genre genre = genresByName.get(genreName.toLowerCase(Locale.ROOT));
+                if (genre == null) {
+                    System.err.println("Unknown genre '" + genreName + "' on line " + record.line());
+                    continue;
+                }
+                Document link = new Document("book_id", bookId).append("genre_id", genre.getId());
+                bookGenres.add(new ReplaceOneModel<>(link, link, UPSERT));
+            }
+            bookId++;
+        }
+
+        bulkWrite("Book", books);
+        bulkWrite("BookAuthor", bookAuthors);
+        bulkWrite("BookGenre", bookGenres);
+        bulkWrite("BookRating", ratings);
+        booksImported += records.size();
+        checkpoint.commit(parsed.lastLine());
+    }
+
+    /**
+     * Resolves the authors of a batch to IDs. Authors already seen by this import are taken from
+     * memory, the rest are found or created by normalized name with the {@link AuthorResolver}.
+     *
+     * @param records the records of the batch
+     * @return the ID of every author in the batch, keyed by {@link #authorKey}
+     */
+    private Map<String, Integer> resolveAuthors(List<ImportRecord> records) {
+        List<AuthorRef> unknown = new ArrayList<>();
+        for (ImportRecord record : records) {
+            for (ImportRecord.AuthorName author : record.authors()) {
+                if (!authorIds.containsKey(authorKey(author))) {
+                    unknown.add(new AuthorRef(0, author.firstName(), author.lastName()));
+                }
+            }
+        }
+        if (!unknown.isEmpty()) {
+            authorIds.putAll(authorResolver.resolve(unknown));
+        }
+        return authorIds;
+    }
+
+    /**
+     * Creates the key authors are deduplicated by.
+     *
+     * @param author the author name
+     * @return the normalized name
+     */
+    private static String authorKey(ImportRecord.AuthorName author) {
+        return AuthorResolver.nameKey(author.firstName(), author.lastName());
+    }
+
+    /**
+     * Writes a list of models to a collection with one unordered bulk write.
+     *
+     * @param collection the name of the collection
+     * @param writes the writes
+     */
+    private void bulkWrite(String collection, List<WriteModel<Document>> writes) {
+        if (!writes.isEmpty()) {
+            database.getCollection(collection).bulkWrite(writes, UNORDERED);
+        }
+    }
+
+    /**
+     * Creates a snapshot of the import progress.
+     *
+     * @param start the value of {@link System#nanoTime()} when the import started
+     * @return the progress
+     */
+    private ImportProgress progress(long start) {
+        return new ImportProgress(linesRead, booksImported, linesRejected, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,145 @@
+package kth.books.io;
+
+import kth.books.model.GenreDictionary;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The file formats the catalog exporter can write, one book per line.
+ * <p>
+ * Both formats use the same layout as {@link ImportFormat}, so an exported file can be imported again.
+ * NDJSON additionally includes the IDs and the full rating summary of each book.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public enum ExportFormat {
+    /**
+     * Comma-separated values with a header line.
+     */
+    CSV {
+        @Override
+        public String header() {
+            return "isbn,title,publication_date,authors,genres,rating";
+        }
+
+        @Override
+        public String format(Document book, GenreDictionary genreNames) {
+            StringBuilder authors = new StringBuilder();
+            for (Document author : book.getList("authors", Document.class, List.of())) {
+                if (!authors.isEmpty()) {
+                    authors.append(';');
+                }
+                authors.append(author.getString("first_name")).append(' ').append(author.getString("last_name"));
+            }
+            StringBuilder genres = new StringBuilder();
+            for (Document genre : book.getList("genres", Document.class, List.of())) {
+                if (!genres.isEmpty()) {
+                    genres.append(';');
+                }
+                genres.append(genreName(genre, genreNames));
+            }
+            Document summary = book.get("rating_summary", Document.class);
+            String rating = summary == null || summary.get("count", Number.class).intValue() == 0 ? ""
+                    : String.valueOf(Math.round(summary.get("sum", Number.class).doubleValue()
+                    / summary.get("count", Number.class).doubleValue()));
+
+            return quote(book.getString("ISBN")) + ',' + quote(book.getString("title")) + ','
+                    + quote(book.getString("publication_date")) + ',' + quote(authors.toString()) + ','
+                    + quote(genres.toString()) + ',' + rating;
+        }
+    },
+
+    /**
+     * Newline-delimited JSON, one object per line.
+     */
+    NDJSON {
+        private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+
+        @Override
+        public String header() {
+            return null;
+        }
+
+        @Override
+        public String format(Document book, GenreDictionary genreNames) {
+            Document json = new Document("book_id", book.get("book_id"))
+                    .append("isbn", book.getString("ISBN"))
+                    .append("title", book.getString("title"))
+                    .append("publication_date", book.getString("publication_date"))
+                    .append("authors", book.get("authors"))
+                    .append("genres", book.getList("genres", Document.class, List.of()).stream()
+                            .map(genre -> genreName(genre, genreNames))
+                            .toList());
+            Document summary = book.get("rating_summary", Document.class);
+            if (summary != null && summary.get("count", Number.class).intValue() > 0) {
+                json.append("rating", Math.round(summary.get("sum", Number.class).doubleValue()
+                        / summary.get("count", Number.class).doubleValue()));
+                json.append("rating_summary", summary);
+            }
+            return json.toJson(JSON);
+        }
+    };
+
+    /**
+     * Retrieves the header line of the format.
+     *
+     * @return the header line, or null if the format has none
+     */
+    public abstract String header();
+
+    /**
+     * Formats one book produced by the book details pipeline as a line.
+     *
+     * @param book the book document, whose genres only carry their IDs
+     * @param genreNames the dictionary the genre names are resolved from
+     * @return the line, without a line separator
+     */
+    public abstract String format(Document book, GenreDictionary genreNames);
+
+    /**
+     * Chooses the format from a file name, ignoring a trailing {@code .gz};
+     * {@code .ndjson}, {@code .jsonl} and {@code .json} mean NDJSON, anything else CSV.
+     *
+     * @param file the file to export to
+     * @return the format of the file
+     */
+    public static ExportFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? NDJSON : CSV;
+    }
+
+    /**
+     * Resolves the name of a genre of a book.
+     *
+     * @param genre the genre document, with its genre_id
+     * @param genreNames the genre dictionary
+     * @return the name of the genre
+     */
+    private static String genreName(Document genre, GenreDictionary genreNames) {
+        return genreNames.resolve(genre.get("genre_id", Number.class).intValue()).name();
+    }
+
+    /**
+     * Quotes a CSV field if it contains a comma, a quote or a line break.
+     *
+     * @param value the field
+     * @return the field as written to the file
+     */
+    private static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,169 @@
+package kth.books.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * The point an import has reached, stored next to the imported file so that an interrupted
+ * import can be resumed.
+ * <p>
+ * Before a batch is written the IDs reserved for it are recorded as pending. If the import stops
+ * while the batch is being written, the resumed import writes the same batch again with the same
+ * IDs, and since every write is an upsert the batch ends up stored exactly once.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class ImportCheckpoint {
+    private final Path file;
+    private long committedLine;
+    private int batchSize;
+    private long pendingFirstLine = -1;
+    private int pendingFirstBookId;
+    private int pendingFirstRatingId;
+
+    /**
+     * Constructs an empty checkpoint stored in the given file.
+     *
+     * @param file the checkpoint file
+     */
+    private ImportCheckpoint(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the checkpoint of an import file, or starts a new one if the file has none.
+     *
+     * @param importFile the file being imported
+     * @return the checkpoint
+     */
+    public static ImportCheckpoint load(Path importFile) {
+        ImportCheckpoint checkpoint = new ImportCheckpoint(importFile.resolveSibling(importFile.getFileName() + ".checkpoint"));
+        if (Files.exists(checkpoint.file)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(checkpoint.file)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read import checkpoint " + checkpoint.file, e);
+            }
+            checkpoint.committedLine = Long.parseLong(properties.getProperty("committedLine", "0"));
+            checkpoint.batchSize = Integer.parseInt(properties.getProperty("batchSize", "0"));
+            checkpoint.pendingFirstLine = Long.parseLong(properties.getProperty("pendingFirstLine", "-1"));
+            checkpoint.pendingFirstBookId = Integer.parseInt(properties.getProperty("pendingFirstBookId", "0"));
+            checkpoint.pendingFirstRatingId = Integer.parseInt(properties.getProperty("pendingFirstRatingId", "0"));
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Retrieves the last line whose book has been written.
+     *
+     * @return the last committed line, 0 if nothing has been imported
+     */
+    public long getCommittedLine() {
+        return committedLine;
+    }
+
+    /**
+     * Retrieves the batch size the import was started with, which a resumed import must keep
+     * so that the pending batch is rebuilt from the same lines.
+     *
+     * @return the batch size, 0 if the import has not started
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Tells whether a batch starting at the given line was being written when the import stopped.
+     *
+     * @param firstLine the first line of the batch
+     * @return true if the batch is pending
+     */
+    public boolean isPending(long firstLine) {
+        return pendingFirstLine == firstLine;
+    }
+
+    /**
+     * Retrieves the first book ID reserved for the pending batch.
+     *
+     * @return the first book ID
+     */
+    public int getPendingFirstBookId() {
+        return pendingFirstBookId;
+    }
+
+    /**
+     * Retrieves the first rating ID reserved for the pending batch.
+     *
+     * @return the first rating ID
+     */
+    public int getPendingFirstRatingId() {
+        return pendingFirstRatingId;
+    }
+
+    /**
+     * Records that a batch is about to be written with the given IDs.
+     *
+     * @param batchSize the batch size of the import
+     * @param firstLine the first line of the batch
+     * @param firstBookId the first book ID reserved for the batch
+     * @param firstRatingId the first rating ID reserved for the batch
+     */
+    public void begin(int batchSize, long firstLine, int firstBookId, int firstRatingId) {
+        this.batchSize = batchSize;
+        this.pendingFirstLine = firstLine;
+        this.pendingFirstBookId = firstBookId;
+        this.pendingFirstRatingId = firstRatingId;
+        save();
+    }
+
+    /**
+     * Records that a batch has been written.
+     *
+     * @param lastLine the last line of the batch
+     */
+    public void commit(long lastLine) {
+        this.committedLine = lastLine;
+        this.pendingFirstLine = -1;
+        save();
+    }
+
+    /**
+     * Removes the checkpoint once the whole file has been imported.
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete import checkpoint " + file, e);
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file and moves it into place, so a crash
+     * never leaves a half-written checkpoint behind.
+     */
+    private void save() {
+        Properties properties = new Properties();
+        properties.setProperty("committedLine", Long.toString(committedLine));
+        properties.setProperty("batchSize", Integer.toString(batchSize));
+        properties.setProperty("pendingFirstLine", Long.toString(pendingFirstLine));
+        properties.setProperty("pendingFirstBookId", Integer.toString(pendingFirstBookId));
+        properties.setProperty("pendingFirstRatingId", Integer.toString(pendingFirstRatingId));
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temporary)) {
+                properties.store(writer, "Catalog import checkpoint");
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write import checkpoint " + file, e);
+        }
+    }
+}
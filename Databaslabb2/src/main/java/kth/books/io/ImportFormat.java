@@ -0,0 +1,146 @@
+package kth.books.io;
+
+import org.bson.Document;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The file formats the catalog importer can read, one book per line.
+ * <p>
+ * CSV files start with the header {@code isbn,title,publication_date,authors,genres,rating}, where
+ * authors are full names and both authors and genres are separated by semicolons. Fields may be
+ * quoted with double quotes but cannot span lines. NDJSON files hold one object per line with the
+ * fields {@code isbn}, {@code title}, {@code publication_date}, {@code authors} (an array of objects
+ * with {@code first_name} and {@code last_name}), {@code genres} (an array of names) and {@code rating}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public enum ImportFormat {
+    /**
+     * Comma-separated values with a header line.
+     */
+    CSV {
+        @Override
+        public boolean hasHeader() {
+            return true;
+        }
+
+        @Override
+        public ImportRecord parse(long line, String text) {
+            List<String> fields = splitCsv(text);
+            if (fields.size() < 5) {
+                throw new IllegalArgumentException("Expected at least 5 fields but found " + fields.size());
+            }
+            List<ImportRecord.AuthorName> authors = new ArrayList<>();
+            for (String name : splitList(fields.get(3))) {
+                authors.add(ImportRecord.AuthorName.parse(name));
+            }
+            String rating = fields.size() > 5 ? fields.get(5).trim() : "";
+            return new ImportRecord(line, fields.get(0).trim(), fields.get(1).trim(), fields.get(2).trim(),
+                    authors, splitList(fields.get(4)), rating.isEmpty() ? null : Integer.valueOf(rating));
+        }
+    },
+
+    /**
+     * Newline-delimited JSON, one object per line.
+     */
+    NDJSON {
+        @Override
+        public boolean hasHeader() {
+            return false;
+        }
+
+        @Override
+        public ImportRecord parse(long line, String text) {
+            Document doc = Document.parse(text);
+            List<ImportRecord.AuthorName> authors = new ArrayList<>();
+            for (Document author : doc.getList("authors", Document.class, List.of())) {
+                authors.add(new ImportRecord.AuthorName(author.getString("first_name"), author.getString("last_name")));
+            }
+            Number rating = doc.get("rating", Number.class);
+            return new ImportRecord(line, doc.getString("isbn"), doc.getString("title"), doc.getString("publication_date"),
+                    authors, doc.getList("genres", String.class, List.of()), rating == null ? null : rating.intValue());
+        }
+    };
+
+    /**
+     * Tells whether the first line of a file in this format is a header.
+     *
+     * @return true if the first line should be skipped
+     */
+    public abstract boolean hasHeader();
+
+    /**
+     * Parses one line of a file.
+     *
+     * @param line the line number
+     * @param text the content of the line
+     * @return the parsed record
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public abstract ImportRecord parse(long line, String text);
+
+    /**
+     * Chooses the format from a file's extension; {@code .ndjson}, {@code .jsonl} and
+     * {@code .json} mean NDJSON, anything else CSV.
+     *
+     * @param file the file to import
+     * @return the format of the file
+     */
+    public static ImportFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? NDJSON : CSV;
+    }
+
+    /**
+     * Splits one CSV line into fields, honouring double-quoted fields and doubled quotes inside them.
+     *
+     * @param line the line
+     * @return the fields
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * Splits a semicolon-separated list, dropping empty entries.
+     *
+     * @param value the list
+     * @return the entries
+     */
+    private static List<String> splitList(String value) {
+        List<String> entries = new ArrayList<>();
+        for (String entry : value.split(";")) {
+            if (!entry.isBlank()) {
+                entries.add(entry.trim());
+            }
+        }
+        return entries;
+    }
+}
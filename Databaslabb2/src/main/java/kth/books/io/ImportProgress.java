@@ -0,0 +1,33 @@
+package kth.books.io;
+
+/**
+ * The progress of a catalog import.
+ *
+ * @param linesRead the number of lines read from the file, including skipped ones
+ * @param booksImported the number of books written to the database
+ * @param linesRejected the number of lines that could not be parsed
+ * @param elapsedNanos the time spent importing so far
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public record ImportProgress(long linesRead, long booksImported, long linesRejected, long elapsedNanos) {
+
+    /**
+     * Calculates the import rate.
+     *
+     * @return the number of books imported per second
+     */
+    public double rowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : booksImported * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    /**
+     * Returns a one-line description of the progress.
+     *
+     * @return the progress
+     */
+    @Override
+    public String toString() {
+        return String.format("%d books imported, %d lines rejected, %.0f rows/s", booksImported, linesRejected, rowsPerSecond());
+    }
+}
@@ -0,0 +1,41 @@
+package kth.books.io;
+
+import java.util.List;
+
+/**
+ * One book read from an import file.
+ *
+ * @param line the line number in the file, starting at 1
+ * @param isbn the ISBN of the book
+ * @param title the title of the book
+ * @param publicationDate the publication date of the book
+ * @param authors the authors of the book
+ * @param genres the names of the book's genres
+ * @param rating the initial rating of the book, or null if it has none
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public record ImportRecord(long line, String isbn, String title, String publicationDate,
+                           List<AuthorName> authors, List<String> genres, Integer rating) {
+
+    /**
+     * The name of an author as written in an import file.
+     *
+     * @param firstName the first name of the author
+     * @param lastName the last name of the author
+     */
+    public record AuthorName(String firstName, String lastName) {
+
+        /**
+         * Splits a full name at its last space into first and last name.
+         *
+         * @param fullName the full name
+         * @return the author name
+         */
+        public static AuthorName parse(String fullName) {
+            String name = fullName.trim();
+            int space = name.lastIndexOf(' ');
+            return space < 0 ? new AuthorName("", name) : new AuthorName(name.substring(0, space).trim(), name.substring(space + 1));
+        }
+    }
+}
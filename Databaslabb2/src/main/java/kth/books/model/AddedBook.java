@@ -0,0 +1,15 @@
+package kth.books.model;
+
+import java.util.List;
+
+/**
+ * The IDs assigned when a book was added together with its authors and first rating.
+ *
+ * @param bookId the ID assigned to the book
+ * @param authorIds the IDs of the authors, in the order they were given, each once even if its name was given twice
+ * @param ratingId the ID assigned to the first rating, or 0 if the book was added without one
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public record AddedBook(int bookId, List<Integer> authorIds, int ratingId) {
+}
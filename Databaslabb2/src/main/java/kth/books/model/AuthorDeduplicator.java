@@ -0,0 +1,166 @@
+package kth.books.model;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import kth.books.DbConnect;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One-off job that merges authors stored more than once under the same normalized name.
+ * <p>
+ * Authors written before names were deduplicated are first given their {@code name_key}
+ * (see {@link AuthorResolver#backfillNameKeys}), unless the index bootstrap has done so already.
+ * The authors are then grouped by key, and every group with more than one author is merged on one
+ * of {@code books.dedup.parallelism} threads: the author with the lowest ID is kept, the BookAuthor
+ * links of the others are rewritten to it, links made redundant by the rewrite are removed, and the
+ * other authors are deleted. Links are rewritten
+ * before authors are deleted, so an interrupted run leaves no dangling links and can be run again.
+ * Finally the declared indexes are verified, which creates the unique name_key index once no
+ * duplicates are left.
+ * <p>
+ * The job works on the collections of the normalized schema ({@link BooksDbSchema#NORMALIZED}) only;
+ * run against an {@link EmbeddedBooksDb} database it would delete authors the books still embed.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class AuthorDeduplicator implements AutoCloseable {
+    private static final int DEFAULT_PARALLELISM = Integer.getInteger("books.dedup.parallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    private final MongoDatabase database;
+    private final int parallelism;
+
+    /**
+     * The outcome of a deduplication run.
+     *
+     * @param keysBackfilled the number of authors that were given a name key
+     * @param groupsMerged the number of names that were stored more than once
+     * @param authorsRemoved the number of duplicate authors deleted
+     * @param linksRewritten the number of BookAuthor links moved to the kept author
+     * @param linksRemoved the number of BookAuthor links removed because the book already had the kept author
+     */
+    public record Result(long keysBackfilled, long groupsMerged, long authorsRemoved,
+                         long linksRewritten, long linksRemoved) {
+    }
+
+    /**
+     * Constructs an AuthorDeduplicator with the configured parallelism.
+     */
+    public AuthorDeduplicator() {
+        this(DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Constructs an AuthorDeduplicator.
+     *
+     * @param parallelism the number of groups merged at the same time
+     */
+    public AuthorDeduplicator(int parallelism) {
+        this.database = DbConnect.getDatabase();
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Runs the deduplication.
+     *
+     * @return the outcome
+     */
+    public Result run() {
+        long backfilled = AuthorResolver.backfillNameKeys(database);
+
+        List<Document> groups = database.getCollection("Author").aggregate(List.of(
+                Aggregates.group("$name_key", Accumulators.push("ids", "$author_id"), Accumulators.sum("count", 1)),
+                Aggregates.match(Filters.gt("count", 1))
+        )).allowDiskUse(true).into(new ArrayList<>());
+
+        AtomicLong removed = new AtomicLong();
+        AtomicLong rewritten = new AtomicLong();
+        AtomicLong redundant = new AtomicLong();
+        ExecutorService mergers = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("author-dedup-", 0).daemon(true).factory());
+        try {
+            List<Future<?>> merges = new ArrayList<>();
+            for (Document group : groups) {
+                List<Integer> ids = new ArrayList<>(group.getList("ids", Integer.class));
+                merges.add(mergers.submit(() -> merge(ids, removed, rewritten, redundant)));
+            }
+            for (Future<?> merge : merges) {
+                merge.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BooksDbException("Author deduplication was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new BooksDbException("Author deduplication failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            mergers.shutdownNow();
+        }
+
+        for (String problem : new IndexManager(database).ensureIndexes()) {
+            System.err.println("Index drift: " + problem);
+        }
+        return new Result(backfilled, groups.size(), removed.get(), rewritten.get(), redundant.get());
+    }
+
+    /**
+     * Merges the authors of one name into the one with the lowest ID.
+     *
+     * @param ids the IDs of the authors with the same name
+     * @param removed the counter of deleted authors
+     * @param rewritten the counter of rewritten links
+     * @param redundant the counter of removed links
+     */
+    private void merge(List<Integer> ids, AtomicLong removed, AtomicLong rewritten, AtomicLong redundant) {
+        int keep = Collections.min(ids);
+        List<Integer> duplicates = new ArrayList<>(ids);
+        duplicates.removeIf(id -> id == keep);
+
+        MongoCollection<Document> links = database.getCollection("BookAuthor");
+        List<Integer> bookIds = links.distinct("book_id", Filters.in("author_id", duplicates), Integer.class)
+                .into(new ArrayList<>());
+        rewritten.addAndGet(links.updateMany(Filters.in("author_id", duplicates),
+                Updates.set("author_id", keep)).getModifiedCount());
+
+        // A book that had more than one of the duplicates now has the kept author more than once.
+        List<ObjectId> extraLinks = new ArrayList<>();
+        for (Document book : links.aggregate(List.of(
+                Aggregates.match(Filters.eq("author_id", keep)),
+                Aggregates.group("$book_id", Accumulators.push("links", "$_id"), Accumulators.sum("count", 1)),
+                Aggregates.match(Filters.gt("count", 1))))) {
+            List<ObjectId> bookLinks = book.getList("links", ObjectId.class);
+            extraLinks.addAll(bookLinks.subList(1, bookLinks.size()));
+        }
+        if (!extraLinks.isEmpty()) {
+            redundant.addAndGet(links.deleteMany(Filters.in("_id", extraLinks)).getDeletedCount());
+        }
+
+        removed.addAndGet(database.getCollection("Author").deleteMany(Filters.in("author_id", duplicates)).getDeletedCount());
+
+        // Deleted links carry no book_id in change events, so the books are touched for the change feed.
+        if (!bookIds.isEmpty()) {
+            database.getCollection("Book").updateMany(Filters.in("book_id", bookIds), Updates.currentDate("updated_at"));
+        }
+    }
+
+    /**
+     * Releases the database connection.
+     */
+    @Override
+    public void close() {
+        DbConnect.release();
+    }
+}
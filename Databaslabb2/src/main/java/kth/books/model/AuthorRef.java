@@ -0,0 +1,22 @@
+package kth.books.model;
+
+/**
+ * An immutable reference to an author, as returned by the read API of {@link BooksDbInterface}.
+ *
+ * @param id the ID of the author
+ * @param firstName the first name of the author
+ * @param lastName the last name of the author
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public record AuthorRef(int id, String firstName, String lastName) {
+
+    /**
+     * Creates a property-backed author for binding to the view.
+     *
+     * @return the author
+     */
+    public Author toAuthor() {
+        return new Author(id, firstName, lastName);
+    }
+}
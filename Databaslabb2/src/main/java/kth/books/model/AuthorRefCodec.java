@@ -0,0 +1,63 @@
+package kth.books.model;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Codec reading and writing Author documents as {@link AuthorRef}s, straight from and to BSON.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class AuthorRefCodec implements Codec<AuthorRef> {
+
+    @Override
+    public AuthorRef decode(BsonReader reader, DecoderContext decoderContext) {
+        int authorId = 0;
+        String firstName = null;
+        String lastName = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "author_id" -> authorId = BsonFields.readInt(reader);
+                case "first_name" -> firstName = BsonFields.readString(reader);
+                case "last_name" -> lastName = BsonFields.readString(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new AuthorRef(authorId, firstName, lastName);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, AuthorRef author, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("author_id", author.id());
+        writeString(writer, "first_name", author.firstName());
+        writeString(writer, "last_name", author.lastName());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<AuthorRef> getEncoderClass() {
+        return AuthorRef.class;
+    }
+
+    /**
+     * Writes a string field, or a null if the value is null.
+     *
+     * @param writer the writer
+     * @param name the name of the field
+     * @param value the value
+     */
+    static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        } else {
+            writer.writeNull(name);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package kth.books.model;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Finds authors by name and creates the ones that do not exist yet, so that each person is stored once.
+ * <p>
+ * Every Author document carries a {@code name_key}, its first and last name case-folded, stripped
+ * of accents and with runs of whitespace collapsed, which has a unique index. Authors are resolved
+ * by looking their keys up with one query; the missing ones are created with one unordered bulk
+ * write of upserts on the key, so if another client creates the same author at the same time,
+ * both end up with the same ID. Authors written before names were deduplicated have no key; they
+ * are given one with {@link #backfillNameKeys} once, by {@link IndexManager} before it creates the
+ * name_key index, or by {@link AuthorDeduplicator}. An author resolved while that migration is still
+ * running may be created again, and is merged by the next deduplication run.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class AuthorResolver {
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int BACKFILL_BATCH_SIZE = 1_000;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final MongoCollection<Document> authors;
+    private final IdAllocator idAllocator;
+
+    /**
+     * Constructs an AuthorResolver.
+     *
+     * @param database the database holding the Author collection
+     * @param idAllocator the allocator new author IDs are taken from
+     */
+    public AuthorResolver(MongoDatabase database, IdAllocator idAllocator) {
+        this.authors = database.getCollection("Author");
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Creates the key authors are deduplicated by, so that for example "José García" and
+     * "jose  GARCIA" are the same author.
+     *
+     * @param firstName the first name, or null
+     * @param lastName the last name, or null
+     * @return the normalized name
+     */
+    public static String nameKey(String firstName, String lastName) {
+        return normalize(firstName) + "|" + normalize(lastName);
+    }
+
+    /**
+     * Gives every author without a name key its key, in batches of unordered updates.
+     *
+     * @param database the database holding the Author collection
+     * @return the number of authors updated
+     */
+    public static long backfillNameKeys(MongoDatabase database) {
+        MongoCollection<Document> authors = database.getCollection("Author");
+        long updated = 0;
+        List<WriteModel<Document>> batch = new ArrayList<>();
+        for (Document author : authors.find(Filters.exists("name_key", false))
+                .projection(Projections.include("first_name", "last_name"))) {
+            String key = nameKey(author.getString("first_name"), author.getString("last_name"));
+            batch.add(new UpdateOneModel<>(Filters.eq("_id", author.getObjectId("_id")), Updates.set("name_key", key)));
+            if (batch.size() == BACKFILL_BATCH_SIZE) {
+                updated += authors.bulkWrite(batch, UNORDERED).getModifiedCount();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            updated += authors.bulkWrite(batch, UNORDERED).getModifiedCount();
+        }
+        return updated;
+    }
+
+    /**
+     * Finds the author with the given name, creating it if it does not exist.
+     *
+     * @param firstName the first name
+     * @param lastName the last name
+     * @return the ID of the author
+     */
+    public int findOrCreate(String firstName, String lastName) {
+        return resolve(List.of(new AuthorRef(0, firstName, lastName))).get(nameKey(firstName, lastName));
+    }
+
+    /**
+     * Finds the authors with the given names, creating the ones that do not exist, in at most
+     * three round trips however many names are given.
+     *
+     * @param names the names to resolve; the IDs of the refs are ignored
+     * @return the ID of every author, keyed by {@link #nameKey}
+     */
+    public Map<String, Integer> resolve(Collection<AuthorRef> names) {
+        Map<String, AuthorRef> byKey = new LinkedHashMap<>();
+        for (AuthorRef name : names) {
+            byKey.putIfAbsent(nameKey(name.firstName(), name.lastName()), name);
+        }
+        Map<String, Integer> ids = new HashMap<>();
+        if (byKey.isEmpty()) {
+            return ids;
+        }
+        readIds(byKey.keySet(), ids);
+
+        List<String> missing = new ArrayList<>();
+        for (String key : byKey.keySet()) {
+            if (!ids.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            int authorId = idAllocator.reserve("Author", "author_id", missing.size()).first();
+            List<WriteModel<Document>> upserts = new ArrayList<>(missing.size());
+            for (String key : missing) {
+                AuthorRef name = byKey.get(key);
+                upserts.add(new UpdateOneModel<>(Filters.eq("name_key", key), Updates.setOnInsert(
+                        new Document("author_id", authorId++)
+                                .append("first_name", name.firstName())
+                                .append("last_name", name.lastName())), UPSERT));
+            }
+            try {
+                authors.bulkWrite(upserts, UNORDERED);
+            } catch (MongoBulkWriteException e) {
+                // Another client inserted some of the authors first; theirs are read back below.
+                for (BulkWriteError error : e.getWriteErrors()) {
+                    if (error.getCode() != DUPLICATE_KEY) {
+                        throw e;
+                    }
+                }
+            }
+            readIds(missing, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Reads the IDs of the authors with the given keys. Until existing duplicates have been merged
+     * by {@link AuthorDeduplicator}, a key can match several authors; the lowest ID is used, which
+     * is the one the deduplicator keeps.
+     *
+     * @param keys the name keys
+     * @param ids the map to add the IDs to
+     */
+    private void readIds(Collection<String> keys, Map<String, Integer> ids) {
+        for (Document doc : authors.find(Filters.in("name_key", keys))
+                .projection(Projections.fields(Projections.include("name_key", "author_id"), Projections.excludeId()))) {
+            ids.merge(doc.getString("name_key"), doc.getInteger("author_id"), Math::min);
+        }
+    }
+
+    private static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String stripped = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFKD)).replaceAll("");
+        // Upper-casing first folds characters such as ß that have no single lower-case equivalent.
+        String folded = stripped.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(folded).replaceAll(" ").strip();
+    }
+}
@@ -1,13 +1,18 @@
 package kth.books.model;
 
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.StringBinding;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.property.*;
+import javafx.beans.value.ObservableStringValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import kth.books.model.BookRating;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.StringJoiner;
 
 
 /**
@@ -20,11 +25,15 @@ public class Book {
     private StringProperty ISBN;
     private StringProperty title;
     private StringProperty publicationDate;
-    private ObservableList<Author> authors;
+    private final ObservableList<Author> authors = FXCollections.observableArrayList();
     private StringProperty rating;
     private final ObservableList<Genre> genres = FXCollections.observableArrayList();
     private ObservableList<BookRating> ratings = FXCollections.observableArrayList();
 
+    // The display strings are computed when a cell first asks for them and cached until the list changes.
+    private final StringBinding authorsText = Bindings.createStringBinding(() -> join(authors), authors);
+    private final StringBinding genresText = Bindings.createStringBinding(() -> join(genres), genres);
+
     /**
      * Constructs a Book with the specified ID, ISBN, title, publication date, and rating.
      *
@@ -39,7 +48,6 @@ public class Book {
         this.ISBN = new SimpleStringProperty(ISBN);
         this.title = new SimpleStringProperty(title);
         this.publicationDate = new SimpleStringProperty(publicationDate);
-        this.authors = FXCollections.observableArrayList();
         this.rating = new SimpleStringProperty(rating);
 
     }
@@ -166,8 +174,18 @@ public class Book {
      *
      * @param authors the new list of authors
      */
-    public void setAuthors(ObservableList<Author> authors) {
-        this.authors = authors;
+    public void setAuthors(List<Author> authors) {
+        this.authors.setAll(authors);
+    }
+
+    /**
+     * Provides the authors of the book as a comma-separated display string,
+     * which is only rebuilt when the authors change.
+     *
+     * @return the observable display string of the authors
+     */
+    public ObservableStringValue authorsTextProperty() {
+        return authorsText;
     }
 
     /**
@@ -206,6 +224,16 @@ public class Book {
         this.genres.setAll(genres);
     }
 
+    /**
+     * Provides the genre names of the book as a comma-separated display string,
+     * which is only rebuilt when the genres change.
+     *
+     * @return the observable display string of the genres
+     */
+    public ObservableStringValue genresTextProperty() {
+        return genresText;
+    }
+
     /**
      * Retrieves the rating of the book.
      *
@@ -250,6 +278,52 @@ public class Book {
     public void setRatings(ObservableList<BookRating> ratings) {
         this.ratings = ratings;
     }
-}
 
+    /**
+     * Copies the fields, authors, genres and rating of another book into this one,
+     * so a row shown in a table can be updated in place.
+     *
+     * @param other the book to copy from
+     */
+    public void copyFrom(Book other) {
+        setISBN(other.getISBN());
+        setTitle(other.getTitle());
+        setPublicationDate(other.getPublicationDate());
+        setAuthors(other.getAuthors());
+        setGenres(other.getGenres());
+        setRating(other.getRating());
+    }
+
+    /**
+     * Copies the fields, authors, genres and rating of a row into this book,
+     * so a row shown in a table can be updated in place.
+     *
+     * @param row the row to copy from
+     */
+    public void copyFrom(BookRow row) {
+        setISBN(row.isbn());
+        setTitle(row.title());
+        setPublicationDate(row.publicationDate());
+        List<Author> rowAuthors = new ArrayList<>();
+        for (AuthorRef author : row.authors()) {
+            rowAuthors.add(author.toAuthor());
+        }
+        setAuthors(rowAuthors);
+        setGenres(row.toGenres());
+        setRating(row.rating().toDisplayString());
+    }
 
+    /**
+     * Joins the display names of authors or genres with commas.
+     *
+     * @param items the authors or genres
+     * @return the joined names
+     */
+    private static String join(List<?> items) {
+        StringJoiner text = new StringJoiner(", ");
+        for (Object item : items) {
+            text.add(item instanceof Genre genre ? genre.getName() : item.toString());
+        }
+        return text.toString();
+    }
+}
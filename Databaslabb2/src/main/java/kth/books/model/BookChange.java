@@ -0,0 +1,12 @@
+package kth.books.model;
+
+/**
+ * A change to a book reported by the {@link BookChangeFeed}.
+ *
+ * @param bookId the ID of the changed book
+ * @param deleted true if the book was deleted, false if it was added or changed
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public record BookChange(int bookId, boolean deleted) {
+}
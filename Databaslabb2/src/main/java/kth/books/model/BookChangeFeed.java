@@ -0,0 +1,239 @@
+package kth.books.model;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import kth.books.DbConnect;
+import org.bson.BsonDocument;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Follows changes to books made by this or any other client.
+ * <p>
+ * When the server supports change streams (a replica set, which may be a single node), the
+ * Book, BookAuthor, BookGenre, BookRating and BookTombstone collections are watched and every
+ * event is reported as soon as it happens. Otherwise the feed falls back to polling the indexed
+ * {@code Book.updated_at} and {@code BookTombstone.deleted_at} fields every
+ * {@code books.changes.pollMs} milliseconds. Writers set both fields from the server's clock with
+ * {@code $currentDate}, so the polls of clients whose clocks disagree never skip a change.
+ * <p>
+ * The feed follows the collections of the normalized schema and is only started for it.
+ * <p>
+ * The event of a deleted document only carries its {@code _id}, so it cannot name the book of a
+ * removed BookAuthor, BookGenre or BookRating link. Writers that delete links therefore also set
+ * {@code Book.updated_at}, which both the change stream and the polling fallback report.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class BookChangeFeed implements AutoCloseable {
+    private static final List<String> COLLECTIONS = List.of("Book", "BookAuthor", "BookGenre", "BookRating", "BookTombstone");
+    private static final long POLL_INTERVAL_MS = Long.getLong("books.changes.pollMs", 2_000);
+
+    private final MongoDatabase database;
+    private volatile boolean running;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private Thread thread;
+
+    /**
+     * Constructs a BookChangeFeed with its own reference to the shared database client.
+     */
+    public BookChangeFeed() {
+        this.database = DbConnect.getDatabase();
+    }
+
+    /**
+     * Starts following changes in a background thread.
+     *
+     * @param listener the listener receiving the changes, called from the background thread
+     */
+    public synchronized void start(Consumer<BookChange> listener) {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(() -> follow(listener), "book-change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops following changes and releases the database client.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+        if (current != null) {
+            current.close();
+        }
+        thread.interrupt();
+        DbConnect.release();
+    }
+
+    /**
+     * Follows changes through a change stream, or by polling if change streams are not supported.
+     *
+     * @param listener the listener receiving the changes
+     */
+    private void follow(Consumer<BookChange> listener) {
+        try {
+            watch(listener);
+        } catch (MongoException e) {
+            if (running) {
+                System.out.println("Change streams unavailable (" + e.getMessage() + "), polling for changes instead.");
+                poll(listener);
+            }
+        }
+    }
+
+    /**
+     * Watches the book collections through a change stream, resuming after the last seen
+     * event if the stream is interrupted.
+     *
+     * @param listener the listener receiving the changes
+     * @throws MongoException if the server does not support change streams
+     */
+    private void watch(Consumer<BookChange> listener) {
+        BsonDocument resumeToken = null;
+        while (running) {
+            var stream = database.watch(List.of(Aggregates.match(Filters.in("ns.coll", COLLECTIONS))))
+                    .fullDocument(FullDocument.UPDATE_LOOKUP);
+            if (resumeToken != null) {
+                stream = stream.resumeAfter(resumeToken);
+            }
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = stream.cursor()) {
+                cursor = current;
+                while (running) {
+                    ChangeStreamDocument<Document> event = current.tryNext();
+                    if (event == null) {
+                        continue;
+                    }
+                    resumeToken = event.getResumeToken();
+                    BookChange change = toChange(event);
+                    if (change != null) {
+                        listener.accept(change);
+                    }
+                }
+            } catch (MongoException e) {
+                if (resumeToken == null) {
+                    throw e;
+                }
+                if (running) {
+                    System.err.println("Change stream interrupted, resuming: " + e.getMessage());
+                    sleep(POLL_INTERVAL_MS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts a change stream event into a book change.
+     *
+     * @param event the change stream event
+     * @return the book change, or null if the event does not identify a book, as for deletes
+     */
+    private static BookChange toChange(ChangeStreamDocument<Document> event) {
+        Document document = event.getFullDocument();
+        if (event.getNamespace() == null || document == null || document.get("book_id") == null) {
+            return null;
+        }
+        int bookId = document.get("book_id", Number.class).intValue();
+        return new BookChange(bookId, "BookTombstone".equals(event.getNamespace().getCollectionName()));
+    }
+
+    /**
+     * Polls for books changed or deleted since the last poll.
+     *
+     * @param listener the listener receiving the changes
+     */
+    private void poll(Consumer<BookChange> listener) {
+        Cursor updates = new Cursor(database.getCollection("Book"), "updated_at");
+        Cursor deletes = new Cursor(database.getCollection("BookTombstone"), "deleted_at");
+        while (running) {
+            try {
+                for (int bookId : updates.next()) {
+                    listener.accept(new BookChange(bookId, false));
+                }
+                for (int bookId : deletes.next()) {
+                    listener.accept(new BookChange(bookId, true));
+                }
+            } catch (MongoException e) {
+                System.err.println("Error polling for changes: " + e.getMessage());
+            }
+            sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Sleeps between polls, returning early if the feed is closed.
+     *
+     * @param millis the time to sleep in milliseconds
+     */
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the books whose timestamp field has advanced since the previous read. Documents with
+     * exactly the last seen timestamp are read again and skipped if already reported, so a write
+     * landing in the same millisecond as the previous poll is not missed.
+     */
+    private static class Cursor {
+        private final MongoCollection<Document> collection;
+        private final String field;
+        private Date last;
+        private Set<Integer> reportedAtLast = new HashSet<>();
+
+        Cursor(MongoCollection<Document> collection, String field) {
+            this.collection = collection;
+            this.field = field;
+            Document newest = collection.find(Filters.exists(field))
+                    .sort(Sorts.descending(field))
+                    .projection(Projections.include("book_id", field))
+                    .first();
+            this.last = newest != null ? newest.getDate(field) : new Date(0);
+            if (newest != null && newest.get("book_id") != null) {
+                reportedAtLast.add(newest.get("book_id", Number.class).intValue());
+            }
+        }
+
+        List<Integer> next() {
+            List<Integer> bookIds = new ArrayList<>();
+            for (Document doc : collection.find(Filters.gte(field, last))
+                    .sort(Sorts.ascending(field))
+                    .projection(Projections.include("book_id", field))) {
+                Date timestamp = doc.getDate(field);
+                int bookId = doc.get("book_id", Number.class).intValue();
+                if (timestamp.after(last)) {
+                    last = timestamp;
+                    reportedAtLast = new HashSet<>();
+                }
+                if (reportedAtLast.add(bookId)) {
+                    bookIds.add(bookId);
+                }
+            }
+            return bookIds;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package kth.books.model;
+
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UnwindOptions;
+import com.mongodb.client.model.Variable;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.List;
+
+/**
+ * The aggregation stages that turn Book documents into fully populated books.
+ * <p>
+ * Each book is joined with its authors and genre IDs through $lookup and projected down to the
+ * fields that are displayed or exported. The rating comes from the summary stored on the book,
+ * so no ratings need to be read.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public final class BookDetailsPipeline {
+
+    private BookDetailsPipeline() {
+    }
+
+    /**
+     * Creates the stages to append after the stages that select, order and limit the books.
+     * The resulting documents have the fields book_id, ISBN, title, publication_date, rating_summary,
+     * authors (author_id, first_name, last_name) and genres (genre_id). Genre names are not joined;
+     * they are resolved from the in-memory {@link GenreDictionary}.
+     *
+     * @return the details stages
+     */
+    public static List<Bson> stages() {
+        List<Variable<String>> bookIdVariable = List.of(new Variable<>("bookId", "$book_id"));
+        Bson matchBook = Aggregates.match(Filters.expr(new Document("$eq", List.of("$book_id", "$$bookId"))));
+
+        return List.of(
+                Aggregates.lookup("BookAuthor", bookIdVariable, List.of(
+                        matchBook,
+                        Aggregates.lookup("Author", "author_id", "author_id", "author"),
+                        Aggregates.unwind("$author", new UnwindOptions().preserveNullAndEmptyArrays(true)),
+                        Aggregates.project(new Document("_id", 0)
+                                .append("author_id", 1)
+                                .append("first_name", new Document("$ifNull", List.of("$author.first_name", "$first_name")))
+                                .append("last_name", new Document("$ifNull", List.of("$author.last_name", "$last_name"))))
+                ), "authors"),
+                Aggregates.lookup("BookGenre", bookIdVariable, List.of(
+                        matchBook,
+                        Aggregates.project(new Document("_id", 0).append("genre_id", 1))
+                ), "genres"),
+                Aggregates.project(new Document("_id", 0)
+                        .append("book_id", 1)
+                        .append("ISBN", 1)
+                        .append("title", 1)
+                        .append("publication_date", 1)
+                        .append("authors", 1)
+                        .append("genres", 1)
+                        .append("rating_summary", 1))
+        );
+    }
+}
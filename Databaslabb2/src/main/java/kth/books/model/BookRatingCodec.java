@@ -0,0 +1,54 @@
+package kth.books.model;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.time.LocalDate;
+
+/**
+ * Codec reading and writing BookRating documents straight from and to BSON.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class BookRatingCodec implements Codec<BookRating> {
+
+    @Override
+    public BookRating decode(BsonReader reader, DecoderContext decoderContext) {
+        int ratingId = 0;
+        int bookId = 0;
+        int value = 0;
+        String ratingDate = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "rating_id" -> ratingId = BsonFields.readInt(reader);
+                case "book_id" -> bookId = BsonFields.readInt(reader);
+                case "value" -> value = BsonFields.readInt(reader);
+                case "rating_date" -> ratingDate = BsonFields.readString(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new BookRating(ratingId, bookId, value, ratingDate != null ? LocalDate.parse(ratingDate) : null);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, BookRating rating, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("rating_id", rating.getRatingId());
+        writer.writeInt32("book_id", rating.getBookId());
+        writer.writeInt32("value", rating.getValue());
+        AuthorRefCodec.writeString(writer, "rating_date",
+                rating.getRatingDate() != null ? rating.getRatingDate().toString() : null);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<BookRating> getEncoderClass() {
+        return BookRating.class;
+    }
+}
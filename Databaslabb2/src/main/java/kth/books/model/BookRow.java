@@ -0,0 +1,72 @@
+package kth.books.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable, compact view of a book as returned by the read API of {@link BooksDbInterface}.
+ * <p>
+ * Unlike {@link Book}, a row allocates no JavaFX properties or observable lists, so large result
+ * sets can be loaded, cached, searched and passed between threads cheaply. Rows are turned into
+ * property-backed books with {@link #toBook()} only when they are bound to the table.
+ *
+ * @param id the ID of the book
+ * @param isbn the ISBN of the book
+ * @param title the title of the book
+ * @param publicationDate the publication date of the book
+ * @param authors the authors of the book, empty if they were not fetched
+ * @param genres the genres of the book, empty if they were not fetched
+ * @param rating the rating statistics of the book
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public record BookRow(int id, String isbn, String title, String publicationDate,
+                      List<AuthorRef> authors, List<GenreRef> genres, RatingSummary rating) {
+
+    /**
+     * Constructs a BookRow, copying the author and genre lists so that the row stays immutable.
+     */
+    public BookRow {
+        authors = List.copyOf(authors);
+        genres = List.copyOf(genres);
+    }
+
+    /**
+     * Creates a property-backed book for binding to the view.
+     *
+     * @return the book, with its authors, genres and displayed rating
+     */
+    public Book toBook() {
+        Book book = new Book(id, isbn, title, publicationDate, rating.toDisplayString());
+        for (AuthorRef author : authors) {
+            book.addAuthor(author.toAuthor());
+        }
+        if (!genres.isEmpty()) {
+            book.setGenres(toGenres());
+        }
+        return book;
+    }
+
+    /**
+     * Creates a copy of the row with other genres, for example with their names resolved.
+     *
+     * @param genres the genres of the copy
+     * @return the copy
+     */
+    public BookRow withGenres(List<GenreRef> genres) {
+        return new BookRow(id, isbn, title, publicationDate, authors, genres, rating);
+    }
+
+    /**
+     * Creates the genres of the row for binding to the view.
+     *
+     * @return the genres
+     */
+    List<Genre> toGenres() {
+        List<Genre> result = new ArrayList<>(genres.size());
+        for (GenreRef genre : genres) {
+            result.add(genre.toGenre());
+        }
+        return result;
+    }
+}
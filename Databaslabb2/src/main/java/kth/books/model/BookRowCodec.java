@@ -0,0 +1,124 @@
+package kth.books.model;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codec reading Book documents as {@link BookRow}s straight from BSON, without building an
+ * intermediate {@link org.bson.Document}. Besides the fields of the Book collection it reads the
+ * {@code authors} and {@code genres} arrays added by the {@link BookDetailsPipeline}, so the
+ * details aggregation can be decoded the same way. Fields it does not know are skipped.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class BookRowCodec implements Codec<BookRow> {
+    private final AuthorRefCodec authorCodec = new AuthorRefCodec();
+    private final GenreRefCodec genreCodec = new GenreRefCodec();
+
+    @Override
+    public BookRow decode(BsonReader reader, DecoderContext decoderContext) {
+        int bookId = 0;
+        String isbn = null;
+        String title = null;
+        String publicationDate = null;
+        List<AuthorRef> authors = List.of();
+        List<GenreRef> genres = List.of();
+        long[] summary = null;
+        String latestDate = null;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "book_id" -> bookId = BsonFields.readInt(reader);
+                case "ISBN" -> isbn = BsonFields.readString(reader);
+                case "title" -> title = BsonFields.readString(reader);
+                case "publication_date" -> publicationDate = BsonFields.readString(reader);
+                case "authors" -> authors = readArray(reader, authorCodec, decoderContext);
+                case "genres" -> genres = readArray(reader, genreCodec, decoderContext);
+                case "rating_summary" -> {
+                    if (reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+                        reader.skipValue();
+                        break;
+                    }
+                    summary = new long[5];
+                    reader.readStartDocument();
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                        switch (reader.readName()) {
+                            case "count" -> summary[0] = BsonFields.readLong(reader);
+                            case "sum" -> summary[1] = BsonFields.readLong(reader);
+                            case "min" -> summary[2] = BsonFields.readLong(reader);
+                            case "max" -> summary[3] = BsonFields.readLong(reader);
+                            case "latest" -> summary[4] = BsonFields.readLong(reader);
+                            case "latest_date" -> latestDate = BsonFields.readString(reader);
+                            default -> reader.skipValue();
+                        }
+                    }
+                    reader.readEndDocument();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        RatingSummary rating = summary == null || summary[0] == 0 ? RatingSummary.empty(bookId)
+                : new RatingSummary(bookId, (int) summary[0], summary[1], (int) summary[2], (int) summary[3],
+                (int) summary[4], latestDate != null ? LocalDate.parse(latestDate) : null);
+        return new BookRow(bookId, isbn, title, publicationDate, authors, genres, rating);
+    }
+
+    /**
+     * Writes the fields of the Book document; authors and genres are stored in their own collections.
+     *
+     * @param writer the writer
+     * @param row the row to write
+     * @param encoderContext the encoder context
+     */
+    @Override
+    public void encode(BsonWriter writer, BookRow row, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("book_id", row.id());
+        AuthorRefCodec.writeString(writer, "ISBN", row.isbn());
+        AuthorRefCodec.writeString(writer, "title", row.title());
+        AuthorRefCodec.writeString(writer, "publication_date", row.publicationDate());
+        RatingSummary rating = row.rating();
+        if (rating.count() > 0) {
+            writer.writeStartDocument("rating_summary");
+            writer.writeInt32("count", rating.count());
+            writer.writeInt64("sum", rating.sum());
+            writer.writeInt32("min", rating.min());
+            writer.writeInt32("max", rating.max());
+            writer.writeInt32("latest", rating.latest());
+            AuthorRefCodec.writeString(writer, "latest_date",
+                    rating.latestDate() != null ? rating.latestDate().toString() : null);
+            writer.writeEndDocument();
+        }
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<BookRow> getEncoderClass() {
+        return BookRow.class;
+    }
+
+    private static <T> List<T> readArray(BsonReader reader, Codec<T> codec, DecoderContext decoderContext) {
+        if (reader.getCurrentBsonType() != BsonType.ARRAY) {
+            reader.skipValue();
+            return List.of();
+        }
+        List<T> values = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            values.add(codec.decode(reader, decoderContext));
+        }
+        reader.readEndArray();
+        return values;
+    }
+}
@@ -0,0 +1,30 @@
+package kth.books.model;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * The codec registry of the application: the codecs of the model types, followed by the driver's
+ * default codecs, so that typed collections such as {@code MongoCollection<BookRow>} decode straight
+ * from BSON while {@link org.bson.Document} collections keep working.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public final class BooksCodecs {
+    private static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(new BookRowCodec(), new AuthorRefCodec(), new GenreRefCodec(), new BookRatingCodec()),
+            MongoClientSettings.getDefaultCodecRegistry());
+
+    private BooksCodecs() {
+    }
+
+    /**
+     * Retrieves the codec registry.
+     *
+     * @return the registry
+     */
+    public static CodecRegistry registry() {
+        return REGISTRY;
+    }
+}
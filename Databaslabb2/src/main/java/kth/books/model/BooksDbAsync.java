@@ -0,0 +1,302 @@
+package kth.books.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous counterpart of {@link BooksDbInterface} whose operations return {@link CompletableFuture}s,
+ * so that dependent operations can be composed instead of nested in callbacks.
+ * <p>
+ * The blocking calls of the wrapped database run on a dedicated, process-wide I/O executor of virtual
+ * threads, so a caller waiting for the database does not hold a platform thread. At most
+ * {@code books.async.maxInFlight} operations (by default the size of the connection pool) run at the
+ * same time; further operations wait for a permit on their own virtual thread.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class BooksDbAsync {
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("books.async.maxInFlight",
+            Integer.getInteger("books.db.pool.maxSize", 20));
+
+    private static final ExecutorService IO_EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("books-io-", 0).factory());
+    private static final Semaphore IN_FLIGHT = new Semaphore(MAX_IN_FLIGHT);
+
+    private final BooksDbInterface booksDb;
+
+    /**
+     * Constructs a BooksDbAsync running the operations of the given database.
+     *
+     * @param booksDb the database to run the operations on
+     */
+    public BooksDbAsync(BooksDbInterface booksDb) {
+        this.booksDb = booksDb;
+    }
+
+    /**
+     * Retrieves the blocking database the operations run on.
+     *
+     * @return the wrapped database
+     */
+    public BooksDbInterface blocking() {
+        return booksDb;
+    }
+
+    /**
+     * Retrieves all books from the database.
+     *
+     * @return a future completing with a list of books
+     */
+    public CompletableFuture<List<Book>> getAllBooks() {
+        return supply(booksDb::getAllBooks);
+    }
+
+    /**
+     * Retrieves all books with their authors, genres and a summarized rating populated.
+     *
+     * @return a future completing with a list of fully populated books
+     */
+    public CompletableFuture<List<Book>> getAllBooksWithDetails() {
+        return supply(booksDb::getAllBooksWithDetails);
+    }
+
+    /**
+     * Retrieves one page of books ordered by ID, starting after the given book ID.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return a future completing with the next page of books
+     */
+    public CompletableFuture<List<Book>> getBooksAfter(int afterBookId, int pageSize) {
+        return supply(() -> booksDb.getBooksAfter(afterBookId, pageSize));
+    }
+
+    /**
+     * Retrieves the given books with their authors, genres and a summarized rating populated.
+     *
+     * @param bookIds the IDs of the books
+     * @return a future completing with a list of fully populated books
+     */
+    public CompletableFuture<List<Book>> getBooksWithDetails(List<Integer> bookIds) {
+        return supply(() -> booksDb.getBooksWithDetails(bookIds));
+    }
+
+    /**
+     * Adds a new book to the database and assigns it a new ID.
+     *
+     * @param book the book to add
+     * @return a future completing with the ID assigned to the book
+     */
+    public CompletableFuture<Integer> addBook(Book book) {
+        return supply(() -> booksDb.addBook(book));
+    }
+
+    /**
+     * Adds a new book together with its authors, genres and first rating as one atomic operation.
+     *
+     * @param book the book to add
+     * @param authors the authors of the book, found or created by name
+     * @param genreIds the IDs of the existing genres of the book
+     * @param ratingValue the first rating of the book, or 0 to add the book without a rating
+     * @return a future completing with the IDs assigned to the book, its authors and its rating
+     */
+    public CompletableFuture<AddedBook> addBookWithDetails(Book book, List<Author> authors, List<Integer> genreIds, int ratingValue) {
+        return supply(() -> booksDb.addBookWithDetails(book, authors, genreIds, ratingValue));
+    }
+
+    /**
+     * Deletes a book from the database by its ID.
+     *
+     * @param bookId the ID of the book to delete
+     * @return a future completing when the book has been deleted
+     */
+    public CompletableFuture<Void> deleteBook(int bookId) {
+        return run(() -> booksDb.deleteBook(bookId));
+    }
+
+    /**
+     * Retrieves authors associated with a specific book.
+     *
+     * @param bookId the ID of the book
+     * @return a future completing with a list of authors
+     */
+    public CompletableFuture<List<Author>> getAuthorsForBook(int bookId) {
+        return supply(() -> booksDb.getAuthorsForBook(bookId));
+    }
+
+    /**
+     * Adds a new author to the database and assigns it a new ID.
+     *
+     * @param author the author to add
+     * @return a future completing with the ID assigned to the author
+     */
+    public CompletableFuture<Integer> addAuthor(Author author) {
+        return supply(() -> booksDb.addAuthor(author));
+    }
+
+    /**
+     * Links an author to a book.
+     *
+     * @param bookId the ID of the book
+     * @param authorId the ID of the author
+     * @return a future completing when the author has been linked
+     */
+    public CompletableFuture<Void> linkAuthorToBook(int bookId, int authorId) {
+        return run(() -> booksDb.linkAuthorToBook(bookId, authorId));
+    }
+
+    /**
+     * Retrieves all genres from the database.
+     *
+     * @return a future completing with a list of genres
+     */
+    public CompletableFuture<List<Genre>> getAllGenres() {
+        return supply(booksDb::getAllGenres);
+    }
+
+    /**
+     * Retrieves genres associated with a specific book.
+     *
+     * @param bookId the ID of the book
+     * @return a future completing with a list of genres
+     */
+    public CompletableFuture<List<Genre>> getGenresForBook(int bookId) {
+        return supply(() -> booksDb.getGenresForBook(bookId));
+    }
+
+    /**
+     * Links a genre to a book.
+     *
+     * @param bookId the ID of the book
+     * @param genreId the ID of the genre
+     * @return a future completing when the genre has been linked
+     */
+    public CompletableFuture<Void> linkGenreToBook(int bookId, int genreId) {
+        return run(() -> booksDb.linkGenreToBook(bookId, genreId));
+    }
+
+    /**
+     * Links several genres to a book concurrently.
+     *
+     * @param bookId the ID of the book
+     * @param genreIds the IDs of the genres
+     * @return a future completing when every genre has been linked
+     */
+    public CompletableFuture<Void> linkGenresToBook(int bookId, List<Integer> genreIds) {
+        return CompletableFuture.allOf(genreIds.stream()
+                .map(genreId -> linkGenreToBook(bookId, genreId))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Adds a rating to a book.
+     *
+     * @param bookId the ID of the book
+     * @param ratingValue the value of the rating
+     * @return a future completing when the rating has been added
+     */
+    public CompletableFuture<Void> addRatingToBook(int bookId, int ratingValue) {
+        return run(() -> booksDb.addRatingToBook(bookId, ratingValue));
+    }
+
+    /**
+     * Retrieves ratings for a specific book.
+     *
+     * @param bookId the ID of the book
+     * @return a future completing with a list of ratings
+     */
+    public CompletableFuture<List<BookRating>> getRatingsForBook(int bookId) {
+        return supply(() -> booksDb.getRatingsForBook(bookId));
+    }
+
+    /**
+     * Retrieves the pre-aggregated rating statistics of a book.
+     *
+     * @param bookId the ID of the book
+     * @return a future completing with the rating summary
+     */
+    public CompletableFuture<RatingSummary> getRatingSummary(int bookId) {
+        return supply(() -> booksDb.getRatingSummary(bookId));
+    }
+
+    /**
+     * Retrieves the pre-aggregated rating statistics of several books in one round trip.
+     *
+     * @param bookIds the IDs of the books
+     * @return a future completing with the rating summary of each existing book, keyed by book ID
+     */
+    public CompletableFuture<Map<Integer, RatingSummary>> getRatingSummaries(List<Integer> bookIds) {
+        return supply(() -> booksDb.getRatingSummaries(bookIds));
+    }
+
+    /**
+     * Recomputes the rating statistics of every book from its ratings.
+     *
+     * @return a future completing when the statistics have been rebuilt
+     */
+    public CompletableFuture<Void> rebuildRatingSummaries() {
+        return run(booksDb::rebuildRatingSummaries);
+    }
+
+    /**
+     * Searches for books matching a given search term using the given search engine and
+     * populates their authors, genres and summarized rating.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return a future completing with a list of fully populated matching books
+     */
+    public CompletableFuture<List<Book>> searchBooksWithDetails(String searchTerm, SearchMode mode, int limit) {
+        return supply(() -> booksDb.searchBooksWithDetails(searchTerm, mode, limit));
+    }
+
+    /**
+     * Stops accepting new operations and interrupts running ones.
+     */
+    public static void shutdown() {
+        IO_EXECUTOR.shutdownNow();
+    }
+
+    /**
+     * Runs a blocking operation on the I/O executor once a permit is available.
+     *
+     * @param operation the operation to run
+     * @param <T> the type of the result
+     * @return a future completing with the result of the operation, or exceptionally if it failed or was
+     *         interrupted while waiting for a permit, for example by {@link #shutdown()}
+     */
+    private static <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                IN_FLIGHT.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BooksDbException("The operation was cancelled", e);
+            }
+            try {
+                return operation.get();
+            } finally {
+                IN_FLIGHT.release();
+            }
+        }, IO_EXECUTOR);
+    }
+
+    /**
+     * Runs a blocking operation without a result on the I/O executor once a permit is available.
+     *
+     * @param operation the operation to run
+     * @return a future completing when the operation has finished, or exceptionally if it failed
+     */
+    private static CompletableFuture<Void> run(Runnable operation) {
+        return supply(() -> {
+            operation.run();
+            return null;
+        });
+    }
+}
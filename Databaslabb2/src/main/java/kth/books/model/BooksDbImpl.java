@@ -1,12 +1,29 @@
 package kth.books.model;
 
+import com.mongodb.MongoException;
+import com.mongodb.MongoExecutionTimeoutException;
+import com.mongodb.MongoInterruptedException;
 import com.mongodb.client.*;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.Variable;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 
 import kth.books.DbConnect;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of the BookDbInterface for managing database operations related to books, authors, genres, and ratings using MongoDB.
@@ -14,13 +31,25 @@ import java.util.List;
  * Version: 1.0
  */
 public class BooksDbImpl implements BooksDbInterface {
+    private static final long SEARCH_MAX_TIME_MS = Long.getLong("books.search.maxTimeMs", 5_000);
+
     private final MongoDatabase database;
+    private final IdAllocator idAllocator;
+    private final AuthorResolver authorResolver;
+    private final Transactions transactions = new Transactions();
+    private final GenreCatalog genreCatalog;
+    private boolean closed;
 
     /**
-     * Constructs a BooksDbImpl and establishes a database connection to MongoDB.
+     * Constructs a BooksDbImpl, establishes a database connection to MongoDB and
+     * starts creating any missing indexes in the background.
      */
     public BooksDbImpl() {
         this.database = DbConnect.getDatabase();
+        this.idAllocator = new IdAllocator(database);
+        this.authorResolver = new AuthorResolver(database, idAllocator);
+        this.genreCatalog = new GenreCatalog(database, idAllocator);
+        new IndexManager(database).ensureIndexesInBackground();
     }
 
     /**
@@ -31,47 +60,90 @@ public class BooksDbImpl implements BooksDbInterface {
     @Override
     public List<Book> getAllBooks() {
         List<Book> books = new ArrayList<>();
-        MongoCollection<Document> collection = database.getCollection("Book");
+        for (BookRow row : database.getCollection("Book", BookRow.class).find()) {
+            books.add(row.toBook());
+        }
+        return books;
+    }
 
-        FindIterable<Document> documents = collection.find();
-        for (Document doc : documents) {
-            books.add(new Book(
-                    doc.getInteger("book_id"),
-                    doc.getString("ISBN"),
-                    doc.getString("title"),
-                    doc.getString("publication_date"),
-                    doc.getString("rating")
-            ));
+    /**
+     * Retrieves all books with authors, genres and a summarized rating in one aggregation.
+     *
+     * @return a list of fully populated books
+     */
+    @Override
+    public List<Book> getAllBooksWithDetails() {
+        return aggregateBooksWithDetails(List.of());
+    }
+
+    /**
+     * Retrieves the page of books following the given book ID, using the book_id index.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return the next page of books
+     */
+    @Override
+    public List<Book> getBooksAfter(int afterBookId, int pageSize) {
+        List<Book> books = new ArrayList<>();
+        for (BookRow row : getBookRowsAfter(afterBookId, pageSize)) {
+            books.add(row.toBook());
         }
         return books;
     }
 
+    /**
+     * Retrieves the given books with authors, genres and a summarized rating in one aggregation.
+     *
+     * @param bookIds the IDs of the books
+     * @return a list of fully populated books
+     */
+    @Override
+    public List<Book> getBooksWithDetails(List<Integer> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return aggregateBooksWithDetails(List.of(Aggregates.match(Filters.in("book_id", bookIds))));
+    }
+
+    /**
+     * Retrieves all genres from the in-memory genre dictionary, loading it on first use.
+     *
+     * @return a list of genres
+     */
     @Override
     public List<Genre> getAllGenres() {
-        List<Genre> genres = new ArrayList<>();
-        genres.add(new Genre(1, "Programming"));
-        genres.add(new Genre(2, "Science Fiction"));
-        genres.add(new Genre(3, "Fantasy"));
-        genres.add(new Genre(4, "Romance"));
-        genres.add(new Genre(5, "Mystery"));
-        genres.add(new Genre(6, "Horror"));
-        genres.add(new Genre(7, "Non-Fiction"));
+        return genreCatalog.dictionary().toGenres();
+    }
 
-        return genres;
+    /**
+     * Adds a genre to the Genre collection and swaps in a new genre dictionary that includes it.
+     *
+     * @param genre the genre to add
+     * @return the ID assigned to the genre
+     */
+    @Override
+    public int addGenre(Genre genre) {
+        return genreCatalog.add(genre);
     }
 
+    /**
+     * Retrieves the genres of a book. Only the genre IDs are read from the BookGenre links;
+     * the names come from the genre dictionary.
+     *
+     * @param bookId the ID of the book
+     * @return a list of genres
+     */
     @Override
     public List<Genre> getGenresForBook(int bookId) {
-        List<Genre> genres = new ArrayList<>();
-        MongoCollection<Document> collection = database.getCollection("BookGenre");
+        List<GenreRef> genreRefs = database.getCollection("BookGenre", GenreRef.class)
+                .find(Filters.eq("book_id", bookId))
+                .projection(Projections.fields(Projections.include("genre_id"), Projections.excludeId()))
+                .into(new ArrayList<>());
 
-        // Hämta alla genrer kopplade till boken
-        FindIterable<Document> documents = collection.find(new Document("book_id", bookId));
-        for (Document doc : documents) {
-            genres.add(new Genre(
-                    doc.getInteger("genre_id"),
-                    doc.getString("name")
-            ));
+        List<Genre> genres = new ArrayList<>();
+        for (GenreRef genre : genreCatalog.covering(genreRefs).resolveAll(genreRefs)) {
+            genres.add(genre.toGenre());
         }
         return genres;
     }
@@ -84,82 +156,490 @@ public class BooksDbImpl implements BooksDbInterface {
         Document doc = new Document("book_id", bookId)
                 .append("genre_id", genreId);
         collection.insertOne(doc);
+        touchBook(bookId);
     }
 
+    /**
+     * Adds a rating to a book and updates the book's rating summary in the same transaction:
+     * count and sum are incremented, min and max adjusted and the latest rating replaced.
+     * Without transaction support the rating is inserted first, so an interrupted call leaves a
+     * rating the summary misses, which {@link #rebuildRatingSummaries()} repairs.
+     *
+     * @param bookId the ID of the book
+     * @param ratingValue the value of the rating
+     */
     @Override
     public void addRatingToBook(int bookId, int ratingValue) {
-        MongoCollection<Document> collection = database.getCollection("BookRating");
+        String ratingDate = java.time.LocalDate.now().toString();
 
         // Lägg till betyg med datum
-        Document doc = new Document("book_id", bookId)
+        Document doc = new Document("rating_id", idAllocator.nextId("BookRating", "rating_id"))
+                .append("book_id", bookId)
                 .append("value", ratingValue)
-                .append("rating_date", java.time.LocalDate.now().toString());
-        collection.insertOne(doc);
+                .append("rating_date", ratingDate);
+        Bson filter = Filters.eq("book_id", bookId);
+        Bson summaryUpdate = Updates.combine(
+                Updates.inc("rating_summary.count", 1),
+                Updates.inc("rating_summary.sum", ratingValue),
+                Updates.min("rating_summary.min", ratingValue),
+                Updates.max("rating_summary.max", ratingValue),
+                Updates.set("rating_summary.latest", ratingValue),
+                Updates.set("rating_summary.latest_date", ratingDate),
+                Updates.currentDate("updated_at")
+        );
+        transactions.run(session -> {
+            if (session != null) {
+                database.getCollection("BookRating").insertOne(session, doc);
+                database.getCollection("Book").updateOne(session, filter, summaryUpdate);
+            } else {
+                database.getCollection("BookRating").insertOne(doc);
+                database.getCollection("Book").updateOne(filter, summaryUpdate);
+            }
+        });
     }
 
     @Override
     public List<BookRating> getRatingsForBook(int bookId) {
-        List<BookRating> ratings = new ArrayList<>();
-        MongoCollection<Document> collection = database.getCollection("BookRating");
-
         // Hämta alla betyg för boken
-        FindIterable<Document> documents = collection.find(new Document("book_id", bookId));
-        for (Document doc : documents) {
-            ratings.add(new BookRating(
-                    doc.getInteger("rating_id"),
-                    bookId,
-                    doc.getInteger("value"),
-                    java.time.LocalDate.parse(doc.getString("rating_date"))
-            ));
+        return database.getCollection("BookRating", BookRating.class)
+                .find(Filters.eq("book_id", bookId))
+                .into(new ArrayList<>());
+    }
+
+
+    /**
+     * Retrieves the rating summary stored on a book.
+     *
+     * @param bookId the ID of the book
+     * @return the rating summary, empty if the book has no ratings
+     */
+    @Override
+    public RatingSummary getRatingSummary(int bookId) {
+        Document doc = database.getCollection("Book")
+                .find(Filters.eq("book_id", bookId))
+                .projection(Projections.include("rating_summary"))
+                .first();
+        return toRatingSummary(bookId, doc != null ? doc.get("rating_summary", Document.class) : null);
+    }
+
+    /**
+     * Retrieves the rating summaries stored on several books with one query.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rating summary of each existing book, keyed by book ID
+     */
+    @Override
+    public Map<Integer, RatingSummary> getRatingSummaries(List<Integer> bookIds) {
+        Map<Integer, RatingSummary> summaries = new HashMap<>();
+        for (Document doc : database.getCollection("Book")
+                .find(Filters.in("book_id", bookIds))
+                .projection(Projections.include("book_id", "rating_summary"))) {
+            int bookId = doc.getInteger("book_id");
+            summaries.put(bookId, toRatingSummary(bookId, doc.get("rating_summary", Document.class)));
         }
-        return ratings;
+        return summaries;
     }
 
+    /**
+     * Recomputes every book's rating summary from the BookRating collection. Each book is joined with
+     * its ratings on the book_id index, the summary is computed on the server and written over the old
+     * one with a single $merge, so no rating leaves the database and readers never see a book without
+     * its summary. Books without ratings get an empty summary.
+     */
+    @Override
+    public void rebuildRatingSummaries() {
+        database.getCollection("Book").aggregate(List.of(
+                Aggregates.project(Projections.fields(Projections.include("book_id"), Projections.excludeId())),
+                Aggregates.lookup("BookRating", List.of(new Variable<>("bookId", "$book_id")), List.of(
+                        Aggregates.match(Filters.expr(new Document("$eq", List.of("$book_id", "$$bookId")))),
+                        Aggregates.sort(Sorts.ascending("rating_date", "_id")),
+                        Aggregates.group(null,
+                                Accumulators.sum("count", 1),
+                                Accumulators.sum("sum", "$value"),
+                                Accumulators.min("min", "$value"),
+                                Accumulators.max("max", "$value"),
+                                Accumulators.last("latest", "$value"),
+                                Accumulators.last("latest_date", "$rating_date")),
+                        Aggregates.project(Projections.excludeId())
+                ), "summary"),
+                Aggregates.project(new Document("book_id", 1)
+                        .append("rating_summary", new Document("$ifNull", List.of(
+                                new Document("$arrayElemAt", List.of("$summary", 0)),
+                                new Document("count", 0).append("sum", 0))))),
+                Aggregates.merge("Book", new MergeOptions()
+                        .uniqueIdentifier("book_id")
+                        .whenMatched(MergeOptions.WhenMatched.MERGE)
+                        .whenNotMatched(MergeOptions.WhenNotMatched.DISCARD))
+        )).allowDiskUse(true).toCollection();
+    }
+
+    /**
+     * Creates a rating summary from the rating_summary field of a Book document.
+     *
+     * @param bookId the ID of the book
+     * @param summary the rating_summary field, or null if the book has no ratings
+     * @return the rating summary
+     */
+    private static RatingSummary toRatingSummary(int bookId, Document summary) {
+        if (summary == null || summary.getInteger("count", 0) == 0) {
+            return RatingSummary.empty(bookId);
+        }
+        String latestDate = summary.getString("latest_date");
+        return new RatingSummary(
+                bookId,
+                summary.get("count", Number.class).intValue(),
+                summary.get("sum", Number.class).longValue(),
+                summary.get("min", Number.class).intValue(),
+                summary.get("max", Number.class).intValue(),
+                summary.get("latest", Number.class).intValue(),
+                latestDate != null ? java.time.LocalDate.parse(latestDate) : null
+        );
+    }
 
     @Override
     public List<Book> searchBooks(String searchTerm) {
+        return searchBooks(searchTerm, SearchMode.REGEX, 0);
+    }
+
+    /**
+     * Searches for books and populates authors, genres and a summarized rating in one aggregation.
+     *
+     * @param searchTerm the term to search for
+     * @return a list of fully populated matching books
+     */
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm) {
+        return searchBooksWithDetails(searchTerm, SearchMode.REGEX, 0);
+    }
+
+    /**
+     * Searches for books with the given engine. Text searches are ranked by relevance.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return a list of matching books
+     */
+    @Override
+    public List<Book> searchBooks(String searchTerm, SearchMode mode, int limit) {
         List<Book> books = new ArrayList<>();
-        MongoCollection<Document> collection = database.getCollection("Book");
+        MongoCollection<BookRow> collection = database.getCollection("Book", BookRow.class);
+
+        // Utför sökningen
+        FindIterable<BookRow> rows = collection.find(searchQuery(searchTerm, mode)).limit(limit)
+                .maxTime(SEARCH_MAX_TIME_MS, TimeUnit.MILLISECONDS);
+        if (mode == SearchMode.TEXT) {
+            rows = rows.projection(Projections.metaTextScore("score")).sort(Sorts.metaTextScore("score"));
+        }
+        for (BookRow row : readSearchResults(rows)) {
+            books.add(row.toBook());
+        }
+        return books;
+    }
+
+    /**
+     * Searches for books with the given engine and populates authors, genres and a summarized
+     * rating in one aggregation. Only the books that survive ranking and the limit are joined.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return a list of fully populated matching books
+     */
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm, SearchMode mode, int limit) {
+        List<Book> books = new ArrayList<>();
+        for (BookRow row : searchBookRows(searchTerm, mode, limit)) {
+            books.add(row.toBook());
+        }
+        return books;
+    }
+
+    /**
+     * Builds the stages selecting, ranking and limiting the books matching a search.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return the selection stages
+     */
+    private List<Bson> searchSelection(String searchTerm, SearchMode mode, int limit) {
+        List<Bson> selection = new ArrayList<>();
+        selection.add(Aggregates.match(searchQuery(searchTerm, mode)));
+        if (mode == SearchMode.TEXT) {
+            selection.add(Aggregates.sort(Sorts.metaTextScore("score")));
+        }
+        if (limit > 0) {
+            selection.add(Aggregates.limit(limit));
+        }
+        return selection;
+    }
+
+    /**
+     * Builds the filter used for searching books by title, ISBN or publication date.
+     * The term is always matched literally, never as a regular expression typed by the user.
+     * In text mode a term that looks like an ISBN is searched as a phrase, because the
+     * text search would otherwise read its hyphens as negations.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @return the search filter
+     */
+    static Bson searchQuery(String searchTerm, SearchMode mode) {
+        if (mode == SearchMode.TEXT) {
+            String term = searchTerm.trim();
+            if (term.matches("[0-9Xx-]+") && term.contains("-")) {
+                term = "\"" + term + "\"";
+            }
+            return Filters.text(term);
+        }
+
+        if (mode == SearchMode.PREFIX) {
+            return new Document("$or", List.of(
+                    new Document("title", new Document("$regex", SearchMode.wordPrefix(searchTerm)).append("$options", "i")),
+                    new Document("ISBN", new Document("$regex", SearchMode.prefix(searchTerm)).append("$options", "i")),
+                    new Document("publication_date", new Document("$regex", SearchMode.prefix(searchTerm)).append("$options", "i"))
+            ));
+        }
 
         // Skapa ett sökvillkor för flera fält
-        Document searchQuery = new Document("$or", List.of(
-                new Document("title", new Document("$regex", searchTerm).append("$options", "i")),
-                new Document("ISBN", new Document("$regex", searchTerm).append("$options", "i")),
-                new Document("publication_date", new Document("$regex", searchTerm).append("$options", "i"))
+        String pattern = SearchMode.literal(searchTerm);
+        return new Document("$or", List.of(
+                new Document("title", new Document("$regex", pattern).append("$options", "i")),
+                new Document("ISBN", new Document("$regex", pattern).append("$options", "i")),
+                new Document("publication_date", new Document("$regex", pattern).append("$options", "i"))
         ));
+    }
 
-        // Utför sökningen
-        FindIterable<Document> documents = collection.find(searchQuery);
-        for (Document doc : documents) {
-            books.add(new Book(
-                    doc.getInteger("book_id"),
-                    doc.getString("ISBN"),
-                    doc.getString("title"),
-                    doc.getString("publication_date"),
-                    doc.getString("rating")
-            ));
+    /**
+     * Runs the book details pipeline and turns the rows into books.
+     *
+     * @param selection the stages selecting, ordering and limiting the books to return
+     * @return a list of fully populated books
+     */
+    private List<Book> aggregateBooksWithDetails(List<Bson> selection) {
+        List<Book> books = new ArrayList<>();
+        for (BookRow row : aggregateBookRows(selection)) {
+            books.add(row.toBook());
         }
         return books;
     }
 
     /**
-     * Adds a new book to the database.
+     * Runs the book details pipeline, which joins the selected books with their authors
+     * and genres in a single aggregation.
+     *
+     * @param selection the stages selecting, ordering and limiting the books to return
+     * @return a list of rows with authors and genres
+     */
+    private List<BookRow> aggregateBookRows(List<Bson> selection) {
+        List<Bson> pipeline = new ArrayList<>(selection);
+        pipeline.addAll(BookDetailsPipeline.stages());
+        return genreCatalog.withNames(database.getCollection("Book").aggregate(pipeline, BookRow.class).into(new ArrayList<>()));
+    }
+
+    /**
+     * Retrieves the page of rows following the given book ID, using the book_id index.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return the next page of rows
+     */
+    @Override
+    public List<BookRow> getBookRowsAfter(int afterBookId, int pageSize) {
+        return database.getCollection("Book", BookRow.class)
+                .find(Filters.gt("book_id", afterBookId))
+                .sort(Sorts.ascending("book_id"))
+                .limit(pageSize)
+                .into(new ArrayList<>());
+    }
+
+    /**
+     * Retrieves the given books as rows with details in one aggregation, in the order of the IDs.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rows
+     */
+    @Override
+    public List<BookRow> getBookRowsWithDetails(List<Integer> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, BookRow> byId = new HashMap<>();
+        for (BookRow row : aggregateBookRows(List.of(Aggregates.match(Filters.in("book_id", bookIds))))) {
+            byId.put(row.id(), row);
+        }
+        List<BookRow> rows = new ArrayList<>();
+        for (Integer bookId : bookIds) {
+            BookRow row = byId.get(bookId);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Searches for books with the given engine and returns them as rows with details in one aggregation.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return the matching rows
+     */
+    @Override
+    public List<BookRow> searchBookRows(String searchTerm, SearchMode mode, int limit) {
+        List<Bson> pipeline = searchSelection(searchTerm, mode, limit);
+        pipeline.addAll(BookDetailsPipeline.stages());
+        return genreCatalog.withNames(readSearchResults(database.getCollection("Book").aggregate(pipeline, BookRow.class)
+                .maxTime(SEARCH_MAX_TIME_MS, TimeUnit.MILLISECONDS)));
+    }
+
+    /**
+     * Reads the results of a search, which the server gives up on after {@code books.search.maxTimeMs}
+     * milliseconds. The cursor is closed, and with it the query on the server, as soon as the calling
+     * thread is interrupted, for example because the user typed on and a newer search superseded this one.
+     *
+     * @param results the search results
+     * @return the rows read
+     * @throws BooksDbException if the search timed out, was cancelled or failed, for example because a
+     *         text search was made before the text index was built
+     */
+    static List<BookRow> readSearchResults(MongoIterable<BookRow> results) {
+        List<BookRow> rows = new ArrayList<>();
+        try (MongoCursor<BookRow> cursor = results.cursor()) {
+            while (cursor.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new BooksDbException("The search was cancelled");
+                }
+                rows.add(cursor.next());
+            }
+        } catch (MongoExecutionTimeoutException e) {
+            throw new BooksDbException("The search took longer than " + SEARCH_MAX_TIME_MS + " ms", e);
+        } catch (MongoInterruptedException e) {
+            throw new BooksDbException("The search was cancelled", e);
+        } catch (MongoException e) {
+            throw new BooksDbException("Error searching books: " + e.getMessage(), e);
+        }
+        return rows;
+    }
+
+    /**
+     * Adds a new book to the database, taking its ID from the ID allocator.
      *
      * @param book the book to add
+     * @return the ID assigned to the book
      */
     @Override
-    public void addBook(Book book) {
+    public int addBook(Book book) {
         MongoCollection<Document> collection = database.getCollection("Book");
-        Document doc = new Document("book_id", getLastInsertedBookId() + 1)
+        int bookId = idAllocator.nextId("Book", "book_id");
+        Document doc = new Document("book_id", bookId)
                 .append("ISBN", book.getISBN())
                 .append("title", book.getTitle())
                 .append("publication_date", book.getPublicationDate())
                 .append("rating", book.getRating());
-        collection.insertOne(doc);
+        insertStamped(collection, null, doc, "book_id", "updated_at");
+        book.setId(bookId);
+        return bookId;
+    }
+
+    /**
+     * Adds a new book together with its authors, genres and first rating. The authors are found or created
+     * by name first, since they may already belong to other books. All other IDs are reserved up front,
+     * and the documents are written with one insert per collection inside a multi-document transaction.
+     * If the server does not support transactions (a standalone server), the same ordered inserts run
+     * without one, with the Book document written last so that a book is never visible without its details.
+     *
+     * @param book the book to add
+     * @param authors the authors of the book, found or created by name
+     * @param genreIds the IDs of the existing genres of the book
+     * @param ratingValue the first rating of the book, or 0 to add the book without a rating
+     * @return the IDs assigned to the book, its authors and its rating
+     */
+    @Override
+    public AddedBook addBookWithDetails(Book book, List<Author> authors, List<Integer> genreIds, int ratingValue) {
+        int bookId = idAllocator.nextId("Book", "book_id");
+        // Authors are shared between books, so they are found or created up front rather than inside the transaction.
+        List<Integer> authorIds = resolveAuthors(authors);
+        int ratingId = ratingValue > 0 ? idAllocator.nextId("BookRating", "rating_id") : 0;
+        String ratingDate = java.time.LocalDate.now().toString();
+
+        List<Document> bookAuthorDocs = new ArrayList<>();
+        for (int authorId : new LinkedHashSet<>(authorIds)) {
+            bookAuthorDocs.add(new Document("book_id", bookId).append("author_id", authorId));
+        }
+        List<Document> bookGenreDocs = new ArrayList<>();
+        for (int genreId : genreIds) {
+            bookGenreDocs.add(new Document("book_id", bookId).append("genre_id", genreId));
+        }
+        Document bookDoc = new Document("book_id", bookId)
+                .append("ISBN", book.getISBN())
+                .append("title", book.getTitle())
+                .append("publication_date", book.getPublicationDate())
+                .append("rating", book.getRating());
+        Document ratingDoc = null;
+        if (ratingValue > 0) {
+            ratingDoc = new Document("rating_id", ratingId)
+                    .append("book_id", bookId)
+                    .append("value", ratingValue)
+                    .append("rating_date", ratingDate);
+            bookDoc.append("rating_summary", new Document("count", 1)
+                    .append("sum", ratingValue)
+                    .append("min", ratingValue)
+                    .append("max", ratingValue)
+                    .append("latest", ratingValue)
+                    .append("latest_date", ratingDate));
+        }
+
+        Document rating = ratingDoc;
+        transactions.run(session -> insertBookWithDetails(session, bookAuthorDocs, bookGenreDocs, rating, bookDoc));
+
+        book.setId(bookId);
+        return new AddedBook(bookId, List.copyOf(new LinkedHashSet<>(authorIds)), ratingId);
     }
 
     /**
-     * Deletes a book from the database by its ID.
+     * Writes the documents of a new book with one ordered insert per collection, the Book document last.
+     *
+     * @param session the session of the transaction, or null to write without one
+     * @param bookAuthorDocs the new BookAuthor documents
+     * @param bookGenreDocs the new BookGenre documents
+     * @param ratingDoc the new BookRating document, or null if there is none
+     * @param bookDoc the new Book document
+     */
+    private void insertBookWithDetails(ClientSession session, List<Document> bookAuthorDocs,
+                                       List<Document> bookGenreDocs, Document ratingDoc, Document bookDoc) {
+        insertAll(session, "BookAuthor", bookAuthorDocs);
+        insertAll(session, "BookGenre", bookGenreDocs);
+        if (ratingDoc != null) {
+            insertAll(session, "BookRating", List.of(ratingDoc));
+        }
+        insertStamped(database.getCollection("Book"), session, bookDoc, "book_id", "updated_at");
+    }
+
+    /**
+     * Inserts documents into a collection with a single ordered insert.
+     *
+     * @param session the session of the transaction, or null to write without one
+     * @param collectionName the name of the collection
+     * @param documents the documents to insert
+     */
+    private void insertAll(ClientSession session, String collectionName, List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        MongoCollection<Document> collection = database.getCollection(collectionName);
+        if (session != null) {
+            collection.insertMany(session, documents);
+        } else {
+            collection.insertMany(documents);
+        }
+    }
+
+    /**
+     * Deletes a book from the database by its ID and leaves a tombstone,
+     * so that other clients following the change feed can remove it too.
      *
      * @param bookId the ID of the book to delete
      */
@@ -167,6 +647,40 @@ public class BooksDbImpl implements BooksDbInterface {
     public void deleteBook(int bookId) {
         MongoCollection<Document> collection = database.getCollection("Book");
         collection.deleteOne(new Document("book_id", bookId));
+        insertStamped(database.getCollection("BookTombstone"), null, new Document("book_id", bookId), "book_id", "deleted_at");
+    }
+
+    /**
+     * Inserts a document whose timestamp field is set from the server's clock rather than this client's,
+     * so that the change feed of another client never misses a change because the clocks disagree.
+     * Only updates can set the server's time, so the insert is an upsert on the document's key.
+     *
+     * @param collection the collection to insert into
+     * @param session the session of the enclosing transaction, or null to write without one
+     * @param document the document, without the timestamp field
+     * @param key the field identifying the document
+     * @param timestampField the field to set to the server's current time
+     */
+    static void insertStamped(MongoCollection<Document> collection, ClientSession session, Document document,
+                              String key, String timestampField) {
+        Bson filter = Filters.eq(key, document.get(key));
+        Bson update = Updates.combine(Updates.setOnInsert(document), Updates.currentDate(timestampField));
+        UpdateOptions upsert = new UpdateOptions().upsert(true);
+        if (session != null) {
+            collection.updateOne(session, filter, update, upsert);
+        } else {
+            collection.updateOne(filter, update, upsert);
+        }
+    }
+
+    /**
+     * Marks a book as changed by updating its updated_at field, which the
+     * polling fallback of the change feed relies on.
+     *
+     * @param bookId the ID of the book
+     */
+    private void touchBook(int bookId) {
+        database.getCollection("Book").updateOne(Filters.eq("book_id", bookId), Updates.currentDate("updated_at"));
     }
 
     /**
@@ -182,39 +696,85 @@ public class BooksDbImpl implements BooksDbInterface {
     }
 
     /**
-     * Retrieves authors associated with a specific book.
+     * Retrieves the authors of a book. The BookAuthor links only hold author IDs, so the names are
+     * read from the Author collection, in the order of the links.
      *
      * @param bookId the ID of the book
      * @return a list of authors
      */
     @Override
     public List<Author> getAuthorsForBook(int bookId) {
-        List<Author> authors = new ArrayList<>();
-        MongoCollection<Document> collection = database.getCollection("BookAuthor");
+        LinkedHashSet<Integer> authorIds = new LinkedHashSet<>();
+        for (Document link : database.getCollection("BookAuthor")
+                .find(Filters.eq("book_id", bookId))
+                .projection(Projections.fields(Projections.include("author_id"), Projections.excludeId()))) {
+            authorIds.add(link.getInteger("author_id"));
+        }
+        if (authorIds.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        FindIterable<Document> documents = collection.find(new Document("book_id", bookId));
-        for (Document doc : documents) {
-            authors.add(new Author(
-                    doc.getInteger("author_id"),
-                    doc.getString("first_name"),
-                    doc.getString("last_name")
-            ));
+        Map<Integer, AuthorRef> byId = new HashMap<>();
+        for (AuthorRef author : database.getCollection("Author", AuthorRef.class)
+                .find(Filters.in("author_id", authorIds))
+                .projection(Projections.fields(Projections.include("author_id", "first_name", "last_name"), Projections.excludeId()))) {
+            byId.put(author.id(), author);
+        }
+
+        List<Author> authors = new ArrayList<>();
+        for (int authorId : authorIds) {
+            AuthorRef author = byId.get(authorId);
+            if (author != null) {
+                authors.add(author.toAuthor());
+            }
         }
         return authors;
     }
 
     /**
-     * Adds a new author to the database.
+     * Adds an author, or finds the existing author with the same normalized name.
      *
      * @param author the author to add
+     * @return the ID of the author
      */
     @Override
-    public void addAuthor(Author author) {
-        MongoCollection<Document> collection = database.getCollection("Author");
-        Document doc = new Document("author_id", getLastInsertedAuthorId() + 1)
-                .append("first_name", author.getFirstName())
-                .append("last_name", author.getLastName());
-        collection.insertOne(doc);
+    public int addAuthor(Author author) {
+        return findOrCreateAuthor(author);
+    }
+
+    /**
+     * Finds or creates an author with an upsert on its normalized name.
+     *
+     * @param author the author to find or create
+     * @return the ID of the author
+     */
+    @Override
+    public int findOrCreateAuthor(Author author) {
+        int authorId = authorResolver.findOrCreate(author.getFirstName(), author.getLastName());
+        author.setId(authorId);
+        return authorId;
+    }
+
+    /**
+     * Finds or creates several authors with one query and at most one bulk write of upserts.
+     *
+     * @param authors the authors to find or create
+     * @return the ID of each author, in the order of the given authors
+     */
+    @Override
+    public List<Integer> resolveAuthors(List<Author> authors) {
+        List<AuthorRef> names = new ArrayList<>(authors.size());
+        for (Author author : authors) {
+            names.add(new AuthorRef(0, author.getFirstName(), author.getLastName()));
+        }
+        Map<String, Integer> idsByName = authorResolver.resolve(names);
+        List<Integer> authorIds = new ArrayList<>(authors.size());
+        for (Author author : authors) {
+            int authorId = idsByName.get(AuthorResolver.nameKey(author.getFirstName(), author.getLastName()));
+            author.setId(authorId);
+            authorIds.add(authorId);
+        }
+        return authorIds;
     }
 
     /**
@@ -229,6 +789,7 @@ public class BooksDbImpl implements BooksDbInterface {
         Document doc = new Document("book_id", bookId)
                 .append("author_id", authorId);
         collection.insertOne(doc);
+        touchBook(bookId);
     }
 
     /**
@@ -243,12 +804,30 @@ public class BooksDbImpl implements BooksDbInterface {
         return lastAuthor != null ? lastAuthor.getInteger("author_id") : 0;
     }
 
+    @Override
+    public BooksDbSchema getSchema() {
+        return BooksDbSchema.NORMALIZED;
+    }
+
     /**
-     * Closes the database connection.
+     * Does nothing, as only genre names are cached, and they are reloaded on their own.
      */
     @Override
-    public void close() {
-        // No explicit closing needed for MongoDB Java Driver as it uses connection pooling.
+    public void invalidateCaches() {
+    }
+
+    /**
+     * Closes the database connection by releasing the shared client, which shuts down
+     * its connection pool once no other component uses it.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        System.out.println(DbConnect.getPoolMetrics());
+        DbConnect.release();
         System.out.println("MongoDB connection closed.");
     }
 }
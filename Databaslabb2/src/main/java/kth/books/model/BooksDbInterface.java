@@ -1,6 +1,7 @@
 package kth.books.model;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interface representing the database operations for the Books application.
@@ -17,11 +18,80 @@ public interface BooksDbInterface {
     List<Book> getAllBooks();
 
     /**
-     * Adds a new book to the database.
+     * Retrieves all books with their authors, genres and a summarized rating populated,
+     * using a single round trip to the database.
+     *
+     * @return a list of fully populated books
+     */
+    List<Book> getAllBooksWithDetails();
+
+    /**
+     * Retrieves one page of books ordered by ID, starting after the given book ID.
+     * Paging by ID cursor keeps every page an index range scan, however deep the user scrolls.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return the next page of books, without authors, genres or ratings
+     */
+    List<Book> getBooksAfter(int afterBookId, int pageSize);
+
+    /**
+     * Retrieves the given books with their authors, genres and a summarized rating populated,
+     * using a single round trip to the database.
+     *
+     * @param bookIds the IDs of the books
+     * @return a list of fully populated books; IDs that do not exist are skipped
+     */
+    List<Book> getBooksWithDetails(List<Integer> bookIds);
+
+    /**
+     * Retrieves one page of books ordered by ID as immutable rows, starting after the given book ID.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return the next page of rows, without authors or genres
+     */
+    List<BookRow> getBookRowsAfter(int afterBookId, int pageSize);
+
+    /**
+     * Retrieves the given books as immutable rows with their authors, genres and rating statistics,
+     * using a single round trip to the database.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rows in the order of the IDs; IDs that do not exist are skipped
+     */
+    List<BookRow> getBookRowsWithDetails(List<Integer> bookIds);
+
+    /**
+     * Searches for books using the given search engine and returns them as immutable rows with
+     * their authors, genres and rating statistics.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return the matching rows, most relevant first when ranked by the engine
+     */
+    List<BookRow> searchBookRows(String searchTerm, SearchMode mode, int limit);
+
+    /**
+     * Adds a new book to the database and assigns it a new ID.
      *
      * @param book the book to add
+     * @return the ID assigned to the book
      */
-    void addBook(Book book);
+    int addBook(Book book);
+
+    /**
+     * Adds a new book together with its authors, genres and first rating as one atomic operation,
+     * so that other clients never see the book without its details.
+     *
+     * @param book the book to add
+     * @param authors the authors of the book, found or created by name
+     * @param genreIds the IDs of the existing genres of the book
+     * @param ratingValue the first rating of the book, or 0 to add the book without a rating
+     * @return the IDs assigned to the book, its authors and its rating
+     */
+    AddedBook addBookWithDetails(Book book, List<Author> authors, List<Integer> genreIds, int ratingValue);
 
     /**
      * Deletes a book from the database by its ID.
@@ -46,11 +116,31 @@ public interface BooksDbInterface {
     List<Author> getAuthorsForBook(int bookId);
 
     /**
-     * Adds a new author to the database.
+     * Adds an author to the database. Authors are deduplicated by their normalized name, so adding
+     * an author that already exists returns the existing ID, as {@link #findOrCreateAuthor} does.
      *
      * @param author the author to add
+     * @return the ID of the author
+     */
+    int addAuthor(Author author);
+
+    /**
+     * Finds the author with the same name, compared case-insensitively and ignoring accents and
+     * extra whitespace, and creates the author if there is none.
+     *
+     * @param author the author to find or create; its ID is set to the result
+     * @return the ID of the existing or new author
+     */
+    int findOrCreateAuthor(Author author);
+
+    /**
+     * Finds or creates several authors at once, in a fixed number of round trips, for example
+     * for an import.
+     *
+     * @param authors the authors to find or create; their IDs are set to the results
+     * @return the ID of each author, in the order of the given authors
      */
-    void addAuthor(Author author);
+    List<Integer> resolveAuthors(List<Author> authors);
 
     /**
      * Links an author to a book.
@@ -68,12 +158,20 @@ public interface BooksDbInterface {
     int getLastInsertedAuthorId();
 
     /**
-     * Retrieves all genres from the database.
+     * Retrieves all genres of the genre catalog.
      *
      * @return a list of genres
      */
     List<Genre> getAllGenres();
 
+    /**
+     * Adds a new genre to the genre catalog and assigns it a new ID.
+     *
+     * @param genre the genre to add
+     * @return the ID assigned to the genre
+     */
+    int addGenre(Genre genre);
+
     /**
      * Retrieves genres associated with a specific book.
      *
@@ -106,6 +204,28 @@ public interface BooksDbInterface {
      */
     List<BookRating> getRatingsForBook(int bookId);
 
+    /**
+     * Retrieves the pre-aggregated rating statistics of a book.
+     *
+     * @param bookId the ID of the book
+     * @return the rating summary, empty if the book has no ratings
+     */
+    RatingSummary getRatingSummary(int bookId);
+
+    /**
+     * Retrieves the pre-aggregated rating statistics of several books in one round trip.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rating summary of each existing book, keyed by book ID
+     */
+    Map<Integer, RatingSummary> getRatingSummaries(List<Integer> bookIds);
+
+    /**
+     * Recomputes the rating statistics of every book from its ratings, for example after
+     * ratings have been imported or changed outside the application.
+     */
+    void rebuildRatingSummaries();
+
     /**
      * Searches for books matching a given search term.
      *
@@ -114,6 +234,50 @@ public interface BooksDbInterface {
      */
     List<Book> searchBooks(String searchTerm);
 
+    /**
+     * Searches for books matching a given search term and populates their authors,
+     * genres and summarized rating in the same round trip.
+     *
+     * @param searchTerm the term to search for
+     * @return a list of fully populated matching books
+     */
+    List<Book> searchBooksWithDetails(String searchTerm);
+
+    /**
+     * Searches for books matching a given search term using the given search engine.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return a list of matching books, most relevant first when ranked by the engine
+     */
+    List<Book> searchBooks(String searchTerm, SearchMode mode, int limit);
+
+    /**
+     * Searches for books matching a given search term using the given search engine and
+     * populates their authors, genres and summarized rating in the same round trip.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return a list of fully populated matching books, most relevant first when ranked by the engine
+     */
+    List<Book> searchBooksWithDetails(String searchTerm, SearchMode mode, int limit);
+
+    /**
+     * Retrieves how the books are stored, which decides whether jobs that work on the MongoDB
+     * collections directly, such as the catalog import and export, can run against this database.
+     *
+     * @return the storage schema
+     */
+    BooksDbSchema getSchema();
+
+    /**
+     * Drops everything cached about books, after they have been changed in bulk without going
+     * through this interface, for example by a catalog import.
+     */
+    void invalidateCaches();
+
     /**
      * Closes the database connection.
      */
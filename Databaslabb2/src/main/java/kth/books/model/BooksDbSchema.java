@@ -0,0 +1,24 @@
+package kth.books.model;
+
+/**
+ * How a {@link BooksDbInterface} stores the books.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public enum BooksDbSchema {
+    /**
+     * MongoDB, with authors, genres and ratings in collections of their own, as written by {@link BooksDbImpl}.
+     */
+    NORMALIZED,
+
+    /**
+     * MongoDB, with authors, genres and the rating summary embedded in the Book documents, as written by
+     * {@link EmbeddedBooksDb}.
+     */
+    EMBEDDED,
+
+    /**
+     * Process memory, as in {@link InMemoryBooksDb}; nothing is stored in MongoDB.
+     */
+    IN_MEMORY
+}
@@ -0,0 +1,65 @@
+package kth.books.model;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+
+/**
+ * Helpers for reading field values in the codecs, tolerating the different numeric types and
+ * nulls the server may return for the same field.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+final class BsonFields {
+
+    private BsonFields() {
+    }
+
+    /**
+     * Reads a number as an int.
+     *
+     * @param reader the reader positioned at the value
+     * @return the value, or 0 if it is null
+     */
+    static int readInt(BsonReader reader) {
+        return (int) readLong(reader);
+    }
+
+    /**
+     * Reads a number as a long.
+     *
+     * @param reader the reader positioned at the value
+     * @return the value, or 0 if it is null
+     */
+    static long readLong(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return (long) reader.readDouble();
+            case DECIMAL128:
+                return reader.readDecimal128().longValue();
+            case NULL:
+                reader.readNull();
+                return 0;
+            default:
+                throw new IllegalStateException("Expected a number but found " + type);
+        }
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @param reader the reader positioned at the value
+     * @return the value, or null if it is null or not a string
+     */
+    static String readString(BsonReader reader) {
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+            return reader.readString();
+        }
+        reader.skipValue();
+        return null;
+    }
+}
@@ -0,0 +1,500 @@
+package kth.books.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Read-through caching decorator for a BooksDbInterface.
+ * <p>
+ * Authors, genres, ratings, rating summaries and fully populated book rows are cached per book, and search results
+ * per search, each in its own {@link LruCache} bounded by {@code books.cache.maxSize} entries
+ * and {@code books.cache.ttlSeconds}. Writes go straight to the wrapped database and invalidate
+ * the entries they affect. Nothing mutable is cached: books are cached as immutable {@link BookRow}s or snapshots,
+ * and authors, genres and ratings as immutable records, so each caller gets its own model objects and the cached
+ * values can be shared between threads safely.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class CachingBooksDb implements BooksDbInterface {
+    private static final int MAX_SIZE = Integer.getInteger("books.cache.maxSize", 1_000);
+    private static final long TTL_MILLIS = Long.getLong("books.cache.ttlSeconds", 300) * 1_000;
+
+    private final BooksDbInterface delegate;
+    private final LruCache<Integer, List<AuthorRef>> authorsByBook = new LruCache<>(MAX_SIZE, TTL_MILLIS);
+    private final LruCache<Integer, List<GenreRef>> genresByBook = new LruCache<>(MAX_SIZE, TTL_MILLIS);
+    private final LruCache<Integer, List<CachedRating>> ratingsByBook = new LruCache<>(MAX_SIZE, TTL_MILLIS);
+    private final LruCache<Integer, RatingSummary> ratingSummaries = new LruCache<>(MAX_SIZE, TTL_MILLIS);
+    private final LruCache<Integer, BookRow> bookDetails = new LruCache<>(MAX_SIZE, TTL_MILLIS);
+    private final LruCache<SearchKey, List<CachedBook>> searches = new LruCache<>(MAX_SIZE, TTL_MILLIS);
+    private final LruCache<SearchKey, List<BookRow>> rowSearches = new LruCache<>(MAX_SIZE, TTL_MILLIS);
+    private final LruCache<String, List<GenreRef>> allGenres = new LruCache<>(1, TTL_MILLIS);
+
+    /**
+     * Identifies a cached search.
+     *
+     * @param searchTerm the term searched for
+     * @param mode the search engine, or null for the default search
+     * @param limit the result limit
+     * @param withDetails whether the books were populated with details
+     */
+    private record SearchKey(String searchTerm, SearchMode mode, int limit, boolean withDetails) {
+    }
+
+    /**
+     * An immutable snapshot of a book returned by a search without details, whose rating is only
+     * known as the displayed text and which therefore cannot be cached as a {@link BookRow}.
+     *
+     * @param id the ID of the book
+     * @param isbn the ISBN of the book
+     * @param title the title of the book
+     * @param publicationDate the publication date of the book
+     * @param rating the displayed rating of the book
+     * @param authors the authors of the book
+     * @param genres the genres of the book
+     */
+    private record CachedBook(int id, String isbn, String title, String publicationDate, String rating,
+                              List<AuthorRef> authors, List<GenreRef> genres) {
+
+        static CachedBook of(Book book) {
+            return new CachedBook(book.getId(), book.getISBN(), book.getTitle(), book.getPublicationDate(),
+                    book.getRating(), authorRefs(book.getAuthors()), genreRefs(book.getGenres()));
+        }
+
+        Book toBook() {
+            Book book = new Book(id, isbn, title, publicationDate, rating);
+            for (AuthorRef author : authors) {
+                book.addAuthor(author.toAuthor());
+            }
+            if (!genres.isEmpty()) {
+                book.setGenres(toGenres(genres));
+            }
+            return book;
+        }
+    }
+
+    /**
+     * An immutable snapshot of a rating.
+     *
+     * @param ratingId the ID of the rating
+     * @param bookId the ID of the rated book
+     * @param value the value of the rating
+     * @param ratingDate the date of the rating
+     */
+    private record CachedRating(int ratingId, int bookId, int value, LocalDate ratingDate) {
+
+        static CachedRating of(BookRating rating) {
+            return new CachedRating(rating.getRatingId(), rating.getBookId(), rating.getValue(), rating.getRatingDate());
+        }
+
+        BookRating toRating() {
+            return new BookRating(ratingId, bookId, value, ratingDate);
+        }
+    }
+
+    /**
+     * Constructs a CachingBooksDb around the given database.
+     *
+     * @param delegate the database to cache
+     */
+    public CachingBooksDb(BooksDbInterface delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        return delegate.getAllBooks();
+    }
+
+    @Override
+    public List<Book> getAllBooksWithDetails() {
+        return delegate.getAllBooksWithDetails();
+    }
+
+    @Override
+    public List<Book> getBooksAfter(int afterBookId, int pageSize) {
+        return delegate.getBooksAfter(afterBookId, pageSize);
+    }
+
+    /**
+     * Retrieves the given books with details, fetching only the books that are not cached.
+     *
+     * @param bookIds the IDs of the books
+     * @return a list of fully populated books
+     */
+    @Override
+    public List<Book> getBooksWithDetails(List<Integer> bookIds) {
+        List<Book> books = new ArrayList<>();
+        for (BookRow row : getBookRowsWithDetails(bookIds)) {
+            books.add(row.toBook());
+        }
+        return books;
+    }
+
+    @Override
+    public List<BookRow> getBookRowsAfter(int afterBookId, int pageSize) {
+        return delegate.getBookRowsAfter(afterBookId, pageSize);
+    }
+
+    /**
+     * Retrieves the given books as rows with details, fetching only the books that are not cached.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rows in the order of the IDs
+     */
+    @Override
+    public List<BookRow> getBookRowsWithDetails(List<Integer> bookIds) {
+        Map<Integer, BookRow> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer bookId : bookIds) {
+            BookRow row = bookDetails.get(bookId);
+            if (row != null) {
+                found.put(bookId, row);
+            } else {
+                missing.add(bookId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (BookRow row : delegate.getBookRowsWithDetails(missing)) {
+                bookDetails.put(row.id(), row);
+                found.put(row.id(), row);
+            }
+        }
+
+        List<BookRow> rows = new ArrayList<>();
+        for (Integer bookId : bookIds) {
+            BookRow row = found.get(bookId);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public List<BookRow> searchBookRows(String searchTerm, SearchMode mode, int limit) {
+        SearchKey key = new SearchKey(searchTerm, mode, limit, true);
+        List<BookRow> rows = rowSearches.get(key);
+        if (rows == null) {
+            rows = List.copyOf(delegate.searchBookRows(searchTerm, mode, limit));
+            rowSearches.put(key, rows);
+        }
+        return rows;
+    }
+
+    @Override
+    public int addBook(Book book) {
+        int bookId = delegate.addBook(book);
+        searches.invalidateAll();
+        rowSearches.invalidateAll();
+        return bookId;
+    }
+
+    @Override
+    public AddedBook addBookWithDetails(Book book, List<Author> authors, List<Integer> genreIds, int ratingValue) {
+        AddedBook added = delegate.addBookWithDetails(book, authors, genreIds, ratingValue);
+        searches.invalidateAll();
+        rowSearches.invalidateAll();
+        return added;
+    }
+
+    @Override
+    public void deleteBook(int bookId) {
+        delegate.deleteBook(bookId);
+        invalidateBook(bookId);
+    }
+
+    @Override
+    public int getLastInsertedBookId() {
+        return delegate.getLastInsertedBookId();
+    }
+
+    @Override
+    public List<Author> getAuthorsForBook(int bookId) {
+        List<AuthorRef> authorRefs = authorsByBook.get(bookId);
+        if (authorRefs == null) {
+            authorRefs = authorRefs(delegate.getAuthorsForBook(bookId));
+            authorsByBook.put(bookId, authorRefs);
+        }
+        List<Author> authors = new ArrayList<>(authorRefs.size());
+        for (AuthorRef author : authorRefs) {
+            authors.add(author.toAuthor());
+        }
+        return authors;
+    }
+
+    @Override
+    public int addAuthor(Author author) {
+        return delegate.addAuthor(author);
+    }
+
+    @Override
+    public int findOrCreateAuthor(Author author) {
+        return delegate.findOrCreateAuthor(author);
+    }
+
+    @Override
+    public List<Integer> resolveAuthors(List<Author> authors) {
+        return delegate.resolveAuthors(authors);
+    }
+
+    @Override
+    public void linkAuthorToBook(int bookId, int authorId) {
+        delegate.linkAuthorToBook(bookId, authorId);
+        invalidateBook(bookId);
+    }
+
+    @Override
+    public int getLastInsertedAuthorId() {
+        return delegate.getLastInsertedAuthorId();
+    }
+
+    @Override
+    public List<Genre> getAllGenres() {
+        List<GenreRef> genreRefs = allGenres.get("all");
+        if (genreRefs == null) {
+            genreRefs = genreRefs(delegate.getAllGenres());
+            allGenres.put("all", genreRefs);
+        }
+        return toGenres(genreRefs);
+    }
+
+    @Override
+    public int addGenre(Genre genre) {
+        int genreId = delegate.addGenre(genre);
+        allGenres.invalidateAll();
+        return genreId;
+    }
+
+    @Override
+    public List<Genre> getGenresForBook(int bookId) {
+        List<GenreRef> genreRefs = genresByBook.get(bookId);
+        if (genreRefs == null) {
+            genreRefs = genreRefs(delegate.getGenresForBook(bookId));
+            genresByBook.put(bookId, genreRefs);
+        }
+        return toGenres(genreRefs);
+    }
+
+    @Override
+    public void linkGenreToBook(int bookId, int genreId) {
+        delegate.linkGenreToBook(bookId, genreId);
+        invalidateBook(bookId);
+    }
+
+    @Override
+    public void addRatingToBook(int bookId, int ratingValue) {
+        delegate.addRatingToBook(bookId, ratingValue);
+        invalidateBook(bookId);
+    }
+
+    @Override
+    public List<BookRating> getRatingsForBook(int bookId) {
+        List<CachedRating> cached = ratingsByBook.get(bookId);
+        if (cached == null) {
+            List<CachedRating> snapshots = new ArrayList<>();
+            for (BookRating rating : delegate.getRatingsForBook(bookId)) {
+                snapshots.add(CachedRating.of(rating));
+            }
+            cached = List.copyOf(snapshots);
+            ratingsByBook.put(bookId, cached);
+        }
+        List<BookRating> ratings = new ArrayList<>(cached.size());
+        for (CachedRating rating : cached) {
+            ratings.add(rating.toRating());
+        }
+        return ratings;
+    }
+
+    @Override
+    public RatingSummary getRatingSummary(int bookId) {
+        RatingSummary summary = ratingSummaries.get(bookId);
+        if (summary == null) {
+            summary = delegate.getRatingSummary(bookId);
+            ratingSummaries.put(bookId, summary);
+        }
+        return summary;
+    }
+
+    /**
+     * Retrieves rating summaries, fetching only the ones that are not cached.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rating summary of each existing book, keyed by book ID
+     */
+    @Override
+    public Map<Integer, RatingSummary> getRatingSummaries(List<Integer> bookIds) {
+        Map<Integer, RatingSummary> summaries = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer bookId : bookIds) {
+            RatingSummary summary = ratingSummaries.get(bookId);
+            if (summary != null) {
+                summaries.put(bookId, summary);
+            } else {
+                missing.add(bookId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Map.Entry<Integer, RatingSummary> entry : delegate.getRatingSummaries(missing).entrySet()) {
+                ratingSummaries.put(entry.getKey(), entry.getValue());
+                summaries.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    public void rebuildRatingSummaries() {
+        delegate.rebuildRatingSummaries();
+        ratingSummaries.invalidateAll();
+        bookDetails.invalidateAll();
+        searches.invalidateAll();
+        rowSearches.invalidateAll();
+    }
+
+    @Override
+    public List<Book> searchBooks(String searchTerm) {
+        return cachedSearch(new SearchKey(searchTerm, null, 0, false), () -> delegate.searchBooks(searchTerm));
+    }
+
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm) {
+        return searchBooksWithDetails(searchTerm, SearchMode.REGEX, 0);
+    }
+
+    @Override
+    public List<Book> searchBooks(String searchTerm, SearchMode mode, int limit) {
+        return cachedSearch(new SearchKey(searchTerm, mode, limit, false),
+                () -> delegate.searchBooks(searchTerm, mode, limit));
+    }
+
+    /**
+     * Searches for books with details through the cached rows of {@link #searchBookRows}, creating new books on every call.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return a list of fully populated matching books
+     */
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm, SearchMode mode, int limit) {
+        List<Book> books = new ArrayList<>();
+        for (BookRow row : searchBookRows(searchTerm, mode, limit)) {
+            books.add(row.toBook());
+        }
+        return books;
+    }
+
+    @Override
+    public BooksDbSchema getSchema() {
+        return delegate.getSchema();
+    }
+
+    /**
+     * Drops every cache, and those of the wrapped database.
+     */
+    @Override
+    public void invalidateCaches() {
+        authorsByBook.invalidateAll();
+        genresByBook.invalidateAll();
+        ratingsByBook.invalidateAll();
+        ratingSummaries.invalidateAll();
+        bookDetails.invalidateAll();
+        searches.invalidateAll();
+        rowSearches.invalidateAll();
+        allGenres.invalidateAll();
+        delegate.invalidateCaches();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Retrieves the hit, miss and eviction counts of every cache.
+     *
+     * @return the statistics of each cache by name
+     */
+    public Map<String, LruCache.Stats> getCacheStats() {
+        Map<String, LruCache.Stats> stats = new LinkedHashMap<>();
+        stats.put("authorsByBook", authorsByBook.getStats());
+        stats.put("genresByBook", genresByBook.getStats());
+        stats.put("ratingsByBook", ratingsByBook.getStats());
+        stats.put("ratingSummaries", ratingSummaries.getStats());
+        stats.put("bookDetails", bookDetails.getStats());
+        stats.put("searches", searches.getStats());
+        stats.put("rowSearches", rowSearches.getStats());
+        stats.put("allGenres", allGenres.getStats());
+        return stats;
+    }
+
+    /**
+     * Serves a search without details from the cache, running it against the database on a miss.
+     * The cache holds snapshots, so every call returns new books that the caller may change.
+     *
+     * @param key the key identifying the search
+     * @param search the search to run on a miss
+     * @return the search results
+     */
+    private List<Book> cachedSearch(SearchKey key, Supplier<List<Book>> search) {
+        List<CachedBook> snapshots = searches.get(key);
+        if (snapshots == null) {
+            List<CachedBook> found = new ArrayList<>();
+            for (Book book : search.get()) {
+                found.add(CachedBook.of(book));
+            }
+            snapshots = List.copyOf(found);
+            searches.put(key, snapshots);
+        }
+        List<Book> books = new ArrayList<>(snapshots.size());
+        for (CachedBook snapshot : snapshots) {
+            books.add(snapshot.toBook());
+        }
+        return books;
+    }
+
+    private static List<AuthorRef> authorRefs(List<Author> authors) {
+        List<AuthorRef> authorRefs = new ArrayList<>(authors.size());
+        for (Author author : authors) {
+            authorRefs.add(new AuthorRef(author.getId(), author.getFirstName(), author.getLastName()));
+        }
+        return List.copyOf(authorRefs);
+    }
+
+    private static List<GenreRef> genreRefs(List<Genre> genres) {
+        List<GenreRef> genreRefs = new ArrayList<>(genres.size());
+        for (Genre genre : genres) {
+            genreRefs.add(new GenreRef(genre.getId(), genre.getName()));
+        }
+        return List.copyOf(genreRefs);
+    }
+
+    private static List<Genre> toGenres(List<GenreRef> genreRefs) {
+        List<Genre> genres = new ArrayList<>(genreRefs.size());
+        for (GenreRef genre : genreRefs) {
+            genres.add(genre.toGenre());
+        }
+        return genres;
+    }
+
+    /**
+     * Invalidates everything cached about a book after it has been changed, for example
+     * by another client. Search results are dropped entirely, since any of them may include the book.
+     *
+     * @param bookId the ID of the book
+     */
+    public void invalidateBook(int bookId) {
+        authorsByBook.invalidate(bookId);
+        genresByBook.invalidate(bookId);
+        ratingsByBook.invalidate(bookId);
+        ratingSummaries.invalidate(bookId);
+        bookDetails.invalidate(bookId);
+        searches.invalidateAll();
+        rowSearches.invalidateAll();
+    }
+}
@@ -0,0 +1,675 @@
+package kth.books.model;
+
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.Variable;
+import kth.books.DbConnect;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of the BookDbInterface that stores each book as one document, as an alternative to
+ * the normalized schema of {@link BooksDbImpl}.
+ * <p>
+ * A Book document embeds references to its authors ({@code author_id}, {@code first_name} and
+ * {@code last_name}), the IDs of its genres and its rating summary, so a complete row is read with a
+ * single indexed {@code find} and decoded directly by {@link BookRowCodec}; only the genre names come
+ * from the genre dictionary. Authors and genres are still stored once in the Author and Genre
+ * collections. The individual ratings, which grow without bound, are kept out of the Book document in
+ * the RatingBucket collection, in buckets of at most {@code books.ratings.bucketSize} ratings per book.
+ * <p>
+ * The schema is selected with {@code -Dbooks.db.schema=embedded}. Both schemas use the collection name
+ * Book, so each needs its own database, chosen with {@code books.db.name}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class EmbeddedBooksDb implements BooksDbInterface {
+    private static final int BUCKET_SIZE = Integer.getInteger("books.ratings.bucketSize", 100);
+    private static final long SEARCH_MAX_TIME_MS = Long.getLong("books.search.maxTimeMs", 5_000);
+    private static final Bson WITHOUT_DETAILS = Projections.exclude("authors", "genres");
+    private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+    private final MongoDatabase database;
+    private final IdAllocator idAllocator;
+    private final AuthorResolver authorResolver;
+    private final GenreCatalog genreCatalog;
+    private final Transactions transactions = new Transactions();
+    private boolean closed;
+
+    /**
+     * Constructs an EmbeddedBooksDb, establishes a database connection to MongoDB and
+     * starts creating any missing indexes in the background.
+     */
+    public EmbeddedBooksDb() {
+        this.database = DbConnect.getDatabase();
+        this.idAllocator = new IdAllocator(database);
+        this.authorResolver = new AuthorResolver(database, idAllocator);
+        this.genreCatalog = new GenreCatalog(database, idAllocator);
+        new IndexManager(database, true).ensureIndexesInBackground();
+    }
+
+    /**
+     * Retrieves all books without their authors and genres.
+     *
+     * @return a list of books
+     */
+    @Override
+    public List<Book> getAllBooks() {
+        return toBooks(books().find().projection(WITHOUT_DETAILS).into(new ArrayList<>()));
+    }
+
+    /**
+     * Retrieves all books with authors, genres and a summarized rating, which are all part of the Book documents.
+     *
+     * @return a list of fully populated books
+     */
+    @Override
+    public List<Book> getAllBooksWithDetails() {
+        return toBooks(genreCatalog.withNames(books().find().into(new ArrayList<>())));
+    }
+
+    /**
+     * Retrieves the page of books following the given book ID, using the book_id index.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return the next page of books
+     */
+    @Override
+    public List<Book> getBooksAfter(int afterBookId, int pageSize) {
+        return toBooks(books().find(Filters.gt("book_id", afterBookId))
+                .projection(WITHOUT_DETAILS)
+                .sort(Sorts.ascending("book_id"))
+                .limit(pageSize)
+                .into(new ArrayList<>()));
+    }
+
+    /**
+     * Retrieves the given books with authors, genres and a summarized rating with one find.
+     *
+     * @param bookIds the IDs of the books
+     * @return a list of fully populated books
+     */
+    @Override
+    public List<Book> getBooksWithDetails(List<Integer> bookIds) {
+        return toBooks(getBookRowsWithDetails(bookIds));
+    }
+
+    /**
+     * Retrieves the page of rows following the given book ID, using the book_id index. Since the details
+     * are part of the Book documents, the rows come with their authors and genres.
+     *
+     * @param afterBookId the ID of the last book on the previous page, or 0 for the first page
+     * @param pageSize the maximum number of books to return
+     * @return the next page of rows
+     */
+    @Override
+    public List<BookRow> getBookRowsAfter(int afterBookId, int pageSize) {
+        return genreCatalog.withNames(books().find(Filters.gt("book_id", afterBookId))
+                .sort(Sorts.ascending("book_id"))
+                .limit(pageSize)
+                .into(new ArrayList<>()));
+    }
+
+    /**
+     * Retrieves the given books as rows with details with one find on the book_id index, in the order of the IDs.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rows
+     */
+    @Override
+    public List<BookRow> getBookRowsWithDetails(List<Integer> bookIds) {
+        if (bookIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, BookRow> byId = new HashMap<>();
+        for (BookRow row : books().find(Filters.in("book_id", bookIds))) {
+            byId.put(row.id(), row);
+        }
+        List<BookRow> rows = new ArrayList<>();
+        for (Integer bookId : bookIds) {
+            BookRow row = byId.get(bookId);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return genreCatalog.withNames(rows);
+    }
+
+    /**
+     * Searches for books with the given engine and returns them as rows with details with one find.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return the matching rows
+     */
+    @Override
+    public List<BookRow> searchBookRows(String searchTerm, SearchMode mode, int limit) {
+        return genreCatalog.withNames(BooksDbImpl.readSearchResults(search(searchTerm, mode, limit, null)));
+    }
+
+    @Override
+    public List<Book> searchBooks(String searchTerm) {
+        return searchBooks(searchTerm, SearchMode.REGEX, 0);
+    }
+
+    /**
+     * Searches for books and returns them with authors, genres and a summarized rating.
+     *
+     * @param searchTerm the term to search for
+     * @return a list of fully populated matching books
+     */
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm) {
+        return searchBooksWithDetails(searchTerm, SearchMode.REGEX, 0);
+    }
+
+    /**
+     * Searches for books with the given engine, without their authors and genres. Text searches are ranked by relevance.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return a list of matching books
+     */
+    @Override
+    public List<Book> searchBooks(String searchTerm, SearchMode mode, int limit) {
+        return toBooks(BooksDbImpl.readSearchResults(search(searchTerm, mode, limit, WITHOUT_DETAILS)));
+    }
+
+    /**
+     * Searches for books with the given engine and returns them with authors, genres and a summarized rating.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return a list of fully populated matching books
+     */
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm, SearchMode mode, int limit) {
+        return toBooks(searchBookRows(searchTerm, mode, limit));
+    }
+
+    /**
+     * Builds the find for a search, with the same filters as {@link BooksDbImpl}, ranking text
+     * searches by relevance and giving up after {@code books.search.maxTimeMs} milliseconds.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @param projection the fields to leave out, or null to read whole documents
+     * @return the find
+     */
+    private FindIterable<BookRow> search(String searchTerm, SearchMode mode, int limit, Bson projection) {
+        FindIterable<BookRow> rows = books().find(BooksDbImpl.searchQuery(searchTerm, mode)).limit(limit)
+                .maxTime(SEARCH_MAX_TIME_MS, TimeUnit.MILLISECONDS);
+        if (mode == SearchMode.TEXT) {
+            Bson score = Projections.metaTextScore("score");
+            rows = rows.projection(projection != null ? Projections.fields(projection, score) : score)
+                    .sort(Sorts.metaTextScore("score"));
+        } else if (projection != null) {
+            rows = rows.projection(projection);
+        }
+        return rows;
+    }
+
+    /**
+     * Adds a new book without authors, genres or ratings, taking its ID from the ID allocator.
+     *
+     * @param book the book to add
+     * @return the ID assigned to the book
+     */
+    @Override
+    public int addBook(Book book) {
+        int bookId = idAllocator.nextId("Book", "book_id");
+        BooksDbImpl.insertStamped(database.getCollection("Book"), null, bookDocument(bookId, book), "book_id", "updated_at");
+        book.setId(bookId);
+        return bookId;
+    }
+
+    /**
+     * Adds a new book together with its authors, genres and first rating. The authors are found or
+     * created by name first, since they may already belong to other books. Everything else about the
+     * book is one document, so no transaction is needed: the first rating's bucket is written before
+     * the Book document, so that a book is never visible without its ratings.
+     *
+     * @param book the book to add
+     * @param authors the authors of the book, found or created by name
+     * @param genreIds the IDs of the existing genres of the book
+     * @param ratingValue the first rating of the book, or 0 to add the book without a rating
+     * @return the IDs assigned to the book, its authors and its rating
+     */
+    @Override
+    public AddedBook addBookWithDetails(Book book, List<Author> authors, List<Integer> genreIds, int ratingValue) {
+        int bookId = idAllocator.nextId("Book", "book_id");
+        List<Integer> authorIds = resolveAuthors(authors);
+
+        Map<Integer, Document> authorDocs = new LinkedHashMap<>();
+        for (Author author : authors) {
+            authorDocs.putIfAbsent(author.getId(), authorDocument(author.getId(), author.getFirstName(), author.getLastName()));
+        }
+        Map<Integer, Document> genreDocs = new LinkedHashMap<>();
+        for (int genreId : genreIds) {
+            genreDocs.putIfAbsent(genreId, new Document("genre_id", genreId));
+        }
+        Document bookDoc = bookDocument(bookId, book)
+                .append("authors", new ArrayList<>(authorDocs.values()))
+                .append("genres", new ArrayList<>(genreDocs.values()));
+
+        int ratingId = 0;
+        if (ratingValue > 0) {
+            ratingId = idAllocator.nextId("BookRating", "rating_id");
+            String ratingDate = java.time.LocalDate.now().toString();
+            addToBucket(null, bookId, ratingId, ratingValue, ratingDate);
+            bookDoc.append("rating_summary", new Document("count", 1)
+                    .append("sum", ratingValue)
+                    .append("min", ratingValue)
+                    .append("max", ratingValue)
+                    .append("latest", ratingValue)
+                    .append("latest_date", ratingDate));
+        }
+        BooksDbImpl.insertStamped(database.getCollection("Book"), null, bookDoc, "book_id", "updated_at");
+
+        book.setId(bookId);
+        return new AddedBook(bookId, List.copyOf(new LinkedHashSet<>(authorIds)), ratingId);
+    }
+
+    /**
+     * Deletes a book and its rating buckets and leaves a tombstone,
+     * so that other clients following the change feed can remove it too.
+     *
+     * @param bookId the ID of the book to delete
+     */
+    @Override
+    public void deleteBook(int bookId) {
+        database.getCollection("Book").deleteOne(Filters.eq("book_id", bookId));
+        database.getCollection("RatingBucket").deleteMany(Filters.eq("book_id", bookId));
+        BooksDbImpl.insertStamped(database.getCollection("BookTombstone"), null, new Document("book_id", bookId),
+                "book_id", "deleted_at");
+    }
+
+    /**
+     * Retrieves the ID of the last inserted book.
+     *
+     * @return the ID of the last inserted book
+     */
+    @Override
+    public int getLastInsertedBookId() {
+        Document lastBook = database.getCollection("Book").find().sort(Sorts.descending("book_id"))
+                .projection(Projections.include("book_id")).first();
+        return lastBook != null ? lastBook.getInteger("book_id") : 0;
+    }
+
+    /**
+     * Retrieves the authors embedded in a book.
+     *
+     * @param bookId the ID of the book
+     * @return a list of authors
+     */
+    @Override
+    public List<Author> getAuthorsForBook(int bookId) {
+        List<Author> authors = new ArrayList<>();
+        BookRow row = books().find(Filters.eq("book_id", bookId)).projection(Projections.include("authors")).first();
+        if (row != null) {
+            for (AuthorRef author : row.authors()) {
+                authors.add(author.toAuthor());
+            }
+        }
+        return authors;
+    }
+
+    /**
+     * Adds an author, or finds the existing author with the same normalized name.
+     *
+     * @param author the author to add
+     * @return the ID of the author
+     */
+    @Override
+    public int addAuthor(Author author) {
+        return findOrCreateAuthor(author);
+    }
+
+    /**
+     * Finds or creates an author with an upsert on its normalized name.
+     *
+     * @param author the author to find or create
+     * @return the ID of the author
+     */
+    @Override
+    public int findOrCreateAuthor(Author author) {
+        int authorId = authorResolver.findOrCreate(author.getFirstName(), author.getLastName());
+        author.setId(authorId);
+        return authorId;
+    }
+
+    /**
+     * Finds or creates several authors with one query and at most one bulk write of upserts.
+     *
+     * @param authors the authors to find or create
+     * @return the ID of each author, in the order of the given authors
+     */
+    @Override
+    public List<Integer> resolveAuthors(List<Author> authors) {
+        List<AuthorRef> names = new ArrayList<>(authors.size());
+        for (Author author : authors) {
+            names.add(new AuthorRef(0, author.getFirstName(), author.getLastName()));
+        }
+        Map<String, Integer> idsByName = authorResolver.resolve(names);
+        List<Integer> authorIds = new ArrayList<>(authors.size());
+        for (Author author : authors) {
+            int authorId = idsByName.get(AuthorResolver.nameKey(author.getFirstName(), author.getLastName()));
+            author.setId(authorId);
+            authorIds.add(authorId);
+        }
+        return authorIds;
+    }
+
+    /**
+     * Links an author to a book by embedding a reference to the author, with its name, in the book.
+     *
+     * @param bookId the ID of the book
+     * @param authorId the ID of the author
+     */
+    @Override
+    public void linkAuthorToBook(int bookId, int authorId) {
+        Document author = database.getCollection("Author").find(Filters.eq("author_id", authorId))
+                .projection(Projections.include("first_name", "last_name")).first();
+        if (author == null) {
+            throw new BooksDbException("No author with ID " + authorId);
+        }
+        database.getCollection("Book").updateOne(Filters.eq("book_id", bookId), Updates.combine(
+                Updates.addToSet("authors", authorDocument(authorId, author.getString("first_name"), author.getString("last_name"))),
+                Updates.currentDate("updated_at")
+        ));
+    }
+
+    /**
+     * Retrieves the ID of the last inserted author.
+     *
+     * @return the ID of the last inserted author
+     */
+    @Override
+    public int getLastInsertedAuthorId() {
+        Document lastAuthor = database.getCollection("Author").find().sort(Sorts.descending("author_id"))
+                .projection(Projections.include("author_id")).first();
+        return lastAuthor != null ? lastAuthor.getInteger("author_id") : 0;
+    }
+
+    /**
+     * Retrieves all genres from the in-memory genre dictionary, loading it on first use.
+     *
+     * @return a list of genres
+     */
+    @Override
+    public List<Genre> getAllGenres() {
+        return genreCatalog.dictionary().toGenres();
+    }
+
+    /**
+     * Adds a genre to the Genre collection and swaps in a new genre dictionary that includes it.
+     *
+     * @param genre the genre to add
+     * @return the ID assigned to the genre
+     */
+    @Override
+    public int addGenre(Genre genre) {
+        return genreCatalog.add(genre);
+    }
+
+    /**
+     * Retrieves the genres of a book. Only the genre IDs are stored in the book; the names come
+     * from the genre dictionary.
+     *
+     * @param bookId the ID of the book
+     * @return a list of genres
+     */
+    @Override
+    public List<Genre> getGenresForBook(int bookId) {
+        List<Genre> genres = new ArrayList<>();
+        BookRow row = books().find(Filters.eq("book_id", bookId)).projection(Projections.include("genres")).first();
+        if (row != null) {
+            for (GenreRef genre : genreCatalog.covering(row.genres()).resolveAll(row.genres())) {
+                genres.add(genre.toGenre());
+            }
+        }
+        return genres;
+    }
+
+    /**
+     * Links a genre to a book by adding its ID to the book's genres.
+     *
+     * @param bookId the ID of the book
+     * @param genreId the ID of the genre
+     */
+    @Override
+    public void linkGenreToBook(int bookId, int genreId) {
+        database.getCollection("Book").updateOne(Filters.eq("book_id", bookId), Updates.combine(
+                Updates.addToSet("genres", new Document("genre_id", genreId)),
+                Updates.currentDate("updated_at")
+        ));
+    }
+
+    /**
+     * Adds a rating to the book's newest rating bucket and updates the rating summary
+     * embedded in the book, in one transaction where the server supports it.
+     *
+     * @param bookId the ID of the book
+     * @param ratingValue the value of the rating
+     */
+    @Override
+    public void addRatingToBook(int bookId, int ratingValue) {
+        String ratingDate = java.time.LocalDate.now().toString();
+        int ratingId = idAllocator.nextId("BookRating", "rating_id");
+        Bson filter = Filters.eq("book_id", bookId);
+        Bson summaryUpdate = Updates.combine(
+                Updates.inc("rating_summary.count", 1),
+                Updates.inc("rating_summary.sum", ratingValue),
+                Updates.min("rating_summary.min", ratingValue),
+                Updates.max("rating_summary.max", ratingValue),
+                Updates.set("rating_summary.latest", ratingValue),
+                Updates.set("rating_summary.latest_date", ratingDate),
+                Updates.currentDate("updated_at")
+        );
+        transactions.run(session -> {
+            addToBucket(session, bookId, ratingId, ratingValue, ratingDate);
+            if (session != null) {
+                database.getCollection("Book").updateOne(session, filter, summaryUpdate);
+            } else {
+                database.getCollection("Book").updateOne(filter, summaryUpdate);
+            }
+        });
+    }
+
+    /**
+     * Retrieves all ratings of a book by unwinding its rating buckets on the server.
+     *
+     * @param bookId the ID of the book
+     * @return a list of ratings, oldest first
+     */
+    @Override
+    public List<BookRating> getRatingsForBook(int bookId) {
+        return database.getCollection("RatingBucket").aggregate(List.of(
+                Aggregates.match(Filters.eq("book_id", bookId)),
+                Aggregates.sort(Sorts.ascending("_id")),
+                Aggregates.unwind("$ratings"),
+                Aggregates.replaceRoot(new Document("$mergeObjects", List.of(
+                        new Document("book_id", "$book_id"), "$ratings")))
+        ), BookRating.class).into(new ArrayList<>());
+    }
+
+    /**
+     * Retrieves the rating summary embedded in a book.
+     *
+     * @param bookId the ID of the book
+     * @return the rating summary, empty if the book has no ratings
+     */
+    @Override
+    public RatingSummary getRatingSummary(int bookId) {
+        BookRow row = books().find(Filters.eq("book_id", bookId))
+                .projection(Projections.include("book_id", "rating_summary"))
+                .first();
+        return row != null ? row.rating() : RatingSummary.empty(bookId);
+    }
+
+    /**
+     * Retrieves the rating summaries embedded in several books with one query.
+     *
+     * @param bookIds the IDs of the books
+     * @return the rating summary of each existing book, keyed by book ID
+     */
+    @Override
+    public Map<Integer, RatingSummary> getRatingSummaries(List<Integer> bookIds) {
+        Map<Integer, RatingSummary> summaries = new HashMap<>();
+        for (BookRow row : books().find(Filters.in("book_id", bookIds))
+                .projection(Projections.include("book_id", "rating_summary"))) {
+            summaries.put(row.id(), row.rating());
+        }
+        return summaries;
+    }
+
+    /**
+     * Recomputes every book's rating summary from the rating buckets. Each book is joined with its
+     * buckets, the summary is computed on the server and written over the old one with a single $merge,
+     * so no rating leaves the database and readers never see a book without its summary. Books without
+     * ratings get an empty summary.
+     */
+    @Override
+    public void rebuildRatingSummaries() {
+        database.getCollection("Book").aggregate(List.of(
+                Aggregates.project(Projections.fields(Projections.include("book_id"), Projections.excludeId())),
+                Aggregates.lookup("RatingBucket", List.of(new Variable<>("bookId", "$book_id")), List.of(
+                        Aggregates.match(Filters.expr(new Document("$eq", List.of("$book_id", "$$bookId")))),
+                        Aggregates.unwind("$ratings"),
+                        Aggregates.sort(Sorts.ascending("ratings.rating_date", "ratings.rating_id")),
+                        Aggregates.group(null,
+                                Accumulators.sum("count", 1),
+                                Accumulators.sum("sum", "$ratings.value"),
+                                Accumulators.min("min", "$ratings.value"),
+                                Accumulators.max("max", "$ratings.value"),
+                                Accumulators.last("latest", "$ratings.value"),
+                                Accumulators.last("latest_date", "$ratings.rating_date")),
+                        Aggregates.project(Projections.excludeId())
+                ), "summary"),
+                Aggregates.project(new Document("book_id", 1)
+                        .append("rating_summary", new Document("$ifNull", List.of(
+                                new Document("$arrayElemAt", List.of("$summary", 0)),
+                                new Document("count", 0).append("sum", 0))))),
+                Aggregates.merge("Book", new MergeOptions()
+                        .uniqueIdentifier("book_id")
+                        .whenMatched(MergeOptions.WhenMatched.MERGE)
+                        .whenNotMatched(MergeOptions.WhenNotMatched.DISCARD))
+        )).allowDiskUse(true).toCollection();
+    }
+
+    /**
+     * Appends a rating to the book's bucket that still has room, starting a new bucket when all are full.
+     * Two clients starting a bucket at the same time may both create one; either is used until it is full.
+     *
+     * @param session the session of the transaction, or null to write without one
+     * @param bookId the ID of the book
+     * @param ratingId the ID of the rating
+     * @param ratingValue the value of the rating
+     * @param ratingDate the date of the rating
+     */
+    private void addToBucket(ClientSession session, int bookId, int ratingId, int ratingValue, String ratingDate) {
+        Bson filter = Filters.and(Filters.eq("book_id", bookId), Filters.lt("count", BUCKET_SIZE));
+        Bson update = Updates.combine(
+                Updates.push("ratings", new Document("rating_id", ratingId)
+                        .append("value", ratingValue)
+                        .append("rating_date", ratingDate)),
+                Updates.inc("count", 1));
+        MongoCollection<Document> buckets = database.getCollection("RatingBucket");
+        if (session != null) {
+            buckets.updateOne(session, filter, update, UPSERT);
+        } else {
+            buckets.updateOne(filter, update, UPSERT);
+        }
+    }
+
+    /**
+     * Creates the fields of a Book document that do not depend on other collections.
+     *
+     * @param bookId the ID of the book
+     * @param book the book
+     * @return the document
+     */
+    private static Document bookDocument(int bookId, Book book) {
+        return new Document("book_id", bookId)
+                .append("ISBN", book.getISBN())
+                .append("title", book.getTitle())
+                .append("publication_date", book.getPublicationDate())
+                .append("rating", book.getRating());
+    }
+
+    /**
+     * Creates the reference to an author that is embedded in a book.
+     *
+     * @param authorId the ID of the author
+     * @param firstName the first name of the author
+     * @param lastName the last name of the author
+     * @return the reference
+     */
+    private static Document authorDocument(int authorId, String firstName, String lastName) {
+        return new Document("author_id", authorId)
+                .append("first_name", firstName)
+                .append("last_name", lastName);
+    }
+
+    private MongoCollection<BookRow> books() {
+        return database.getCollection("Book", BookRow.class);
+    }
+
+    private static List<Book> toBooks(List<BookRow> rows) {
+        List<Book> books = new ArrayList<>(rows.size());
+        for (BookRow row : rows) {
+            books.add(row.toBook());
+        }
+        return books;
+    }
+
+    @Override
+    public BooksDbSchema getSchema() {
+        return BooksDbSchema.EMBEDDED;
+    }
+
+    /**
+     * Does nothing, as only genre names are cached, and they are reloaded on their own.
+     */
+    @Override
+    public void invalidateCaches() {
+    }
+
+    /**
+     * Closes the database connection by releasing the shared client, which shuts down
+     * its connection pool once no other component uses it.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        System.out.println(DbConnect.getPoolMetrics());
+        DbConnect.release();
+        System.out.println("MongoDB connection closed.");
+    }
+}
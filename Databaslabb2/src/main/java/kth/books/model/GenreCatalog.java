@@ -0,0 +1,127 @@
+package kth.books.model;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * The Genre collection of a database, read into an immutable {@link GenreDictionary} that the
+ * MongoDB backends resolve genre names from, so that books only need to store genre IDs.
+ * <p>
+ * The dictionary is loaded on first use and reloaded once it is older than
+ * {@code books.genres.ttlSeconds}, so genres changed by other clients show up.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class GenreCatalog {
+    private static final long GENRES_TTL_MS = Long.getLong("books.genres.ttlSeconds", 300) * 1_000;
+    private static final long GENRES_MIN_RELOAD_MS = 5_000;
+
+    private final MongoDatabase database;
+    private final IdAllocator idAllocator;
+    private volatile GenreDictionary genreDictionary;
+    private volatile long genresLoadedAt;
+
+    /**
+     * Constructs a GenreCatalog.
+     *
+     * @param database the database holding the Genre collection
+     * @param idAllocator the allocator new genre IDs are taken from
+     */
+    GenreCatalog(MongoDatabase database, IdAllocator idAllocator) {
+        this.database = database;
+        this.idAllocator = idAllocator;
+    }
+
+    /**
+     * Retrieves the current genre dictionary, loading it on first use and reloading it once it
+     * is older than {@code books.genres.ttlSeconds}.
+     *
+     * @return the genre dictionary
+     */
+    GenreDictionary dictionary() {
+        GenreDictionary dictionary = genreDictionary;
+        if (dictionary == null || System.currentTimeMillis() - genresLoadedAt >= GENRES_TTL_MS) {
+            dictionary = reload();
+        }
+        return dictionary;
+    }
+
+    /**
+     * Retrieves a genre dictionary that knows the given genres if possible. A genre missing from the
+     * current dictionary was probably added by another client, so the dictionary is reloaded, but at
+     * most every few seconds, so that links to genres that do not exist cannot cause a reload per call.
+     *
+     * @param genreRefs the genres that need names
+     * @return the genre dictionary
+     */
+    GenreDictionary covering(List<GenreRef> genreRefs) {
+        GenreDictionary dictionary = dictionary();
+        if (!dictionary.containsAll(genreRefs) && System.currentTimeMillis() - genresLoadedAt >= GENRES_MIN_RELOAD_MS) {
+            dictionary = reload();
+        }
+        return dictionary;
+    }
+
+    /**
+     * Adds a genre to the Genre collection and swaps in a new genre dictionary that includes it.
+     *
+     * @param genre the genre to add
+     * @return the ID assigned to the genre
+     */
+    int add(Genre genre) {
+        // The catalog is seeded first, so a new genre never takes the ID of a default genre.
+        dictionary();
+        int genreId = idAllocator.nextId("Genre", "genre_id");
+        database.getCollection("Genre", GenreRef.class).insertOne(new GenreRef(genreId, genre.getName()));
+        genre.setId(genreId);
+        reload();
+        return genreId;
+    }
+
+    /**
+     * Fills in the genre names of rows from the genre dictionary.
+     *
+     * @param rows the rows, whose genres only carry IDs; replaced in place
+     * @return the same list
+     */
+    List<BookRow> withNames(List<BookRow> rows) {
+        for (ListIterator<BookRow> iterator = rows.listIterator(); iterator.hasNext(); ) {
+            BookRow row = iterator.next();
+            if (!row.genres().isEmpty()) {
+                iterator.set(row.withGenres(covering(row.genres()).resolveAll(row.genres())));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the Genre collection into a new dictionary and publishes it. An empty collection is first
+     * seeded with {@link GenreDictionary#DEFAULT_GENRES}; if several clients seed it at the same time,
+     * the unique genre_id index keeps one copy of each genre.
+     *
+     * @return the new dictionary
+     */
+    private GenreDictionary reload() {
+        MongoCollection<GenreRef> collection = database.getCollection("Genre", GenreRef.class);
+        List<GenreRef> genres = collection.find().sort(Sorts.ascending("genre_id")).into(new ArrayList<>());
+        if (genres.isEmpty()) {
+            try {
+                collection.insertMany(GenreDictionary.DEFAULT_GENRES, new InsertManyOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                System.out.println("Genre catalog was seeded by another client: " + e.getMessage());
+            }
+            genres = collection.find().sort(Sorts.ascending("genre_id")).into(new ArrayList<>());
+        }
+        GenreDictionary dictionary = new GenreDictionary(genres);
+        genreDictionary = dictionary;
+        genresLoadedAt = System.currentTimeMillis();
+        return dictionary;
+    }
+}
@@ -0,0 +1,124 @@
+package kth.books.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the genre catalog, mapping genre IDs to names.
+ * <p>
+ * A snapshot is never changed after it has been built. When the catalog changes, the database
+ * builds a new snapshot and swaps it in with a single volatile write, so genre names are resolved
+ * without locks or round trips by any number of threads while the catalog is being reloaded.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public final class GenreDictionary {
+    /**
+     * The genres the catalog is seeded with when it is empty.
+     */
+    public static final List<GenreRef> DEFAULT_GENRES = List.of(
+            new GenreRef(1, "Programming"),
+            new GenreRef(2, "Science Fiction"),
+            new GenreRef(3, "Fantasy"),
+            new GenreRef(4, "Romance"),
+            new GenreRef(5, "Mystery"),
+            new GenreRef(6, "Horror"),
+            new GenreRef(7, "Non-Fiction"));
+
+    private final List<GenreRef> genres;
+    private final IntObjectMap<GenreRef> byId;
+
+    /**
+     * Constructs a snapshot of the given genres.
+     *
+     * @param genres the genres, in the order they are listed
+     */
+    public GenreDictionary(List<GenreRef> genres) {
+        this.genres = List.copyOf(genres);
+        this.byId = new IntObjectMap<>(genres.size());
+        for (GenreRef genre : this.genres) {
+            byId.put(genre.id(), genre);
+        }
+    }
+
+    /**
+     * Checks whether a genre is in the snapshot.
+     *
+     * @param genreId the ID of the genre
+     * @return true if the genre is known
+     */
+    public boolean contains(int genreId) {
+        return byId.get(genreId) != null;
+    }
+
+    /**
+     * Resolves a genre ID to the genre with its name.
+     *
+     * @param genreId the ID of the genre
+     * @return the genre, named after its ID if it is not in the snapshot
+     */
+    public GenreRef resolve(int genreId) {
+        GenreRef genre = byId.get(genreId);
+        return genre != null ? genre : new GenreRef(genreId, "Genre " + genreId);
+    }
+
+    /**
+     * Resolves the names of a list of genres.
+     *
+     * @param genreRefs the genres, of which only the IDs are used
+     * @return the genres with their names from the snapshot
+     */
+    public List<GenreRef> resolveAll(List<GenreRef> genreRefs) {
+        List<GenreRef> resolved = new ArrayList<>(genreRefs.size());
+        for (GenreRef genre : genreRefs) {
+            resolved.add(resolve(genre.id()));
+        }
+        return resolved;
+    }
+
+    /**
+     * Checks whether every genre in a list is in the snapshot.
+     *
+     * @param genreRefs the genres
+     * @return true if all of them are known
+     */
+    public boolean containsAll(List<GenreRef> genreRefs) {
+        for (GenreRef genre : genreRefs) {
+            if (!contains(genre.id())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the genres of the snapshot.
+     *
+     * @return an unmodifiable list of the genres, in the order they are listed
+     */
+    public List<GenreRef> genres() {
+        return genres;
+    }
+
+    /**
+     * Retrieves all genres as new property-backed genres for the view.
+     *
+     * @return the genres, in the order of the snapshot
+     */
+    public List<Genre> toGenres() {
+        List<Genre> result = new ArrayList<>(genres.size());
+        for (GenreRef genre : genres) {
+            result.add(genre.toGenre());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the number of genres in the snapshot.
+     *
+     * @return the number of genres
+     */
+    public int size() {
+        return genres.size();
+    }
+}
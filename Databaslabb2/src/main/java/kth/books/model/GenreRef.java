@@ -0,0 +1,21 @@
+package kth.books.model;
+
+/**
+ * An immutable reference to a genre, as returned by the read API of {@link BooksDbInterface}.
+ *
+ * @param id the ID of the genre
+ * @param name the name of the genre
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public record GenreRef(int id, String name) {
+
+    /**
+     * Creates a genre for binding to the view.
+     *
+     * @return the genre
+     */
+    public Genre toGenre() {
+        return new Genre(id, name);
+    }
+}
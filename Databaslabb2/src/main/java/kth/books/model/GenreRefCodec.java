@@ -0,0 +1,45 @@
+package kth.books.model;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * Codec reading and writing genre documents as {@link GenreRef}s, straight from and to BSON.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class GenreRefCodec implements Codec<GenreRef> {
+
+    @Override
+    public GenreRef decode(BsonReader reader, DecoderContext decoderContext) {
+        int genreId = 0;
+        String name = null;
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "genre_id" -> genreId = BsonFields.readInt(reader);
+                case "name" -> name = BsonFields.readString(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new GenreRef(genreId, name);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, GenreRef genre, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeInt32("genre_id", genre.id());
+        AuthorRefCodec.writeString(writer, "name", genre.name());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<GenreRef> getEncoderClass() {
+        return GenreRef.class;
+    }
+}
@@ -0,0 +1,139 @@
+package kth.books.model;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Allocates numeric IDs from an atomic counters collection.
+ * <p>
+ * Each counter document in {@code Counters} is advanced with a single {@code findOneAndUpdate} and
+ * {@code $inc}, which is atomic on the server, so concurrent writers never receive the same ID.
+ * IDs are reserved in blocks (hi/lo style) and handed out from memory until the block is used up,
+ * so most inserts need no extra round trip. The block size is set with {@code books.ids.blockSize}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class IdAllocator {
+    private static final String COUNTERS_COLLECTION = "Counters";
+    private static final int DEFAULT_BLOCK_SIZE = Integer.getInteger("books.ids.blockSize", 20);
+
+    private final MongoDatabase database;
+    private final MongoCollection<Document> counters;
+    private final int blockSize;
+    private final Map<String, IdRange> blocks = new HashMap<>();
+    private final Set<String> seeded = new HashSet<>();
+
+    /**
+     * A range of consecutive IDs reserved from a counter.
+     *
+     * @param first the first ID in the range
+     * @param count the number of IDs in the range
+     */
+    public record IdRange(int first, int count) {
+
+        /**
+         * Retrieves the last ID in the range.
+         *
+         * @return the last ID
+         */
+        public int last() {
+            return first + count - 1;
+        }
+    }
+
+    /**
+     * Constructs an IdAllocator using the default block size.
+     *
+     * @param database the database holding the counters collection
+     */
+    public IdAllocator(MongoDatabase database) {
+        this(database, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructs an IdAllocator.
+     *
+     * @param database the database holding the counters collection
+     * @param blockSize the number of IDs reserved per round trip
+     */
+    public IdAllocator(MongoDatabase database, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.database = database;
+        this.counters = database.getCollection(COUNTERS_COLLECTION);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Retrieves the next ID for a collection, reserving a new block when the current one is used up.
+     *
+     * @param collection the collection the ID is for
+     * @param idField the name of the ID field in that collection
+     * @return the next unused ID
+     */
+    public synchronized int nextId(String collection, String idField) {
+        IdRange block = blocks.get(idField);
+        if (block == null || block.count() == 0) {
+            block = reserve(collection, idField, blockSize);
+        }
+        blocks.put(idField, new IdRange(block.first() + 1, block.count() - 1));
+        return block.first();
+    }
+
+    /**
+     * Reserves a range of consecutive IDs in a single round trip, for example for a bulk insert.
+     *
+     * @param collection the collection the IDs are for
+     * @param idField the name of the ID field in that collection
+     * @param count the number of IDs to reserve
+     * @return the reserved range
+     */
+    public IdRange reserve(String collection, String idField, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be positive: " + count);
+        }
+        seed(collection, idField);
+        Document counter = counters.findOneAndUpdate(
+                Filters.eq("_id", idField),
+                Updates.inc("seq", count),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER));
+        int last = counter.get("seq", Number.class).intValue();
+        return new IdRange(last - count + 1, count);
+    }
+
+    /**
+     * Makes sure the counter starts above the highest ID already stored in the collection,
+     * so that data inserted before the counter existed is never overwritten.
+     * {@code $max} keeps this safe when several clients seed the same counter.
+     *
+     * @param collection the collection the IDs are for
+     * @param idField the name of the ID field in that collection
+     */
+    private void seed(String collection, String idField) {
+        synchronized (seeded) {
+            if (seeded.contains(idField)) {
+                return;
+            }
+            Document last = database.getCollection(collection).find()
+                    .sort(Sorts.descending(idField))
+                    .projection(new Document(idField, 1))
+                    .first();
+            int current = last != null && last.get(idField) != null ? last.get(idField, Number.class).intValue() : 0;
+            counters.updateOne(Filters.eq("_id", idField), Updates.max("seq", current), new UpdateOptions().upsert(true));
+            seeded.add(idField);
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package kth.books.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Implementation of the BooksDbInterface that keeps the whole catalog in memory and needs no database,
+ * for tests, benchmarks, demos and offline use.
+ * <p>
+ * Books and authors are kept in int-keyed maps, and the links from a book to its authors, genres and
+ * ratings are int arrays, so neither keys nor links are boxed. Ratings are packed into their book's
+ * array as (ID, value, epoch day) triples. All maps are {@link StripedIntMap}s, so concurrent readers
+ * never block each other and writers only lock the stripe of the book they change. The IDs of the
+ * stored books are also kept in a {@link SortedIntSet}, so that books are listed and paged in ID order
+ * without sorting the keys of the map on every call, and authors are indexed by normalized name to the
+ * same records that hold their IDs.
+ * <p>
+ * The search engines mirror BooksDbImpl: REGEX matches the term as a case-insensitive substring of
+ * the title, ISBN and publication date, PREFIX at the start of a word of the title or at the start of
+ * the ISBN or publication date, and TEXT ranks books by the weighted number of search words
+ * found in the same fields (title 10, ISBN 5, publication date 1), without stemming.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class InMemoryBooksDb implements BooksDbInterface {
+    private static final int RATING_FIELDS = 3;
+    private static final int[] NONE = new int[0];
+
+    private final StripedIntMap<StoredBook> books = new StripedIntMap<>();
+    private final StripedIntMap<StoredAuthor> authors = new StripedIntMap<>();
+    private final StripedIntMap<int[]> authorsByBook = new StripedIntMap<>();
+    private final StripedIntMap<int[]> genresByBook = new StripedIntMap<>();
+    private final StripedIntMap<int[]> ratingsByBook = new StripedIntMap<>();
+    private final Map<String, StoredAuthor> authorsByName = new ConcurrentHashMap<>();
+    private final SortedIntSet bookIds = new SortedIntSet();
+
+    private final AtomicInteger lastBookId = new AtomicInteger();
+    private final AtomicInteger lastAuthorId = new AtomicInteger();
+    private final AtomicInteger lastRatingId = new AtomicInteger();
+    private volatile GenreDictionary genres = new GenreDictionary(GenreDictionary.DEFAULT_GENRES);
+
+    /**
+     * A stored book, without its links.
+     *
+     * @param isbn the ISBN
+     * @param title the title
+     * @param publicationDate the publication date
+     * @param ratings the rating statistics
+     */
+    private record StoredBook(String isbn, String title, String publicationDate, RatingSummary ratings) {
+    }
+
+    /**
+     * A stored author.
+     *
+     * @param id the ID of the author
+     * @param firstName the first name
+     * @param lastName the last name
+     */
+    private record StoredAuthor(int id, String firstName, String lastName) {
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        List<Book> result = new ArrayList<>();
+        for (int bookId : bookIds.toArray()) {
+            StoredBook book = books.get(bookId);
+            if (book != null) {
+                result.add(toBook(bookId, book));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Book> getAllBooksWithDetails() {
+        List<Book> result = new ArrayList<>();
+        for (int bookId : bookIds.toArray()) {
+            Book book = toBookWithDetails(bookId);
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Book> getBooksAfter(int afterBookId, int pageSize) {
+        List<Book> result = new ArrayList<>();
+        for (BookRow row : getBookRowsAfter(afterBookId, pageSize)) {
+            result.add(row.toBook());
+        }
+        return result;
+    }
+
+    @Override
+    public List<Book> getBooksWithDetails(List<Integer> bookIds) {
+        List<Book> result = new ArrayList<>();
+        for (int bookId : bookIds) {
+            Book book = toBookWithDetails(bookId);
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BookRow> getBookRowsAfter(int afterBookId, int pageSize) {
+        List<BookRow> result = new ArrayList<>();
+        int lastSeen = afterBookId;
+        // A book deleted after its ID was read leaves a gap, which is filled from the following IDs.
+        for (int[] ids = bookIds.after(lastSeen, pageSize); ids.length > 0;
+             ids = bookIds.after(lastSeen, pageSize - result.size())) {
+            for (int bookId : ids) {
+                StoredBook book = books.get(bookId);
+                if (book != null) {
+                    result.add(toBookRow(bookId, book, List.of(), List.of()));
+                }
+                lastSeen = bookId;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BookRow> getBookRowsWithDetails(List<Integer> bookIds) {
+        List<BookRow> result = new ArrayList<>();
+        for (int bookId : bookIds) {
+            BookRow row = toBookRowWithDetails(bookId);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<BookRow> searchBookRows(String searchTerm, SearchMode mode, int limit) {
+        List<BookRow> result = new ArrayList<>();
+        for (int bookId : search(searchTerm, mode, limit)) {
+            BookRow row = toBookRowWithDetails(bookId);
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int addBook(Book book) {
+        int bookId = lastBookId.incrementAndGet();
+        books.put(bookId, new StoredBook(book.getISBN(), book.getTitle(), book.getPublicationDate(), RatingSummary.empty(bookId)));
+        bookIds.add(bookId);
+        book.setId(bookId);
+        return bookId;
+    }
+
+    /**
+     * Adds a new book together with its authors, genres and first rating. The links and the rating are
+     * stored before the book itself, so that readers never see the book without its details.
+     *
+     * @param book the book to add
+     * @param newAuthors the authors of the book, found or created by name
+     * @param genreIds the IDs of the existing genres of the book
+     * @param ratingValue the first rating of the book, or 0 to add the book without a rating
+     * @return the IDs assigned to the book, its authors and its rating
+     */
+    @Override
+    public AddedBook addBookWithDetails(Book book, List<Author> newAuthors, List<Integer> genreIds, int ratingValue) {
+        int bookId = lastBookId.incrementAndGet();
+        // The same name may be given twice; the book is linked to each author once, as in BooksDbImpl.
+        List<Integer> authorIds = new ArrayList<>(new LinkedHashSet<>(resolveAuthors(newAuthors)));
+        for (int authorId : authorIds) {
+            authorsByBook.update(bookId, ids -> append(ids, authorId));
+        }
+        for (int genreId : genreIds) {
+            genresByBook.update(bookId, ids -> append(ids, genreId));
+        }
+
+        RatingSummary ratings = RatingSummary.empty(bookId);
+        int ratingId = 0;
+        if (ratingValue > 0) {
+            ratingId = lastRatingId.incrementAndGet();
+            LocalDate today = LocalDate.now();
+            int storedRatingId = ratingId;
+            ratingsByBook.update(bookId, packed -> append(packed, storedRatingId, ratingValue, (int) today.toEpochDay()));
+            ratings = addToSummary(ratings, ratingValue, today);
+        }
+
+        books.put(bookId, new StoredBook(book.getISBN(), book.getTitle(), book.getPublicationDate(), ratings));
+        bookIds.add(bookId);
+        book.setId(bookId);
+        return new AddedBook(bookId, List.copyOf(authorIds), ratingId);
+    }
+
+    @Override
+    public void deleteBook(int bookId) {
+        bookIds.remove(bookId);
+        books.remove(bookId);
+        authorsByBook.remove(bookId);
+        genresByBook.remove(bookId);
+        ratingsByBook.remove(bookId);
+    }
+
+    @Override
+    public int getLastInsertedBookId() {
+        return lastBookId.get();
+    }
+
+    @Override
+    public List<Author> getAuthorsForBook(int bookId) {
+        List<Author> result = new ArrayList<>();
+        for (int authorId : orNone(authorsByBook.get(bookId))) {
+            StoredAuthor author = authors.get(authorId);
+            if (author != null) {
+                result.add(new Author(authorId, author.firstName(), author.lastName()));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int addAuthor(Author author) {
+        return findOrCreateAuthor(author);
+    }
+
+    /**
+     * Finds or creates an author through the index of normalized names.
+     *
+     * @param author the author to find or create
+     * @return the ID of the author
+     */
+    @Override
+    public int findOrCreateAuthor(Author author) {
+        StoredAuthor stored = authorsByName.computeIfAbsent(
+                AuthorResolver.nameKey(author.getFirstName(), author.getLastName()), key -> {
+                    StoredAuthor created = new StoredAuthor(lastAuthorId.incrementAndGet(), author.getFirstName(), author.getLastName());
+                    authors.put(created.id(), created);
+                    return created;
+                });
+        author.setId(stored.id());
+        return stored.id();
+    }
+
+    @Override
+    public List<Integer> resolveAuthors(List<Author> authorsToResolve) {
+        List<Integer> authorIds = new ArrayList<>(authorsToResolve.size());
+        for (Author author : authorsToResolve) {
+            authorIds.add(findOrCreateAuthor(author));
+        }
+        return authorIds;
+    }
+
+    @Override
+    public void linkAuthorToBook(int bookId, int authorId) {
+        authorsByBook.update(bookId, ids -> append(ids, authorId));
+    }
+
+    @Override
+    public int getLastInsertedAuthorId() {
+        return lastAuthorId.get();
+    }
+
+    @Override
+    public List<Genre> getAllGenres() {
+        return genres.toGenres();
+    }
+
+    /**
+     * Adds a genre by publishing a new genre dictionary that includes it. Readers keep using the
+     * previous dictionary until the new one is published.
+     *
+     * @param genre the genre to add
+     * @return the ID assigned to the genre
+     */
+    @Override
+    public synchronized int addGenre(Genre genre) {
+        List<GenreRef> catalog = new ArrayList<>(genres.genres());
+        int genreId = 1;
+        for (GenreRef existing : catalog) {
+            genreId = Math.max(genreId, existing.id() + 1);
+        }
+        catalog.add(new GenreRef(genreId, genre.getName()));
+        genres = new GenreDictionary(catalog);
+        genre.setId(genreId);
+        return genreId;
+    }
+
+    @Override
+    public List<Genre> getGenresForBook(int bookId) {
+        List<Genre> result = new ArrayList<>();
+        for (int genreId : orNone(genresByBook.get(bookId))) {
+            result.add(genres.resolve(genreId).toGenre());
+        }
+        return result;
+    }
+
+    @Override
+    public void linkGenreToBook(int bookId, int genreId) {
+        genresByBook.update(bookId, ids -> append(ids, genreId));
+    }
+
+    /**
+     * Adds a rating to a book and updates the book's rating summary.
+     *
+     * @param bookId the ID of the book
+     * @param ratingValue the value of the rating
+     */
+    @Override
+    public void addRatingToBook(int bookId, int ratingValue) {
+        int ratingId = lastRatingId.incrementAndGet();
+        LocalDate today = LocalDate.now();
+        ratingsByBook.update(bookId, packed -> append(packed, ratingId, ratingValue, (int) today.toEpochDay()));
+        books.update(bookId, book -> book == null ? null
+                : new StoredBook(book.isbn(), book.title(), book.publicationDate(), addToSummary(book.ratings(), ratingValue, today)));
+    }
+
+    @Override
+    public List<BookRating> getRatingsForBook(int bookId) {
+        List<BookRating> result = new ArrayList<>();
+        int[] packed = orNone(ratingsByBook.get(bookId));
+        for (int i = 0; i < packed.length; i += RATING_FIELDS) {
+            result.add(new BookRating(packed[i], bookId, packed[i + 1], LocalDate.ofEpochDay(packed[i + 2])));
+        }
+        return result;
+    }
+
+    @Override
+    public RatingSummary getRatingSummary(int bookId) {
+        StoredBook book = books.get(bookId);
+        return book != null ? book.ratings() : RatingSummary.empty(bookId);
+    }
+
+    @Override
+    public Map<Integer, RatingSummary> getRatingSummaries(List<Integer> bookIds) {
+        Map<Integer, RatingSummary> summaries = new HashMap<>();
+        for (int bookId : bookIds) {
+            StoredBook book = books.get(bookId);
+            if (book != null) {
+                summaries.put(bookId, book.ratings());
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Recomputes every book's rating summary from its stored ratings.
+     */
+    @Override
+    public void rebuildRatingSummaries() {
+        for (int bookId : bookIds.toArray()) {
+            int[] packed = orNone(ratingsByBook.get(bookId));
+            books.update(bookId, book -> book == null ? null
+                    : new StoredBook(book.isbn(), book.title(), book.publicationDate(), summarize(bookId, packed)));
+        }
+    }
+
+    @Override
+    public List<Book> searchBooks(String searchTerm) {
+        return searchBooks(searchTerm, SearchMode.REGEX, 0);
+    }
+
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm) {
+        return searchBooksWithDetails(searchTerm, SearchMode.REGEX, 0);
+    }
+
+    @Override
+    public List<Book> searchBooks(String searchTerm, SearchMode mode, int limit) {
+        List<Book> result = new ArrayList<>();
+        for (int bookId : search(searchTerm, mode, limit)) {
+            StoredBook book = books.get(bookId);
+            if (book != null) {
+                result.add(toBook(bookId, book));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm, SearchMode mode, int limit) {
+        List<Book> result = new ArrayList<>();
+        for (int bookId : search(searchTerm, mode, limit)) {
+            Book book = toBookWithDetails(bookId);
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public BooksDbSchema getSchema() {
+        return BooksDbSchema.IN_MEMORY;
+    }
+
+    /**
+     * Does nothing, as the books are held in memory rather than cached.
+     */
+    @Override
+    public void invalidateCaches() {
+    }
+
+    /**
+     * Does nothing, as there is no connection to close.
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Finds the books matching a search term.
+     *
+     * @param searchTerm the term to search for
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     * @return the IDs of the matching books, most relevant first in text mode and by ID otherwise
+     */
+    private int[] search(String searchTerm, SearchMode mode, int limit) {
+        int[] bookIds = this.bookIds.toArray();
+        int[] matches = new int[bookIds.length];
+        int count = 0;
+
+        if (mode == SearchMode.TEXT) {
+            String term = searchTerm.trim();
+            String phrase = term.matches("[0-9Xx-]+") && term.contains("-") ? term.toLowerCase(Locale.ROOT) : null;
+            String[] words = phrase != null ? new String[0] : term.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+            long[] ranked = new long[bookIds.length];
+            for (int bookId : bookIds) {
+                StoredBook book = books.get(bookId);
+                if (book == null) {
+                    continue;
+                }
+                int score = phrase != null
+                        ? (contains(book.isbn(), phrase) ? 5 : 0) + (contains(book.title(), phrase) ? 10 : 0)
+                        : 10 * countWords(book.title(), words) + 5 * countWords(book.isbn(), words)
+                        + countWords(book.publicationDate(), words);
+                if (score > 0) {
+                    // Highest score first, then lowest ID, in one sortable long.
+                    ranked[count++] = ((long) (Integer.MAX_VALUE - score) << 32) | bookId;
+                }
+            }
+            Arrays.sort(ranked, 0, count);
+            for (int i = 0; i < count; i++) {
+                matches[i] = (int) ranked[i];
+            }
+        } else {
+            boolean prefix = mode == SearchMode.PREFIX;
+            Pattern titlePattern = Pattern.compile(prefix ? SearchMode.wordPrefix(searchTerm) : SearchMode.literal(searchTerm),
+                    Pattern.CASE_INSENSITIVE);
+            Pattern pattern = prefix ? Pattern.compile(SearchMode.prefix(searchTerm), Pattern.CASE_INSENSITIVE) : titlePattern;
+            for (int bookId : bookIds) {
+                StoredBook book = books.get(bookId);
+                if (book != null && (find(titlePattern, book.title()) || find(pattern, book.isbn()) || find(pattern, book.publicationDate()))) {
+                    matches[count++] = bookId;
+                }
+            }
+        }
+        return Arrays.copyOf(matches, limit > 0 ? Math.min(limit, count) : count);
+    }
+
+    private static boolean find(Pattern pattern, String field) {
+        return field != null && pattern.matcher(field).find();
+    }
+
+    private static boolean contains(String field, String phrase) {
+        return field != null && field.toLowerCase(Locale.ROOT).contains(phrase);
+    }
+
+    private static int countWords(String field, String[] words) {
+        if (field == null) {
+            return 0;
+        }
+        String[] fieldWords = field.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+        int count = 0;
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            for (String fieldWord : fieldWords) {
+                if (fieldWord.equals(word)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private Book toBook(int bookId, StoredBook book) {
+        return toBookRow(bookId, book, List.of(), List.of()).toBook();
+    }
+
+    private Book toBookWithDetails(int bookId) {
+        BookRow row = toBookRowWithDetails(bookId);
+        return row != null ? row.toBook() : null;
+    }
+
+    private static BookRow toBookRow(int bookId, StoredBook book, List<AuthorRef> authorRefs, List<GenreRef> genreRefs) {
+        return new BookRow(bookId, book.isbn(), book.title(), book.publicationDate(), authorRefs, genreRefs, book.ratings());
+    }
+
+    private BookRow toBookRowWithDetails(int bookId) {
+        StoredBook book = books.get(bookId);
+        if (book == null) {
+            return null;
+        }
+        List<AuthorRef> authorRefs = new ArrayList<>();
+        for (int authorId : orNone(authorsByBook.get(bookId))) {
+            StoredAuthor author = authors.get(authorId);
+            if (author != null) {
+                authorRefs.add(new AuthorRef(authorId, author.firstName(), author.lastName()));
+            }
+        }
+        List<GenreRef> genreRefs = new ArrayList<>();
+        for (int genreId : orNone(genresByBook.get(bookId))) {
+            genreRefs.add(genres.resolve(genreId));
+        }
+        return toBookRow(bookId, book, authorRefs, genreRefs);
+    }
+
+    private static RatingSummary addToSummary(RatingSummary summary, int value, LocalDate date) {
+        if (summary.count() == 0) {
+            return new RatingSummary(summary.bookId(), 1, value, value, value, value, date);
+        }
+        return new RatingSummary(summary.bookId(), summary.count() + 1, summary.sum() + value,
+                Math.min(summary.min(), value), Math.max(summary.max(), value), value, date);
+    }
+
+    /**
+     * Computes the rating summary of packed ratings. The latest rating is the one with the latest date,
+     * and of those the one stored last.
+     *
+     * @param bookId the ID of the book
+     * @param packed the packed ratings of the book
+     * @return the rating summary
+     */
+    private static RatingSummary summarize(int bookId, int[] packed) {
+        if (packed.length == 0) {
+            return RatingSummary.empty(bookId);
+        }
+        int count = 0;
+        long sum = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int latest = 0;
+        int latestDay = Integer.MIN_VALUE;
+        for (int i = 0; i < packed.length; i += RATING_FIELDS) {
+            int value = packed[i + 1];
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (packed[i + 2] >= latestDay) {
+                latest = value;
+                latestDay = packed[i + 2];
+            }
+        }
+        return new RatingSummary(bookId, count, sum, min, max, latest, LocalDate.ofEpochDay(latestDay));
+    }
+
+    private static int[] orNone(int[] ids) {
+        return ids != null ? ids : NONE;
+    }
+
+    private static int[] append(int[] array, int... values) {
+        int[] base = orNone(array);
+        int[] result = Arrays.copyOf(base, base.length + values.length);
+        System.arraycopy(values, 0, result, base.length, values.length);
+        return result;
+    }
+}
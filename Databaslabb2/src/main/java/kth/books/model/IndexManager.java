@@ -0,0 +1,270 @@
+package kth.books.model;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Declares the indexes the application relies on and makes sure they exist.
+ * <p>
+ * Missing indexes are created and existing ones are compared with the declaration;
+ * differences such as a missing unique constraint or an index that is not declared are
+ * reported as drift instead of being changed automatically. An index can have a one-off migration
+ * that prepares existing documents for it; it runs only when the index is about to be created.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public final class IndexManager {
+    private final MongoDatabase database;
+    private final List<IndexSpec> indexes = new ArrayList<>();
+    private final Map<String, Runnable> migrations = new HashMap<>();
+
+    /**
+     * An index required by the application.
+     *
+     * @param collection the collection the index belongs to
+     * @param name the name of the index
+     * @param keys the indexed fields and their order
+     * @param unique whether the index enforces unique values
+     * @param weights the relative weights of the fields of a text index, or null
+     * @param partialFilter the filter selecting the documents that are indexed, or null to index all of them
+     */
+    public record IndexSpec(String collection, String name, Document keys, boolean unique, Document weights,
+                            Document partialFilter) {
+    }
+
+    /**
+     * Constructs an IndexManager declaring the indexes used by {@link BooksDbImpl}.
+     *
+     * @param database the database to manage indexes for
+     */
+    public IndexManager(MongoDatabase database) {
+        this(database, false);
+    }
+
+    /**
+     * Constructs an IndexManager declaring the indexes used by {@link BooksDbImpl}, or by
+     * {@link EmbeddedBooksDb}, which has no link collections but indexes the embedded author
+     * IDs and the rating buckets instead.
+     *
+     * @param database the database to manage indexes for
+     * @param embedded whether to declare the indexes of the embedded-document schema
+     */
+    public IndexManager(MongoDatabase database, boolean embedded) {
+        this.database = database;
+        declare("Book", "book_id_unique", new Document("book_id", 1), true);
+        declare("Book", "isbn", new Document("ISBN", 1), false);
+        declareText("Book", "book_text", new Document("title", 10).append("ISBN", 5).append("publication_date", 1));
+        declare("Book", "updated_at", new Document("updated_at", 1), false);
+        declare("BookTombstone", "deleted_at", new Document("deleted_at", 1), false);
+        declare("Author", "author_id_unique", new Document("author_id", 1), true);
+        // Authors written before names were deduplicated have no name_key until they are backfilled.
+        declarePartial("Author", "author_name_key_unique", new Document("name_key", 1), true,
+                new Document("name_key", new Document("$exists", true)));
+        migrations.put("author_name_key_unique", () -> {
+            long backfilled = AuthorResolver.backfillNameKeys(database);
+            if (backfilled > 0) {
+                System.out.println("Gave " + backfilled + " authors a name key");
+            }
+        });
+        declare("Genre", "genre_id_unique", new Document("genre_id", 1), true);
+        if (embedded) {
+            declare("Book", "book_author_ids", new Document("authors.author_id", 1), false);
+            declare("RatingBucket", "book_rating_bucket", new Document("book_id", 1).append("count", 1), false);
+        } else {
+            declare("BookAuthor", "book_author", new Document("book_id", 1).append("author_id", 1), false);
+            declare("BookGenre", "book_genre", new Document("book_id", 1).append("genre_id", 1), false);
+            declare("BookRating", "book_rating_date", new Document("book_id", 1).append("rating_date", 1), false);
+        }
+    }
+
+    /**
+     * Adds an index to the declaration.
+     *
+     * @param collection the collection the index belongs to
+     * @param name the name of the index
+     * @param keys the indexed fields and their order
+     * @param unique whether the index enforces unique values
+     */
+    public void declare(String collection, String name, Document keys, boolean unique) {
+        indexes.add(new IndexSpec(collection, name, keys, unique, null, null));
+    }
+
+    /**
+     * Adds a partial index to the declaration, which only indexes the documents matching a filter.
+     *
+     * @param collection the collection the index belongs to
+     * @param name the name of the index
+     * @param keys the indexed fields and their order
+     * @param unique whether the index enforces unique values among the indexed documents
+     * @param partialFilter the filter selecting the documents that are indexed
+     */
+    public void declarePartial(String collection, String name, Document keys, boolean unique, Document partialFilter) {
+        indexes.add(new IndexSpec(collection, name, keys, unique, null, partialFilter));
+    }
+
+    /**
+     * Adds a text index to the declaration. A collection can have only one text index.
+     *
+     * @param collection the collection the index belongs to
+     * @param name the name of the index
+     * @param weights the indexed fields and their relative weights in relevance scoring
+     */
+    public void declareText(String collection, String name, Document weights) {
+        Document keys = new Document();
+        for (String field : weights.keySet()) {
+            keys.append(field, "text");
+        }
+        indexes.add(new IndexSpec(collection, name, keys, false, weights, null));
+    }
+
+    /**
+     * Retrieves the declared indexes.
+     *
+     * @return the declared indexes
+     */
+    public List<IndexSpec> getIndexes() {
+        return List.copyOf(indexes);
+    }
+
+    /**
+     * Creates missing indexes and verifies existing ones in a background thread,
+     * printing the drift report when done.
+     */
+    public void ensureIndexesInBackground() {
+        Thread thread = new Thread(() -> {
+            try {
+                for (String problem : ensureIndexes()) {
+                    System.err.println("Index drift: " + problem);
+                }
+            } catch (MongoException e) {
+                System.err.println("Error verifying indexes: " + e.getMessage());
+            }
+        }, "index-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Creates missing indexes and verifies existing ones against the declaration.
+     *
+     * @return a description of every difference found, empty if the indexes match the declaration
+     */
+    public List<String> ensureIndexes() {
+        List<String> drift = new ArrayList<>();
+        Map<String, List<IndexSpec>> byCollection = new HashMap<>();
+        for (IndexSpec spec : indexes) {
+            byCollection.computeIfAbsent(spec.collection(), name -> new ArrayList<>()).add(spec);
+        }
+
+        for (Map.Entry<String, List<IndexSpec>> entry : byCollection.entrySet()) {
+            MongoCollection<Document> collection = database.getCollection(entry.getKey());
+            Map<String, Document> existing = new HashMap<>();
+            for (Document index : collection.listIndexes()) {
+                existing.put(keyOf(index.get("key", Document.class)), index);
+            }
+
+            for (IndexSpec spec : entry.getValue()) {
+                Document index = existing.remove(keyOf(spec.keys()));
+                if (index == null) {
+                    migrate(spec, drift);
+                    create(collection, spec, drift);
+                } else if (index.getBoolean("unique", false) != spec.unique()) {
+                    drift.add(entry.getKey() + "." + index.getString("name") + " should "
+                            + (spec.unique() ? "" : "not ") + "be unique");
+                } else if (!Objects.equals(index.get("partialFilterExpression", Document.class), spec.partialFilter())) {
+                    drift.add(entry.getKey() + "." + index.getString("name") + " should "
+                            + (spec.partialFilter() != null ? "only index " + spec.partialFilter().toJson() : "not be partial"));
+                }
+            }
+
+            for (Document extra : existing.values()) {
+                if (!"_id_".equals(extra.getString("name"))) {
+                    drift.add(entry.getKey() + "." + extra.getString("name") + " is not declared");
+                }
+            }
+        }
+        return drift;
+    }
+
+    /**
+     * Describes an index key pattern independently of how its directions are stored,
+     * since the server may return {@code 1} as an int, a long or a double. The fields of a
+     * text index are replaced by the {@code _fts}/{@code _ftsx} pair the server reports for it.
+     *
+     * @param keys the index key pattern
+     * @return a string identifying the key pattern
+     */
+    private static String keyOf(Document keys) {
+        StringBuilder key = new StringBuilder();
+        boolean textAdded = false;
+        for (Map.Entry<String, Object> field : keys.entrySet()) {
+            Object direction = field.getValue();
+            if ("text".equals(direction)) {
+                if (!textAdded) {
+                    key.append("_fts:text,_ftsx:1,");
+                    textAdded = true;
+                }
+                continue;
+            }
+            key.append(field.getKey()).append(':')
+                    .append(direction instanceof Number number ? String.valueOf(number.intValue()) : direction)
+                    .append(',');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Runs the migration of an index that is about to be created, if it has one, recording a drift
+     * entry if it fails.
+     *
+     * @param spec the index
+     * @param drift the list of differences to add to on failure
+     */
+    private void migrate(IndexSpec spec, List<String> drift) {
+        Runnable migration = migrations.get(spec.name());
+        if (migration == null) {
+            return;
+        }
+        try {
+            migration.run();
+        } catch (MongoException e) {
+            drift.add(spec.collection() + "." + spec.name() + " could not be prepared: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a missing index, recording a drift entry if it cannot be built,
+     * for example because existing documents violate a unique constraint.
+     *
+     * @param collection the collection to create the index in
+     * @param spec the index to create
+     * @param drift the list of differences to add to on failure
+     */
+    private void create(MongoCollection<Document> collection, IndexSpec spec, List<String> drift) {
+        try {
+            IndexOptions options = new IndexOptions()
+                    .name(spec.name())
+                    .unique(spec.unique())
+                    .background(true);
+            if (spec.weights() != null) {
+                options.weights(spec.weights());
+            }
+            if (spec.partialFilter() != null) {
+                options.partialFilterExpression(spec.partialFilter());
+            }
+            collection.createIndex(spec.keys(), options);
+            System.out.println("Created index " + spec.collection() + "." + spec.name());
+        } catch (MongoException e) {
+            drift.add(spec.collection() + "." + spec.name() + " is missing and could not be created: " + e.getMessage());
+        }
+    }
+}
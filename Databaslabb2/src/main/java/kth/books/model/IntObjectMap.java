@@ -0,0 +1,213 @@
+package kth.books.model;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from primitive int keys to non-null values, using open addressing with linear probing.
+ * Keys are stored unboxed in an int array and no entry objects are allocated, so a map of a million
+ * entries costs two arrays rather than a million nodes and boxed keys. Not thread-safe.
+ *
+ * @param <V> the type of the values
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class IntObjectMap<V> {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * Receives the entries of a map.
+     *
+     * @param <V> the type of the values
+     */
+    @FunctionalInterface
+    interface EntryConsumer<V> {
+        /**
+         * Receives one entry.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        void accept(int key, V value);
+    }
+
+    /**
+     * Constructs an empty IntObjectMap.
+     */
+    IntObjectMap() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty IntObjectMap with room for the given number of entries.
+     *
+     * @param expectedSize the number of entries the map can hold before it grows
+     */
+    IntObjectMap(int expectedSize) {
+        allocate(Math.max(16, Integer.highestOneBit((int) (expectedSize / LOAD_FACTOR)) << 1));
+    }
+
+    /**
+     * Retrieves the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key the key
+     * @param value the value, not null
+     * @return the previous value, or null if the key was not in the map
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key. The entries following it in its probe sequence are shifted back,
+     * so no tombstones are left behind.
+     *
+     * @param key the key
+     * @return the removed value, or null if the key was not in the map
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V removed = (V) values[i];
+                shiftBack(i, mask);
+                size--;
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the number of entries.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Copies the keys into an array, starting at the given position.
+     *
+     * @param target the array to copy into, with room for {@link #size()} keys after the offset
+     * @param offset the position of the first key in the array
+     * @return the position after the last copied key
+     */
+    int copyKeys(int[] target, int offset) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                target[offset++] = keys[i];
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Passes every entry to a consumer, in no particular order.
+     *
+     * @param consumer the consumer
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(EntryConsumer<V> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                consumer.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private void shiftBack(int hole, int mask) {
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            int home = slot(keys[i], mask);
+            // Move the entry into the hole unless its home slot lies cyclically between the hole and itself.
+            if (hole <= i ? (home <= hole || home > i) : (home <= hole && home > i)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        values[hole] = null;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = slot(oldKeys[j], mask);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int slot(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
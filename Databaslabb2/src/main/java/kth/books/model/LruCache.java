@@ -0,0 +1,131 @@
+package kth.books.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded cache with a time to live, evicting the least recently used entry when full.
+ * All methods are thread-safe.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A cached value and the time it expires.
+     *
+     * @param value the cached value
+     * @param expiresAt the value of {@link System#nanoTime()} after which the entry is stale
+     * @param <V> the type of the cached value
+     */
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    /**
+     * Hit, miss and eviction counts of a cache.
+     *
+     * @param hits the number of lookups served from the cache
+     * @param misses the number of lookups not found or expired
+     * @param evictions the number of entries removed because the cache was full or the entry expired
+     * @param size the current number of entries
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+
+        /**
+         * Calculates the share of lookups served from the cache.
+         *
+         * @return the hit ratio between 0 and 1
+         */
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    /**
+     * Constructs an LruCache.
+     *
+     * @param maxSize the maximum number of entries
+     * @param ttlMillis the time in milliseconds an entry stays valid after it is stored
+     */
+    public LruCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Retrieves a cached value.
+     *
+     * @param key the key
+     * @return the cached value, or null if it is missing or has expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt() > 0) {
+            entries.remove(key);
+            evictions.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    /**
+     * Stores a value, evicting the least recently used entry if the cache is full.
+     *
+     * @param key the key
+     * @param value the value to cache
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Removes a value from the cache.
+     *
+     * @param key the key
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all values from the cache.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Retrieves the hit, miss and eviction counts of the cache.
+     *
+     * @return the cache statistics
+     */
+    public synchronized Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+}
@@ -0,0 +1,247 @@
+package kth.books.model;
+
+import kth.books.Metrics;
+import kth.books.OperationMetrics;
+import kth.books.SlowQueryLog;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Instrumenting decorator for a BooksDbInterface, recording the latency, errors and number of
+ * returned books, authors, genres or ratings of every call in the {@code BooksDb} group of
+ * {@link Metrics}. Failed calls are counted and then rethrown unchanged. Recording is lock-free
+ * and adds two clock reads and a few atomic increments to each call.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class MetricsBooksDb implements BooksDbInterface {
+    private static final String GROUP = "BooksDb";
+
+    private final BooksDbInterface delegate;
+
+    /**
+     * Constructs a MetricsBooksDb around the given database.
+     *
+     * @param delegate the database to instrument
+     */
+    public MetricsBooksDb(BooksDbInterface delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Book> getAllBooks() {
+        return timed("getAllBooks", delegate::getAllBooks);
+    }
+
+    @Override
+    public List<Book> getAllBooksWithDetails() {
+        return timed("getAllBooksWithDetails", delegate::getAllBooksWithDetails);
+    }
+
+    @Override
+    public List<Book> getBooksAfter(int afterBookId, int pageSize) {
+        return timed("getBooksAfter", () -> delegate.getBooksAfter(afterBookId, pageSize));
+    }
+
+    @Override
+    public List<Book> getBooksWithDetails(List<Integer> bookIds) {
+        return timed("getBooksWithDetails", () -> delegate.getBooksWithDetails(bookIds));
+    }
+
+    @Override
+    public List<BookRow> getBookRowsAfter(int afterBookId, int pageSize) {
+        return timed("getBookRowsAfter", () -> delegate.getBookRowsAfter(afterBookId, pageSize));
+    }
+
+    @Override
+    public List<BookRow> getBookRowsWithDetails(List<Integer> bookIds) {
+        return timed("getBookRowsWithDetails", () -> delegate.getBookRowsWithDetails(bookIds));
+    }
+
+    @Override
+    public List<BookRow> searchBookRows(String searchTerm, SearchMode mode, int limit) {
+        return timed("searchBookRows", () -> delegate.searchBookRows(searchTerm, mode, limit));
+    }
+
+    @Override
+    public int addBook(Book book) {
+        return timed("addBook", () -> delegate.addBook(book));
+    }
+
+    @Override
+    public AddedBook addBookWithDetails(Book book, List<Author> authors, List<Integer> genreIds, int ratingValue) {
+        return timed("addBookWithDetails", () -> delegate.addBookWithDetails(book, authors, genreIds, ratingValue));
+    }
+
+    @Override
+    public void deleteBook(int bookId) {
+        timed("deleteBook", () -> delegate.deleteBook(bookId));
+    }
+
+    @Override
+    public int getLastInsertedBookId() {
+        return timed("getLastInsertedBookId", delegate::getLastInsertedBookId);
+    }
+
+    @Override
+    public List<Author> getAuthorsForBook(int bookId) {
+        return timed("getAuthorsForBook", () -> delegate.getAuthorsForBook(bookId));
+    }
+
+    @Override
+    public int addAuthor(Author author) {
+        return timed("addAuthor", () -> delegate.addAuthor(author));
+    }
+
+    @Override
+    public int findOrCreateAuthor(Author author) {
+        return timed("findOrCreateAuthor", () -> delegate.findOrCreateAuthor(author));
+    }
+
+    @Override
+    public List<Integer> resolveAuthors(List<Author> authors) {
+        return timed("resolveAuthors", () -> delegate.resolveAuthors(authors));
+    }
+
+    @Override
+    public void linkAuthorToBook(int bookId, int authorId) {
+        timed("linkAuthorToBook", () -> delegate.linkAuthorToBook(bookId, authorId));
+    }
+
+    @Override
+    public int getLastInsertedAuthorId() {
+        return timed("getLastInsertedAuthorId", delegate::getLastInsertedAuthorId);
+    }
+
+    @Override
+    public List<Genre> getAllGenres() {
+        return timed("getAllGenres", delegate::getAllGenres);
+    }
+
+    @Override
+    public int addGenre(Genre genre) {
+        return timed("addGenre", () -> delegate.addGenre(genre));
+    }
+
+    @Override
+    public List<Genre> getGenresForBook(int bookId) {
+        return timed("getGenresForBook", () -> delegate.getGenresForBook(bookId));
+    }
+
+    @Override
+    public void linkGenreToBook(int bookId, int genreId) {
+        timed("linkGenreToBook", () -> delegate.linkGenreToBook(bookId, genreId));
+    }
+
+    @Override
+    public void addRatingToBook(int bookId, int ratingValue) {
+        timed("addRatingToBook", () -> delegate.addRatingToBook(bookId, ratingValue));
+    }
+
+    @Override
+    public List<BookRating> getRatingsForBook(int bookId) {
+        return timed("getRatingsForBook", () -> delegate.getRatingsForBook(bookId));
+    }
+
+    @Override
+    public RatingSummary getRatingSummary(int bookId) {
+        return timed("getRatingSummary", () -> delegate.getRatingSummary(bookId));
+    }
+
+    @Override
+    public Map<Integer, RatingSummary> getRatingSummaries(List<Integer> bookIds) {
+        return timed("getRatingSummaries", () -> delegate.getRatingSummaries(bookIds));
+    }
+
+    @Override
+    public void rebuildRatingSummaries() {
+        timed("rebuildRatingSummaries", delegate::rebuildRatingSummaries);
+    }
+
+    @Override
+    public List<Book> searchBooks(String searchTerm) {
+        return timed("searchBooks", () -> delegate.searchBooks(searchTerm));
+    }
+
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm) {
+        return timed("searchBooksWithDetails", () -> delegate.searchBooksWithDetails(searchTerm));
+    }
+
+    @Override
+    public List<Book> searchBooks(String searchTerm, SearchMode mode, int limit) {
+        return timed("searchBooks", () -> delegate.searchBooks(searchTerm, mode, limit));
+    }
+
+    @Override
+    public List<Book> searchBooksWithDetails(String searchTerm, SearchMode mode, int limit) {
+        return timed("searchBooksWithDetails", () -> delegate.searchBooksWithDetails(searchTerm, mode, limit));
+    }
+
+    @Override
+    public BooksDbSchema getSchema() {
+        return delegate.getSchema();
+    }
+
+    @Override
+    public void invalidateCaches() {
+        delegate.invalidateCaches();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Runs a call and records its latency and the number of results it returned,
+     * or its latency and an error if it failed. Slow queries the call sends are logged with its name.
+     *
+     * @param operation the name of the operation
+     * @param call the call
+     * @param <T> the type of the result
+     * @return the result of the call
+     */
+    private static <T> T timed(String operation, Supplier<T> call) {
+        OperationMetrics metrics = Metrics.operation(GROUP, operation);
+        String outer = SlowQueryLog.enterOperation(operation);
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            metrics.recordError(System.nanoTime() - start);
+            throw e;
+        } finally {
+            SlowQueryLog.exitOperation(outer);
+        }
+        metrics.recordSuccess(System.nanoTime() - start, countOf(result));
+        return result;
+    }
+
+    /**
+     * Runs a call without a result and records its latency, or its latency and an error if it failed.
+     *
+     * @param operation the name of the operation
+     * @param call the call
+     */
+    private static void timed(String operation, Runnable call) {
+        timed(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private static long countOf(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,48 @@
+package kth.books.model;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Pre-aggregated rating statistics of a book, maintained on the Book document whenever a rating is added.
+ *
+ * @param bookId the ID of the book
+ * @param count the number of ratings
+ * @param sum the sum of all rating values
+ * @param min the lowest rating value, or 0 if there are no ratings
+ * @param max the highest rating value, or 0 if there are no ratings
+ * @param latest the most recently added rating value, or 0 if there are no ratings
+ * @param latestDate the date of the most recent rating, or null if there are no ratings
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public record RatingSummary(int bookId, int count, long sum, int min, int max, int latest, LocalDate latestDate) {
+
+    /**
+     * Creates the summary of a book that has no ratings.
+     *
+     * @param bookId the ID of the book
+     * @return an empty summary
+     */
+    public static RatingSummary empty(int bookId) {
+        return new RatingSummary(bookId, 0, 0, 0, 0, 0, null);
+    }
+
+    /**
+     * Calculates the average rating.
+     *
+     * @return the average rating, or 0 if there are no ratings
+     */
+    public double average() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Formats the summary for display in the book table.
+     *
+     * @return the average rating with one decimal, or "N/A" if there are no ratings
+     */
+    public String toDisplayString() {
+        return count == 0 ? "N/A" : String.format(Locale.ROOT, "%.1f", average());
+    }
+}
@@ -12,15 +12,45 @@ import java.util.List;
  * @version 1.0
  */
 public class Search {
+    private static final SearchMode DEFAULT_MODE = SearchMode.valueOf(System.getProperty("books.search.mode", "REGEX"));
+    private static final int DEFAULT_LIMIT = Integer.getInteger("books.search.limit", 200);
+
     private final BooksDbInterface booksDb;
+    private final SearchMode mode;
+    private final int limit;
 
     /**
-     * Constructs a Search instance with the specified database interface.
+     * Constructs a Search instance with the specified database interface, using the search
+     * engine and result limit configured by {@code books.search.mode} and {@code books.search.limit}.
      *
      * @param booksDb the database interface for accessing book data
      */
     public Search(BooksDbInterface booksDb) {
+        this(booksDb, DEFAULT_MODE, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Creates a Search for searching while the user types, which matches the term at the start of
+     * words, so that incomplete words already find books, and takes the term literally.
+     *
+     * @param booksDb the database interface for accessing book data
+     * @return the search
+     */
+    public static Search asYouType(BooksDbInterface booksDb) {
+        return new Search(booksDb, SearchMode.PREFIX, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Constructs a Search instance with the specified database interface and search engine.
+     *
+     * @param booksDb the database interface for accessing book data
+     * @param mode the search engine to use
+     * @param limit the maximum number of books to return, or 0 for no limit
+     */
+    public Search(BooksDbInterface booksDb, SearchMode mode, int limit) {
         this.booksDb = booksDb;
+        this.mode = mode;
+        this.limit = limit;
     }
 
     /**
@@ -31,10 +61,53 @@ public class Search {
      */
     public List<Book> searchBooks(String searchTerm) {
         try {
-            return booksDb.searchBooks(searchTerm);
+            return booksDb.searchBooks(searchTerm, modeFor(searchTerm), limit);
         } catch (BooksDbException e) {
             System.err.println("Error searching books: " + e.getMessage());
             return List.of();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Searches for books matching the given search term, with authors, genres and a
+     * summarized rating populated in the same round trip.
+     *
+     * @param searchTerm the term to search for
+     * @return a list of fully populated books matching the search term
+     */
+    public List<Book> searchBooksWithDetails(String searchTerm) {
+        try {
+            return booksDb.searchBooksWithDetails(searchTerm, modeFor(searchTerm), limit);
+        } catch (BooksDbException e) {
+            System.err.println("Error searching books: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Searches for books matching the given search term and returns them as immutable rows,
+     * with authors, genres and rating statistics populated in the same round trip.
+     *
+     * @param searchTerm the term to search for
+     * @return a list of rows matching the search term
+     */
+    public List<BookRow> searchBookRows(String searchTerm) {
+        try {
+            return booksDb.searchBookRows(searchTerm, modeFor(searchTerm), limit);
+        } catch (BooksDbException e) {
+            System.err.println("Error searching books: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Chooses the engine for a search term. A blank term has no words for the text
+     * search to match, so it falls back to the substring search, which matches every book.
+     *
+     * @param searchTerm the term to search for
+     * @return the search engine to use
+     */
+    private SearchMode modeFor(String searchTerm) {
+        return searchTerm.isBlank() ? SearchMode.REGEX : mode;
+    }
+}
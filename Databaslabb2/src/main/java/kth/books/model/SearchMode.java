@@ -0,0 +1,62 @@
+package kth.books.model;
+
+import java.util.regex.Pattern;
+
+/**
+ * The search engines available for searching books.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public enum SearchMode {
+    /**
+     * Case-insensitive substring match on title, ISBN and publication date.
+     * Matches partial words but scans every book.
+     */
+    REGEX,
+
+    /**
+     * Word search through the text index on title, ISBN and publication date,
+     * with results ranked by relevance.
+     */
+    TEXT,
+
+    /**
+     * Case-insensitive match at the start of a word of the title, or at the start of the ISBN or
+     * publication date. Used while the user types, since it matches words that are not complete yet.
+     */
+    PREFIX;
+
+    private static final Pattern SPECIAL_CHARACTERS = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+
+    /**
+     * Escapes the characters of a search term that have a meaning in regular expressions, so that
+     * both {@link java.util.regex.Pattern} and the server match the term as typed, for example "C++".
+     *
+     * @param searchTerm the term to search for
+     * @return a regular expression matching the term literally
+     */
+    static String literal(String searchTerm) {
+        return SPECIAL_CHARACTERS.matcher(searchTerm).replaceAll("\\\\$0");
+    }
+
+    /**
+     * Builds the regular expression a {@link #PREFIX} search matches titles with: the term at the
+     * start of the title or after whitespace.
+     *
+     * @param searchTerm the term to search for
+     * @return the regular expression
+     */
+    static String wordPrefix(String searchTerm) {
+        return "(^|\\s)" + literal(searchTerm.strip());
+    }
+
+    /**
+     * Builds the regular expression a {@link #PREFIX} search matches the ISBN and publication date with.
+     *
+     * @param searchTerm the term to search for
+     * @return the regular expression
+     */
+    static String prefix(String searchTerm) {
+        return "^" + literal(searchTerm.strip());
+    }
+}
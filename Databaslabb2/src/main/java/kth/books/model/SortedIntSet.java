@@ -0,0 +1,112 @@
+package kth.books.model;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe set of primitive ints kept in ascending order in a single growable array, guarded by
+ * a read-write lock. Values are expected to be added mostly in increasing order, as IDs are allocated,
+ * so an add is usually an append; ranges are found by binary search without allocating per value.
+ *
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class SortedIntSet {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] values = new int[16];
+    private int size;
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     * @return true if the value was not in the set
+     */
+    boolean add(int value) {
+        lock.writeLock().lock();
+        try {
+            int index = size > 0 && values[size - 1] < value ? size : Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0 && index < size) {
+                return false;
+            }
+            int insertAt = index >= 0 ? index : -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            values[insertAt] = value;
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value the value
+     * @return true if the value was in the set
+     */
+    boolean remove(int value) {
+        lock.writeLock().lock();
+        try {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the values following a given value.
+     *
+     * @param after the value to start after, which need not be in the set
+     * @param limit the maximum number of values to return
+     * @return up to {@code limit} values greater than {@code after}, in ascending order
+     */
+    int[] after(int after, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = Arrays.binarySearch(values, 0, size, after);
+            from = from >= 0 ? from + 1 : -from - 1;
+            return Arrays.copyOfRange(values, from, from + Math.max(0, Math.min(limit, size - from)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves all values.
+     *
+     * @return the values in ascending order
+     */
+    int[] toArray() {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOf(values, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of values.
+     *
+     * @return the number of values
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
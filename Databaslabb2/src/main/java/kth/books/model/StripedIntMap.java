@@ -0,0 +1,169 @@
+package kth.books.model;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe map from primitive int keys to values, split into stripes that each hold an
+ * {@link IntObjectMap} guarded by its own read-write lock. Readers of a stripe never block each
+ * other, and writers only block the operations on the keys of their own stripe.
+ *
+ * @param <V> the type of the values
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class StripedIntMap<V> {
+    private static final int STRIPES = 16;
+
+    private final IntObjectMap<V>[] maps;
+    private final ReadWriteLock[] locks;
+
+    /**
+     * Constructs an empty StripedIntMap.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    StripedIntMap() {
+        maps = new IntObjectMap[STRIPES];
+        locks = new ReadWriteLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            maps[i] = new IntObjectMap<>();
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Retrieves the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not in the map
+     */
+    V get(int key) {
+        int stripe = stripe(key);
+        locks[stripe].readLock().lock();
+        try {
+            return maps[stripe].get(key);
+        } finally {
+            locks[stripe].readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key the key
+     * @param value the value, not null
+     */
+    void put(int key, V value) {
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            maps[stripe].put(key, value);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key
+     * @return the removed value, or null if the key was not in the map
+     */
+    V remove(int key) {
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            return maps[stripe].remove(key);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Atomically replaces the value of a key with a value computed from the current one.
+     *
+     * @param key the key
+     * @param update the function computing the new value from the current value, or from null if the
+     *               key is not in the map; returning null removes the key
+     * @return the new value, or null if the key was removed
+     */
+    V update(int key, UnaryOperator<V> update) {
+        int stripe = stripe(key);
+        locks[stripe].writeLock().lock();
+        try {
+            V value = update.apply(maps[stripe].get(key));
+            if (value == null) {
+                maps[stripe].remove(key);
+            } else {
+                maps[stripe].put(key, value);
+            }
+            return value;
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every entry to a consumer, one stripe at a time and in no particular order.
+     * Each stripe is consistent in itself, but writes to other stripes may happen in between.
+     *
+     * @param consumer the consumer
+     */
+    void forEach(IntObjectMap.EntryConsumer<V> consumer) {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                maps[stripe].forEach(consumer);
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Retrieves all keys, one stripe at a time.
+     *
+     * @return the keys, in no particular order
+     */
+    int[] keys() {
+        int[] keys = new int[0];
+        int count = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                if (keys.length - count < maps[stripe].size()) {
+                    keys = Arrays.copyOf(keys, count + maps[stripe].size() * (STRIPES - stripe));
+                }
+                count = maps[stripe].copyKeys(keys, count);
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    /**
+     * Retrieves the number of entries.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        int size = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                size += maps[stripe].size();
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    private static int stripe(int key) {
+        int h = key * 0x9E3779B9;
+        return (h >>> 28) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,61 @@
+package kth.books.model;
+
+import com.mongodb.MongoClientException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ClientSession;
+import kth.books.DbConnect;
+
+import java.util.function.Consumer;
+
+/**
+ * Runs groups of writes in a multi-document transaction where the server supports them.
+ * <p>
+ * A standalone server cannot run transactions. The first time that is detected, a message is
+ * printed and from then on the writes run without a session, in the order they are issued; callers
+ * order them so that an interrupted group leaves nothing visible that refers to a missing document.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class Transactions {
+    private static final int ILLEGAL_OPERATION = 20;
+
+    private volatile boolean supported = true;
+
+    /**
+     * Runs writes in one transaction, or without one if the server does not support transactions.
+     * The writes may be run more than once if the transaction hits a transient error.
+     *
+     * @param writes the writes, given the session of the transaction, or null when running without one
+     */
+    void run(Consumer<ClientSession> writes) {
+        if (supported) {
+            try (ClientSession session = DbConnect.startSession()) {
+                session.withTransaction(() -> {
+                    writes.accept(session);
+                    return null;
+                });
+                return;
+            } catch (MongoClientException | MongoCommandException e) {
+                if (!isTransactionUnsupported(e)) {
+                    throw e;
+                }
+                System.out.println("Transactions are not supported by the server, writing without them");
+                supported = false;
+            }
+        }
+        writes.accept(null);
+    }
+
+    /**
+     * Checks whether an error means that the server cannot run transactions, as on a standalone server.
+     *
+     * @param e the error
+     * @return true if transactions are not supported
+     */
+    private static boolean isTransactionUnsupported(MongoException e) {
+        String message = e.getMessage() != null ? e.getMessage() : "";
+        return (e.getCode() == ILLEGAL_OPERATION && message.contains("Transaction numbers"))
+                || message.contains("Transactions are not supported");
+    }
+}
@@ -0,0 +1,143 @@
+package kth.books.view;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.TableView;
+import javafx.scene.control.skin.VirtualFlow;
+import kth.books.controller.BookController;
+import kth.books.model.Book;
+import kth.books.model.BooksDbInterface;
+
+import java.util.List;
+
+/**
+ * Loads the catalog into the book table one page at a time as the user scrolls.
+ * <p>
+ * Pages are fetched with a book ID cursor, so each page costs the same however far down the
+ * user has scrolled. The visible rows are passed on to a {@link DetailPrefetcher}, which loads
+ * authors, genres and ratings only for the rows around the viewport.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class CatalogPager {
+    private static final int PAGE_SIZE = Integer.getInteger("books.page.size", 100);
+    private static final int LOAD_AHEAD = PAGE_SIZE / 2;
+
+    private final TableView<Book> table;
+    private final BookController bookController;
+    private final DetailPrefetcher prefetcher;
+
+    private VirtualFlow<?> flow;
+    private ObservableList<Book> books;
+    private boolean active;
+    private boolean loading;
+    private boolean exhausted;
+
+    /**
+     * Constructs a CatalogPager for the given table.
+     *
+     * @param table the table showing the books
+     * @param booksDb the database interface
+     * @param rowUpdates the pipeline that loaded details are applied to the rows through
+     */
+    public CatalogPager(TableView<Book> table, BooksDbInterface booksDb, RowUpdatePipeline rowUpdates) {
+        this.table = table;
+        this.bookController = new BookController(booksDb);
+        this.prefetcher = new DetailPrefetcher(bookController, rowUpdates);
+
+        table.skinProperty().addListener((observable, oldSkin, newSkin) -> attachToFlow());
+        table.heightProperty().addListener(observable -> onViewportChanged());
+    }
+
+    /**
+     * Starts browsing the catalog from the first page.
+     *
+     * @param books the list shown by the table, which pages are appended to
+     */
+    public void start(ObservableList<Book> books) {
+        this.books = books;
+        active = true;
+        loading = false;
+        exhausted = false;
+        prefetcher.reset();
+        loadNextPage();
+    }
+
+    /**
+     * Stops loading pages and details, for example while search results are shown.
+     */
+    public void stop() {
+        active = false;
+        prefetcher.reset();
+    }
+
+    /**
+     * Decides whether a book that is not in the table yet belongs to the part of the catalog
+     * already loaded. Books after the last loaded page arrive with a later page instead.
+     *
+     * @param bookId the ID of the book
+     * @return true if the book should be inserted into the loaded rows
+     */
+    public boolean covers(int bookId) {
+        if (!active) {
+            return false;
+        }
+        return exhausted || (!books.isEmpty() && bookId < books.get(books.size() - 1).getId());
+    }
+
+    /**
+     * Starts listening to the table's scroll position once its skin has been created.
+     */
+    private void attachToFlow() {
+        if (table.lookup(".virtual-flow") instanceof VirtualFlow<?> virtualFlow) {
+            flow = virtualFlow;
+            flow.positionProperty().addListener(observable -> onViewportChanged());
+        }
+    }
+
+    /**
+     * Loads the next page when the viewport nears the end of the loaded rows and
+     * tells the prefetcher which rows are visible.
+     */
+    private void onViewportChanged() {
+        if (!active || flow == null) {
+            return;
+        }
+        IndexedCell<?> firstCell = flow.getFirstVisibleCell();
+        IndexedCell<?> lastCell = flow.getLastVisibleCell();
+        int first = firstCell == null ? 0 : Math.max(firstCell.getIndex(), 0);
+        int last = lastCell == null ? 0 : Math.max(lastCell.getIndex(), first);
+
+        if (last >= books.size() - LOAD_AHEAD) {
+            loadNextPage();
+        }
+        prefetcher.setViewport(books, first, last);
+    }
+
+    /**
+     * Fetches the page after the last loaded book and appends it to the table.
+     */
+    private void loadNextPage() {
+        if (!active || loading || exhausted) {
+            return;
+        }
+        loading = true;
+        ObservableList<Book> target = books;
+        int afterBookId = target.isEmpty() ? 0 : target.get(target.size() - 1).getId();
+
+        bookController.getBooksAfterInBackground(afterBookId, PAGE_SIZE, page -> {
+            if (target != books || !active) {
+                return;
+            }
+            loading = false;
+            if (page == null) {
+                return;
+            }
+            exhausted = page.size() < PAGE_SIZE;
+            target.addAll(page);
+            // Wait for the table to lay out the new rows before reading the viewport.
+            Platform.runLater(this::onViewportChanged);
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package kth.books.view;
+
+import kth.books.controller.BookController;
+import kth.books.model.Book;
+import kth.books.model.BookRow;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Loads authors, genres and ratings for the rows around the table's viewport.
+ * <p>
+ * Rows are queued by their distance from the visible rows, so the rows the user is looking at
+ * are fetched first. The queue is rebuilt whenever the viewport moves, and a request whose row
+ * has been scrolled out of range is dropped instead of fetched. One batch is in flight at a time.
+ * All methods must be called on the JavaFX application thread.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class DetailPrefetcher {
+    private static final int MARGIN = Integer.getInteger("books.prefetch.margin", 20);
+    private static final int BATCH_SIZE = Integer.getInteger("books.prefetch.batchSize", 25);
+
+    private final BookController bookController;
+    private final RowUpdatePipeline rowUpdates;
+    private final PriorityQueue<Request> queue = new PriorityQueue<>(Comparator.comparingInt(Request::distance));
+    private final Set<Integer> loaded = new HashSet<>();
+    private final Set<Integer> inFlight = new HashSet<>();
+
+    private List<Book> rows = List.of();
+    private int first;
+    private int last;
+    private int generation;
+
+    /**
+     * A queued request for the details of one row.
+     *
+     * @param book the book shown in the row
+     * @param row the index of the row
+     * @param distance the number of rows between this row and the visible rows
+     */
+    private record Request(Book book, int row, int distance) {
+    }
+
+    /**
+     * Constructs a DetailPrefetcher.
+     *
+     * @param bookController the controller used to fetch book details
+     * @param rowUpdates the pipeline that loaded details are applied to the rows through
+     */
+    public DetailPrefetcher(BookController bookController, RowUpdatePipeline rowUpdates) {
+        this.bookController = bookController;
+        this.rowUpdates = rowUpdates;
+    }
+
+    /**
+     * Updates the visible rows and requeues the rows near them that still lack details.
+     *
+     * @param rows the rows of the table
+     * @param first the index of the first visible row
+     * @param last the index of the last visible row
+     */
+    public void setViewport(List<Book> rows, int first, int last) {
+        this.rows = rows;
+        this.first = first;
+        this.last = last;
+
+        queue.clear();
+        int to = Math.min(rows.size() - 1, last + MARGIN);
+        for (int row = Math.max(0, first - MARGIN); row <= to; row++) {
+            Book book = rows.get(row);
+            if (!loaded.contains(book.getId()) && !inFlight.contains(book.getId())) {
+                queue.add(new Request(book, row, distanceFromViewport(row)));
+            }
+        }
+        fetchNextBatch();
+    }
+
+    /**
+     * Forgets all loaded rows and queued requests and ignores batches still in flight.
+     */
+    public void reset() {
+        generation++;
+        queue.clear();
+        loaded.clear();
+        inFlight.clear();
+        rows = List.of();
+    }
+
+    /**
+     * Sends the closest queued rows to the database, skipping rows that are no longer near the viewport.
+     */
+    private void fetchNextBatch() {
+        if (!inFlight.isEmpty()) {
+            return;
+        }
+        Map<Integer, Book> batch = new HashMap<>();
+        while (!queue.isEmpty() && batch.size() < BATCH_SIZE) {
+            Request request = queue.poll();
+            if (distanceFromViewport(request.row()) <= MARGIN && request.row() < rows.size()
+                    && rows.get(request.row()) == request.book()) {
+                batch.put(request.book().getId(), request.book());
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        int batchGeneration = generation;
+        inFlight.addAll(batch.keySet());
+        bookController.getBookRowsWithDetailsInBackground(new ArrayList<>(batch.keySet()), details -> {
+            if (batchGeneration != generation) {
+                return;
+            }
+            inFlight.clear();
+            // Rows that fail or no longer exist are marked as loaded too, so they are not retried in a loop.
+            loaded.addAll(batch.keySet());
+            if (details != null) {
+                rowUpdates.submit(() -> {
+                    for (BookRow detail : details) {
+                        Book book = batch.get(detail.id());
+                        if (book != null) {
+                            book.copyFrom(detail);
+                        }
+                    }
+                });
+            }
+            fetchNextBatch();
+        });
+    }
+
+    /**
+     * Calculates how many rows lie between a row and the visible rows.
+     *
+     * @param row the index of the row
+     * @return 0 for a visible row, otherwise the distance to the nearest visible row
+     */
+    private int distanceFromViewport(int row) {
+        if (row < first) {
+            return first - row;
+        }
+        return row > last ? row - last : 0;
+    }
+}
@@ -0,0 +1,189 @@
+package kth.books.view;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import kth.books.controller.BookController;
+import kth.books.model.Book;
+import kth.books.model.BookChange;
+import kth.books.model.BookRow;
+import kth.books.model.BooksDbInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+
+/**
+ * Applies book changes to the rows of the book table in place.
+ * <p>
+ * Changes may arrive from any thread and are collected until the JavaFX thread gets to them,
+ * so a burst of changes to the same books costs one fetch. Changed books are fetched with their
+ * details in a single round trip and copied into the existing rows, deleted books are removed,
+ * and new books are inserted when they belong to the part of the catalog already loaded, through
+ * the {@link RowUpdatePipeline}. The work done is proportional to the number of changed books,
+ * not to the size of the catalog.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class IncrementalBookUpdater {
+    private final BookController bookController;
+    private final RowUpdatePipeline rowUpdates;
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private ObservableList<Book> rows;
+    private boolean sortedById;
+    private IntPredicate acceptsNewBook = bookId -> false;
+
+    /**
+     * Constructs an IncrementalBookUpdater.
+     *
+     * @param booksDb the database interface
+     * @param rowUpdates the pipeline that fetched books are applied to the rows through
+     */
+    public IncrementalBookUpdater(BooksDbInterface booksDb, RowUpdatePipeline rowUpdates) {
+        this.bookController = new BookController(booksDb);
+        this.rowUpdates = rowUpdates;
+    }
+
+    /**
+     * Sets the rows that changes are applied to. Must be called on the JavaFX thread.
+     *
+     * @param rows the rows shown by the table
+     * @param sortedById true if the rows are ordered by book ID, which allows binary search
+     * @param acceptsNewBook decides whether a book that is not shown yet should be inserted
+     */
+    public void setRows(ObservableList<Book> rows, boolean sortedById, IntPredicate acceptsNewBook) {
+        this.rows = rows;
+        this.sortedById = sortedById;
+        this.acceptsNewBook = acceptsNewBook;
+    }
+
+    /**
+     * Queues a change to be applied to the rows. May be called from any thread.
+     *
+     * @param change the change
+     */
+    public void onBookChanged(BookChange change) {
+        if (change.deleted()) {
+            changed.remove(change.bookId());
+            deleted.add(change.bookId());
+        } else {
+            changed.add(change.bookId());
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::flush);
+        }
+    }
+
+    /**
+     * Queues a refresh of a book that was added or changed by this client.
+     *
+     * @param bookId the ID of the book
+     */
+    public void refresh(int bookId) {
+        onBookChanged(new BookChange(bookId, false));
+    }
+
+    /**
+     * Removes deleted rows and fetches the changed books in one round trip.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        if (rows == null) {
+            return;
+        }
+        for (Integer bookId : drain(deleted)) {
+            int index = indexOf(bookId);
+            if (index >= 0) {
+                rows.remove(index);
+            }
+        }
+
+        List<Integer> bookIds = new ArrayList<>();
+        for (Integer bookId : drain(changed)) {
+            if (indexOf(bookId) >= 0 || acceptsNewBook.test(bookId)) {
+                bookIds.add(bookId);
+            }
+        }
+        if (!bookIds.isEmpty()) {
+            ObservableList<Book> target = rows;
+            bookController.getBookRowsWithDetailsInBackground(bookIds, books -> {
+                if (books != null) {
+                    rowUpdates.submit(() -> {
+                        if (target == rows) {
+                            apply(books);
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Copies fetched books into their rows, inserting the ones that are not shown yet.
+     *
+     * @param books the fetched books
+     */
+    private void apply(List<BookRow> books) {
+        for (BookRow book : books) {
+            int index = indexOf(book.id());
+            if (index >= 0) {
+                rows.get(index).copyFrom(book);
+            } else if (acceptsNewBook.test(book.id())) {
+                rows.add(sortedById ? -index - 1 : rows.size(), book.toBook());
+            }
+        }
+    }
+
+    /**
+     * Finds the row showing a book.
+     *
+     * @param bookId the ID of the book
+     * @return the index of the row, or when the rows are sorted and the book is not shown,
+     *         {@code -(insertion point) - 1}; otherwise -1
+     */
+    private int indexOf(int bookId) {
+        if (sortedById) {
+            int low = 0;
+            int high = rows.size() - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int middleId = rows.get(middle).getId();
+                if (middleId < bookId) {
+                    low = middle + 1;
+                } else if (middleId > bookId) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
+        }
+        for (int index = 0; index < rows.size(); index++) {
+            if (rows.get(index).getId() == bookId) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes and returns all IDs currently in a set.
+     *
+     * @param ids the set to drain
+     * @return the removed IDs
+     */
+    private static List<Integer> drain(Set<Integer> ids) {
+        List<Integer> drained = new ArrayList<>();
+        for (Integer id : ids) {
+            if (ids.remove(id)) {
+                drained.add(id);
+            }
+        }
+        return drained;
+    }
+}
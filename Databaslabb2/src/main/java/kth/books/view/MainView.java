@@ -1,6 +1,7 @@
 package kth.books.view;
 
-import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
@@ -8,13 +9,17 @@ import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import kth.books.controller.BackgroundTasks;
 import kth.books.controller.BookController;
 import kth.books.controller.GenreController;
 import kth.books.model.*;
-import kth.books.controller.AuthorController;
 
+import java.io.File;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The main view of the application, including the menu, search functionality, and book table display.
@@ -23,11 +28,16 @@ import java.util.List;
  */
 
 public class MainView {
+    private static final long SEARCH_DEBOUNCE_MS = Long.getLong("books.search.debounceMs", 300);
 
     private BorderPane root;
     private TableView<Book> bookTable;
     private ObservableList<Book> books;
     private final BooksDbInterface booksDb;
+    private final CatalogPager catalogPager;
+    private final IncrementalBookUpdater bookUpdater;
+    private final PauseTransition searchDebounce = new PauseTransition(Duration.millis(SEARCH_DEBOUNCE_MS));
+    private long searchGeneration;
 
     /**
      * Constructs the MainView with the provided database interface.
@@ -37,16 +47,35 @@ public class MainView {
     public MainView(BooksDbInterface booksDb) {
         this.booksDb = booksDb;
         root = new BorderPane();
+        BackgroundTasks.setFailureHandler(this::showFailure);
 
         MenuBar menuBar = new MenuBar();
         Menu fileMenu = new Menu("File");
+        MenuItem rebuildRatingsItem = new MenuItem("Rebuild Rating Summaries");
+        rebuildRatingsItem.setOnAction(e -> new BookController(booksDb).rebuildRatingSummariesInBackground(this::loadBooks));
+        MenuItem importItem = new MenuItem("Import Catalog...");
+        importItem.setOnAction(e -> showImportDialog());
+        MenuItem exportItem = new MenuItem("Export Catalog...");
+        exportItem.setOnAction(e -> showExportDialog());
+        MenuItem mergeAuthorsItem = new MenuItem("Merge Duplicate Authors");
+        mergeAuthorsItem.setOnAction(e -> new BookController(booksDb).deduplicateAuthorsInBackground(result -> loadBooks()));
+        // These jobs only know the collections of the normalized MongoDB schema.
+        boolean catalogJobs = new BookController(booksDb).supportsCatalogJobs();
+        importItem.setDisable(!catalogJobs);
+        exportItem.setDisable(!catalogJobs);
+        mergeAuthorsItem.setDisable(!catalogJobs);
+        fileMenu.getItems().addAll(importItem, exportItem, rebuildRatingsItem, mergeAuthorsItem);
         Menu helpMenu = new Menu("Help");
         menuBar.getMenus().addAll(fileMenu, helpMenu);
 
         TextField searchField = new TextField();
         searchField.setPromptText("Search...");
         Button searchButton = new Button("Search");
-        searchButton.setOnAction(e -> handleSearch(searchField.getText()));
+        searchButton.setOnAction(e -> handleSearch(searchField.getText(), true));
+        searchField.setOnAction(e -> handleSearch(searchField.getText(), true));
+        // Searches as the user types, once the text has not changed for books.search.debounceMs.
+        searchDebounce.setOnFinished(e -> handleSearch(searchField.getText(), false));
+        searchField.textProperty().addListener((observable, oldText, newText) -> searchDebounce.playFromStart());
 
         HBox searchBox = new HBox(10, searchField, searchButton);
         searchBox.setPadding(new Insets(10));
@@ -67,31 +96,22 @@ public class MainView {
         publicationDateColumn.setCellValueFactory(cellData -> cellData.getValue().publicationDateProperty());
 
         TableColumn<Book, String> authorsColumn = new TableColumn<>("Authors");
-        authorsColumn.setCellValueFactory(cellData -> {
-            StringBuilder authors = new StringBuilder();
-            for (Author author : cellData.getValue().getAuthors()) {
-                authors.append(author.toString()).append(", ");
-            }
-            return new ReadOnlyStringWrapper(authors.toString().replaceAll(", $", ""));
-        });
+        authorsColumn.setCellValueFactory(cellData -> cellData.getValue().authorsTextProperty());
 
         TableColumn<Book, String> ratingColumn = new TableColumn<>("Rating");
         ratingColumn.setCellValueFactory(cellData -> cellData.getValue().ratingProperty());
 
         TableColumn<Book, String> genresColumn = new TableColumn<>("Genres");
-        genresColumn.setCellValueFactory(cellData -> {
-            StringBuilder genres = new StringBuilder();
-            for (Genre genre : cellData.getValue().getGenres()) {
-                genres.append(genre.getName()).append(", ");
-            }
-            return new ReadOnlyStringWrapper(genres.toString().replaceAll(", $", ""));
-        });
+        genresColumn.setCellValueFactory(cellData -> cellData.getValue().genresTextProperty());
 
         bookTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
 
 
         bookTable.getColumns().addAll(idColumn, titleColumn, isbnColumn, publicationDateColumn, genresColumn, authorsColumn, ratingColumn);
 
+        RowUpdatePipeline rowUpdates = new RowUpdatePipeline();
+        catalogPager = new CatalogPager(bookTable, booksDb, rowUpdates);
+        bookUpdater = new IncrementalBookUpdater(booksDb, rowUpdates);
         loadBooks();
 
         Button addBookButton = new Button("Add Book");
@@ -108,85 +128,55 @@ public class MainView {
     }
 
     /**
-     * Loads the list of books into the table.
+     * Loads the books into the table page by page as the user scrolls.
      */
     private void loadBooks() {
-        BookController bookController = new BookController(booksDb);
+        searchGeneration++;
         books = FXCollections.observableArrayList();
+        bookTable.setItems(books);
+        bookUpdater.setRows(books, true, catalogPager::covers);
+        catalogPager.start(books);
+    }
 
-        bookController.getAllBooksInBackground(() -> {
-            bookTable.setItems(books);
-
-            AuthorController authorController = new AuthorController(booksDb);
-            GenreController genreController = new GenreController(booksDb);
-
-            for (Book book : books) {
-                authorController.getAuthorsForBookInBackground(book.getId(), () -> {
-                    ObservableList<Author> authors = FXCollections.observableArrayList(authorController.getAuthorsForBook(book.getId()));
-                    javafx.application.Platform.runLater(() -> {
-                        book.setAuthors(authors);
-                        bookTable.refresh();
-                    });
-                });
-
-                genreController.getGenresForBookInBackground(book.getId(), book.getGenres(), () -> {
-                    javafx.application.Platform.runLater(() -> {
-                        bookTable.refresh();
-                    });
-                });
-
-                new Thread(() -> {
-                    List<BookRating> ratings = bookController.getRatingsForBook(book.getId());
-                    javafx.application.Platform.runLater(() -> {
-                        if (!ratings.isEmpty()) {
-                            book.setRating(String.valueOf(ratings.get(0).getValue()));
-                        } else {
-                            book.setRating("N/A");
-                        }
-                        bookTable.refresh();
-                    });
-                }).start();
-            }
-        }, books);
+    /**
+     * Applies a change to a book, made by this or another client, to the table.
+     * May be called from any thread.
+     *
+     * @param change the change
+     */
+    public void onBookChanged(BookChange change) {
+        bookUpdater.onBookChanged(change);
     }
 
     /**
-     * Handles search functionality.
+     * Handles search functionality. Clearing the search goes back to the paged catalog.
+     * Starting a search cancels the previous one, and the generation counter makes sure
+     * that only the results of the latest search or catalog load reach the table.
+     * While the user types, words are matched by prefix; a submitted search uses the configured engine.
      *
      * @param searchTerm the term to search for
+     * @param submitted true if the search was submitted, false if it runs as the user types
      */
-    private void handleSearch(String searchTerm) {
-        Search search = new Search(booksDb);
-
-        new Thread(() -> {
-            List<Book> searchResults = search.searchBooks(searchTerm);
-
-            javafx.application.Platform.runLater(() -> {
-                books.clear();
-                books.addAll(searchResults);
-
-                AuthorController authorController = new AuthorController(booksDb);
-                GenreController genreController = new GenreController(booksDb);
-
-                for (Book book : books) {
-                    new Thread(() -> {
-                        List<Author> authors = authorController.getAuthorsForBook(book.getId());
-                        javafx.application.Platform.runLater(() -> {
-                            book.setAuthors(FXCollections.observableArrayList(authors));
-                            bookTable.refresh();
-                        });
-                    }).start();
-
-                    new Thread(() -> {
-                        List<Genre> genres = genreController.getGenresForBook(book.getId());
-                        javafx.application.Platform.runLater(() -> {
-                            book.setGenres(FXCollections.observableArrayList(genres));
-                            bookTable.refresh();
-                        });
-                    }).start();
-                }
-            });
-        }).start();
+    private void handleSearch(String searchTerm, boolean submitted) {
+        searchDebounce.stop();
+        if (searchTerm.isBlank()) {
+            loadBooks();
+            return;
+        }
+        long generation = ++searchGeneration;
+        catalogPager.stop();
+        bookUpdater.setRows(books, false, bookId -> false);
+        BookController bookController = new BookController(booksDb);
+        Consumer<List<Book>> onResults = results -> {
+            if (generation == searchGeneration && results != null) {
+                books.setAll(results);
+            }
+        };
+        if (submitted) {
+            bookController.searchBooksWithDetailsInBackground(searchTerm, onResults);
+        } else {
+            bookController.searchAsYouTypeInBackground(searchTerm, onResults);
+        }
     }
 
     /**
@@ -228,21 +218,11 @@ public class MainView {
         ListView<Genre> genreListView = new ListView<>();
         genreListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
-        // Hämta genrer från databasen eller använd fallback
+        // Hämta genrer från genrekatalogen
         GenreController genreController = new GenreController(booksDb);
         List<Genre> genres = genreController.getAllGenres();
-
-        if (genres.isEmpty()) {
-            System.out.println("No genres found in MongoDB. Using default genres.");
-            genres = List.of(
-                    new Genre(1, "Programming"),
-                    new Genre(2, "Science Fiction"),
-                    new Genre(3, "Fantasy"),
-                    new Genre(4, "Romance"),
-                    new Genre(5, "Mystery"),
-                    new Genre(6, "Horror"),
-                    new Genre(7, "Non-Fiction")
-            );
+        if (genres == null) {
+            genres = List.of();
         }
 
         // Sätt genrer i ListView
@@ -261,65 +241,51 @@ public class MainView {
 
         // Spara-knappens funktionalitet
         saveButton.setOnAction(e -> {
-            new Thread(() -> {
-                String title = titleField.getText();
-                String isbn = isbnField.getText();
-                String publicationDate = publicationDateField.getText();
-                String authorFirstName = authorFirstNameField.getText();
-                String authorLastName = authorLastNameField.getText();
-                String ratingValue = ratingField.getText();
-                ObservableList<Genre> selectedGenres = genreListView.getSelectionModel().getSelectedItems();
-
-                if (!title.isEmpty() && !isbn.isEmpty() && !publicationDate.isEmpty() &&
-                        !authorFirstName.isEmpty() && !authorLastName.isEmpty() && !selectedGenres.isEmpty() && !ratingValue.isEmpty()) {
-
-                    try {
-                        int rating = Integer.parseInt(ratingValue);
-                        if (rating < 1 || rating > 5) throw new NumberFormatException();
-
-                        BookController bookController = new BookController(booksDb);
-                        AuthorController authorController = new AuthorController(booksDb);
-
-                        Book book = new Book(0, isbn, title, publicationDate, ratingValue);
-                        bookController.addBookInBackground(book, () -> {
-                            int bookId = bookController.getLastInsertedBookId();
-
-                            Author author = new Author(0, authorFirstName, authorLastName);
-                            authorController.addAuthorInBackground(author, () -> {
-                                int authorId = authorController.getLastInsertedAuthorId();
-
-                                authorController.linkAuthorToBookInBackground(bookId, authorId, () -> {
-
-                                    for (Genre genre : selectedGenres) {
-                                        genreController.linkGenreToBookInBackground(bookId, genre.getId(), () -> {
-
-                                            bookController.addRatingToBook(bookId, rating);
-
-                                            javafx.application.Platform.runLater(() -> {
-                                                loadBooks();
-                                                dialog.close();
-                                            });
-                                        });
-                                    }
-                                });
-                            });
-                        });
-
-                    } catch (NumberFormatException ex) {
-                        javafx.application.Platform.runLater(() -> {
+            String title = titleField.getText();
+            String isbn = isbnField.getText();
+            String publicationDate = publicationDateField.getText();
+            String authorFirstName = authorFirstNameField.getText();
+            String authorLastName = authorLastNameField.getText();
+            String ratingValue = ratingField.getText();
+            List<Genre> selectedGenres = List.copyOf(genreListView.getSelectionModel().getSelectedItems());
+
+            if (title.isEmpty() || isbn.isEmpty() || publicationDate.isEmpty() ||
+                    authorFirstName.isEmpty() || authorLastName.isEmpty() || selectedGenres.isEmpty() || ratingValue.isEmpty()) {
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setContentText("All fields and at least one genre must be selected!");
+                alert.show();
+                return;
+            }
+
+            int rating;
+            try {
+                rating = Integer.parseInt(ratingValue);
+                if (rating < 1 || rating > 5) throw new NumberFormatException();
+            } catch (NumberFormatException ex) {
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setContentText("Please enter a valid rating between 1 and 5.");
+                alert.show();
+                return;
+            }
+
+            BookController bookController = new BookController(booksDb);
+            Book book = new Book(0, isbn, title, publicationDate, ratingValue);
+            Author author = new Author(0, authorFirstName, authorLastName);
+            List<Integer> genreIds = selectedGenres.stream().map(Genre::getId).toList();
+
+            saveButton.setDisable(true);
+            bookController.addBookWithDetailsAsync(book, List.of(author), genreIds, rating)
+                    .thenAcceptAsync(added -> {
+                        saveButton.setDisable(false);
+                        if (added == null) {
                             Alert alert = new Alert(Alert.AlertType.ERROR);
-                            alert.setContentText("Please enter a valid rating between 1 and 5.");
+                            alert.setContentText("The book could not be added.");
                             alert.show();
-                        });
-                    }
-                } else {
-                    javafx.application.Platform.runLater(() -> {
-                        Alert alert = new Alert(Alert.AlertType.ERROR);
-                        alert.setContentText("All fields and at least one genre must be selected!");
-                        alert.show();
-                    });
-                }
-            }).start();
+                            return;
+                        }
+                        bookUpdater.refresh(added.bookId());
+                        dialog.close();
+                    }, Platform::runLater);
         });
 
         // Avbryt-knappens funktionalitet
@@ -332,6 +298,51 @@ public class MainView {
     }
 
 
+    /**
+     * Lets the user pick a CSV or NDJSON file and imports it in the background.
+     */
+    private void showImportDialog() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Import Catalog");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Catalog files", "*.csv", "*.ndjson", "*.jsonl"));
+        File file = fileChooser.showOpenDialog(root.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        BookController bookController = new BookController(booksDb);
+        bookController.importCatalogInBackground(file.toPath(), progress -> {
+            Alert alert = new Alert(progress != null ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+            alert.setContentText(progress != null
+                    ? "Import finished: " + progress + "."
+                    : "The import failed. Import the same file again to resume it.");
+            alert.show();
+            loadBooks();
+        });
+    }
+
+    /**
+     * Lets the user pick a file and exports the catalog to it in the background.
+     */
+    private void showExportDialog() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Catalog");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv", "*.csv.gz"),
+                new FileChooser.ExtensionFilter("NDJSON", "*.ndjson", "*.ndjson.gz"));
+        File file = fileChooser.showSaveDialog(root.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        BookController bookController = new BookController(booksDb);
+        bookController.exportCatalogInBackground(file.toPath(), exported -> {
+            Alert alert = new Alert(exported >= 0 ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+            alert.setContentText(exported >= 0 ? "Exported " + exported + " books." : "The export failed.");
+            alert.show();
+        });
+    }
+
     /**
      * Deletes the selected book from the database.
      */
@@ -351,6 +362,17 @@ public class MainView {
         }
     }
 
+    /**
+     * Tells the user that a background database operation failed.
+     *
+     * @param error the exception thrown by the operation
+     */
+    private void showFailure(Throwable error) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setContentText("The operation failed: " + error.getMessage());
+        alert.show();
+    }
+
     /**
      * Retrieves the root BorderPane for the MainView.
      *
@@ -0,0 +1,72 @@
+package kth.books.view;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gathers changes to the rows of the book table and applies them together once per JavaFX pulse.
+ * <p>
+ * Background work finishing in quick succession, such as several batches of details arriving while
+ * the user scrolls, would otherwise each change the rows in its own pass. Here the changes wait in a
+ * queue until the next frame is about to be rendered, when an {@link AnimationTimer} applies all of
+ * them, so the table lays out its cells once per frame however many changes arrived. The rows are bound
+ * to the cells through their properties, so no full table refresh is needed. The timer only runs while
+ * there are changes to apply.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+public class RowUpdatePipeline {
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            applyPending();
+        }
+    };
+
+    /**
+     * Queues a change to the rows, to be applied on the JavaFX thread at the next pulse.
+     * May be called from any thread.
+     *
+     * @param update the change
+     */
+    public void submit(Runnable update) {
+        pending.add(update);
+        startTimer();
+    }
+
+    /**
+     * Applies all queued changes and stops the timer once the queue is empty.
+     */
+    private void applyPending() {
+        Runnable update;
+        while ((update = pending.poll()) != null) {
+            update.run();
+        }
+        timer.stop();
+        running.set(false);
+        // A change queued between emptying the queue and stopping the timer must not wait for the next one.
+        if (!pending.isEmpty()) {
+            startTimer();
+        }
+    }
+
+    /**
+     * Starts the timer on the JavaFX thread unless it is already running.
+     */
+    private void startTimer() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        if (Platform.isFxApplicationThread()) {
+            timer.start();
+        } else {
+            Platform.runLater(timer::start);
+        }
+    }
+}
@@ -6,6 +6,8 @@ module kth.databaslabb2 {
     requires java.desktop;
     requires org.mongodb.bson;
     requires java.sql;
+    requires java.management;
+    requires java.logging;
 
     opens kth.databaslabb2 to javafx.fxml;
     exports kth.books;
@@ -0,0 +1,75 @@
+package kth.books;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getPercentileNanos(99));
+    }
+
+    @Test
+    void smallValuesHaveTheirOwnBuckets() {
+        for (long nanos = 0; nanos < 8; nanos++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(nanos);
+            histogram.record(1_000_000);
+            assertEquals(nanos, histogram.getPercentileNanos(50));
+        }
+    }
+
+    @Test
+    void percentilesAreTheUpperBoundOfTheBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000);
+        histogram.record(100_000);
+        // 1000 lies in the bucket from 960 to 1023: 2^9 split into eight buckets of 64.
+        assertEquals(1_023, histogram.getPercentileNanos(50));
+        assertEquals(100_000, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    void percentilesAreWithinAnEighthOfTheValue() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            long nanos = 8 + (random.nextLong() >>> (1 + random.nextInt(62)));
+            LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(nanos);
+            histogram.record(Long.MAX_VALUE);
+            long estimate = histogram.getPercentileNanos(50);
+            assertTrue(estimate >= nanos && estimate - nanos <= nanos / 8, nanos + " was estimated as " + estimate);
+        }
+    }
+
+    @Test
+    void estimatesNeverExceedTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000);
+        assertEquals(1_000, histogram.getPercentileNanos(50));
+        assertEquals(1_000, histogram.getMaxNanos());
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(10);
+        assertEquals(2, histogram.getCount());
+        assertEquals(5, histogram.getMeanNanos());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+}
@@ -0,0 +1,53 @@
+package kth.books;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Tests for the query shapes of {@link SlowQueryLog}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class SlowQueryLogTest {
+
+    @Test
+    void queriesDifferingOnlyInValuesHaveTheSameShape() {
+        String first = shape("{find: 'Book', filter: {book_id: {$in: [1, 2, 3]}, title: 'Dune'}, limit: 10}");
+        String second = shape("{find: 'Book', filter: {book_id: {$in: [7]}, title: 'Emma'}, limit: 50, skip: 20}");
+        assertEquals(first, second);
+        assertEquals("{\"find\": \"Book\", \"filter\": {\"book_id\": {\"$in\": \"?\"}, \"title\": \"?\"}}", first);
+    }
+
+    @Test
+    void regularExpressionsAreReplaced() {
+        assertEquals(shape("{find: 'Book', filter: {title: {$regex: /^Drag/i}}}"),
+                shape("{find: 'Book', filter: {title: {$regex: /C\\+\\+/}}}"));
+    }
+
+    @Test
+    void filterFieldsSortAndCollectionAreKept() {
+        String byTitle = shape("{find: 'Book', filter: {title: 'Dune'}, sort: {book_id: 1}}");
+        assertNotEquals(byTitle, shape("{find: 'Book', filter: {ISBN: 'Dune'}, sort: {book_id: 1}}"));
+        assertNotEquals(byTitle, shape("{find: 'Book', filter: {title: 'Dune'}, sort: {title: 1}}"));
+        assertNotEquals(byTitle, shape("{find: 'Author', filter: {title: 'Dune'}, sort: {book_id: 1}}"));
+    }
+
+    @Test
+    void pipelinesKeepStageOptionsAndFieldPaths() {
+        String shape = shape("{aggregate: 'Book', pipeline: ["
+                + "{$match: {book_id: {$gt: 100}}},"
+                + "{$lookup: {from: 'BookAuthor', localField: 'book_id', foreignField: 'book_id', as: 'links'}},"
+                + "{$project: {title: 1, first: {$arrayElemAt: ['$links', 0]}}}], cursor: {}}");
+        assertEquals("{\"aggregate\": \"Book\", \"pipeline\": ["
+                + "{\"$match\": {\"book_id\": {\"$gt\": \"?\"}}}, "
+                + "{\"$lookup\": {\"from\": \"BookAuthor\", \"localField\": \"book_id\", \"foreignField\": \"book_id\", \"as\": \"links\"}}, "
+                + "{\"$project\": {\"title\": 1, \"first\": {\"$arrayElemAt\": [\"$links\", 0]}}}]}", shape);
+    }
+
+    private static String shape(String command) {
+        return SlowQueryLog.shapeOf(BsonDocument.parse(command));
+    }
+}
@@ -0,0 +1,39 @@
+package kth.books.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Tests for the name keys of {@link AuthorResolver}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class AuthorResolverTest {
+
+    @Test
+    void caseAccentsAndWhitespaceAreIgnored() {
+        assertEquals("jose|garcia", AuthorResolver.nameKey("José", "García"));
+        assertEquals(AuthorResolver.nameKey("José", "García"), AuthorResolver.nameKey("  jose ", "GARCIA"));
+        assertEquals(AuthorResolver.nameKey("Ursula K.", "Le Guin"), AuthorResolver.nameKey("ursula  k.", "le\tguin"));
+    }
+
+    @Test
+    void charactersWithoutASingleLowerCaseAreFolded() {
+        assertEquals(AuthorResolver.nameKey("Hans", "Strauss"), AuthorResolver.nameKey("Hans", "Strauß"));
+    }
+
+    @Test
+    void firstAndLastNameAreKeptApart() {
+        assertNotEquals(AuthorResolver.nameKey("Anne Marie", "Smith"), AuthorResolver.nameKey("Anne", "Marie Smith"));
+        assertNotEquals(AuthorResolver.nameKey("Jose", "Garcia"), AuthorResolver.nameKey("Jose", "Garcia Lopez"));
+    }
+
+    @Test
+    void missingNamesAreEmpty() {
+        assertEquals("|", AuthorResolver.nameKey(null, null));
+        assertEquals("|plato", AuthorResolver.nameKey(null, "Plato"));
+        assertEquals(AuthorResolver.nameKey("", "Plato"), AuthorResolver.nameKey(null, "Plato"));
+    }
+}
@@ -0,0 +1,56 @@
+package kth.books.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that {@link CachingBooksDb} hands every caller its own model objects, so that changing a returned
+ * object cannot change what the cache returns to others.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class CachingBooksDbTest {
+    private CachingBooksDb booksDb;
+    private int bookId;
+
+    @BeforeEach
+    void setUp() {
+        booksDb = new CachingBooksDb(new InMemoryBooksDb());
+        bookId = booksDb.addBookWithDetails(new Book(0, "1", "Cached", "2020-01-01", ""),
+                List.of(new Author(0, "Ann", "Author")), List.of(2), 4).bookId();
+    }
+
+    @Test
+    void returnedAuthorsAreCopies() {
+        booksDb.getAuthorsForBook(bookId).get(0).setLastName("Changed");
+        assertEquals("Author", booksDb.getAuthorsForBook(bookId).get(0).getLastName());
+    }
+
+    @Test
+    void returnedGenresAreCopies() {
+        booksDb.getGenresForBook(bookId).get(0).setName("Changed");
+        booksDb.getAllGenres().get(0).setName("Changed");
+        assertEquals("Science Fiction", booksDb.getGenresForBook(bookId).get(0).getName());
+        assertEquals("Programming", booksDb.getAllGenres().get(0).getName());
+    }
+
+    @Test
+    void returnedRatingsAreCopies() {
+        booksDb.getRatingsForBook(bookId).get(0).setValue(1);
+        assertEquals(4, booksDb.getRatingsForBook(bookId).get(0).getValue());
+    }
+
+    @Test
+    void returnedSearchResultsAreCopies() {
+        booksDb.searchBooksWithDetails("Cached").get(0).setTitle("Changed");
+        booksDb.searchBooks("Cached").get(0).setTitle("Changed");
+        assertEquals("Cached", booksDb.searchBooksWithDetails("Cached").get(0).getTitle());
+        assertEquals("Cached", booksDb.searchBooks("Cached").get(0).getTitle());
+        assertTrue(booksDb.getCacheStats().get("rowSearches").hits() > 0);
+    }
+}
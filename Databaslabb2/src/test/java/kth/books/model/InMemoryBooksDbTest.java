@@ -0,0 +1,174 @@
+package kth.books.model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that {@link InMemoryBooksDb} follows the same contract as {@link BooksDbImpl}, so that it can
+ * stand in for the database in tests, benchmarks and demos.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class InMemoryBooksDbTest {
+    private InMemoryBooksDb booksDb;
+
+    @BeforeEach
+    void setUp() {
+        booksDb = new InMemoryBooksDb();
+    }
+
+    @Test
+    void addBookWithDetailsStoresAuthorsGenresAndRating() {
+        Book book = new Book(0, "9780132350884", "Clean Code", "2008-08-01", "");
+        AddedBook added = booksDb.addBookWithDetails(book,
+                List.of(new Author(0, "Robert", "Martin")), List.of(1, 7), 4);
+
+        assertEquals(added.bookId(), book.getId());
+        assertEquals(1, added.authorIds().size());
+        assertTrue(added.ratingId() > 0);
+
+        BookRow row = booksDb.getBookRowsWithDetails(List.of(added.bookId())).get(0);
+        assertEquals("Clean Code", row.title());
+        assertEquals(List.of(new AuthorRef(added.authorIds().get(0), "Robert", "Martin")), row.authors());
+        assertEquals(List.of(new GenreRef(1, "Programming"), new GenreRef(7, "Non-Fiction")), row.genres());
+        assertEquals(1, row.rating().count());
+        assertEquals(4, row.rating().latest());
+    }
+
+    @Test
+    void anAuthorGivenTwiceIsLinkedOnce() {
+        AddedBook added = booksDb.addBookWithDetails(new Book(0, "1", "Twice", "2020-01-01", ""),
+                List.of(new Author(0, "Ann", "Author"), new Author(0, "ann", "AUTHOR"), new Author(0, "Bo", "Writer")),
+                List.of(), 0);
+
+        assertEquals(2, added.authorIds().size());
+        assertEquals(2, booksDb.getAuthorsForBook(added.bookId()).size());
+        assertEquals(2, booksDb.getBookRowsWithDetails(List.of(added.bookId())).get(0).authors().size());
+    }
+
+    @Test
+    void authorsAreFoundByNormalizedName() {
+        int first = booksDb.findOrCreateAuthor(new Author(0, "José", "García"));
+        int second = booksDb.findOrCreateAuthor(new Author(0, " jose ", "GARCIA"));
+        int other = booksDb.findOrCreateAuthor(new Author(0, "Jose", "Garcia Lopez"));
+
+        assertEquals(first, second);
+        assertTrue(other != first);
+        assertEquals(other, booksDb.getLastInsertedAuthorId());
+    }
+
+    @Test
+    void ratingsUpdateTheSummaryAndRebuildGivesTheSameSummary() {
+        int bookId = booksDb.addBook(new Book(0, "1", "Rated", "2020-01-01", ""));
+        booksDb.addRatingToBook(bookId, 2);
+        booksDb.addRatingToBook(bookId, 5);
+        booksDb.addRatingToBook(bookId, 3);
+
+        RatingSummary summary = booksDb.getRatingSummary(bookId);
+        assertEquals(3, summary.count());
+        assertEquals(10, summary.sum());
+        assertEquals(2, summary.min());
+        assertEquals(5, summary.max());
+        assertEquals(3, summary.latest());
+        assertEquals(3, booksDb.getRatingsForBook(bookId).size());
+
+        booksDb.rebuildRatingSummaries();
+        assertEquals(summary, booksDb.getRatingSummary(bookId));
+    }
+
+    @Test
+    void pagesVisitEveryBookOnceInIdOrder() {
+        for (int i = 1; i <= 25; i++) {
+            booksDb.addBook(new Book(0, "isbn" + i, "Book " + i, "2000-01-01", ""));
+        }
+        booksDb.deleteBook(10);
+        booksDb.deleteBook(25);
+
+        List<Integer> seen = new ArrayList<>();
+        int afterBookId = 0;
+        for (List<BookRow> page = booksDb.getBookRowsAfter(afterBookId, 4); !page.isEmpty();
+             page = booksDb.getBookRowsAfter(afterBookId, 4)) {
+            for (BookRow row : page) {
+                seen.add(row.id());
+                afterBookId = row.id();
+            }
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 1; i <= 24; i++) {
+            if (i != 10) {
+                expected.add(i);
+            }
+        }
+        assertEquals(expected, seen);
+        assertEquals(23, booksDb.getAllBooks().size());
+        assertEquals(25, booksDb.getLastInsertedBookId());
+    }
+
+    @Test
+    void deletedBooksLoseTheirDetails() {
+        AddedBook added = booksDb.addBookWithDetails(new Book(0, "1", "Gone", "2020-01-01", ""),
+                List.of(new Author(0, "Ann", "Author")), List.of(3), 5);
+        booksDb.deleteBook(added.bookId());
+
+        assertTrue(booksDb.getBooksWithDetails(List.of(added.bookId())).isEmpty());
+        assertTrue(booksDb.getAuthorsForBook(added.bookId()).isEmpty());
+        assertTrue(booksDb.getGenresForBook(added.bookId()).isEmpty());
+        assertTrue(booksDb.getRatingsForBook(added.bookId()).isEmpty());
+        assertTrue(booksDb.searchBooks("Gone").isEmpty());
+    }
+
+    @Test
+    void regexSearchMatchesTheTermLiterallyAnywhere() {
+        booksDb.addBook(new Book(0, "111", "The C++ Programming Language", "1985-10-01", ""));
+        booksDb.addBook(new Book(0, "222", "Dragons (Illustrated)", "2001-01-01", ""));
+
+        assertEquals(List.of("The C++ Programming Language"), titles(booksDb.searchBooks("c++", SearchMode.REGEX, 0)));
+        assertEquals(List.of("Dragons (Illustrated)"), titles(booksDb.searchBooks("agons (", SearchMode.REGEX, 0)));
+        assertEquals(List.of("The C++ Programming Language"), titles(booksDb.searchBooks("1985", SearchMode.REGEX, 0)));
+    }
+
+    @Test
+    void prefixSearchMatchesTheStartOfTitleWords() {
+        booksDb.addBook(new Book(0, "978000", "Book about Dragons", "2001-01-01", ""));
+        booksDb.addBook(new Book(0, "123978", "Snapdragon", "2002-01-01", ""));
+
+        assertEquals(List.of("Book about Dragons"), titles(booksDb.searchBooks("drag", SearchMode.PREFIX, 0)));
+        assertEquals(List.of("Book about Dragons"), titles(booksDb.searchBooks("978", SearchMode.PREFIX, 0)));
+        assertTrue(booksDb.searchBooks("ragon", SearchMode.PREFIX, 0).isEmpty());
+    }
+
+    @Test
+    void textSearchRanksTitleMatchesFirstAndHonoursTheLimit() {
+        booksDb.addBook(new Book(0, "java-1", "Cooking", "2000-01-01", ""));
+        booksDb.addBook(new Book(0, "2", "Java in Action", "2000-01-01", ""));
+        booksDb.addBook(new Book(0, "3", "Gardening", "2000-01-01", ""));
+
+        assertEquals(List.of("Java in Action", "Cooking"), titles(booksDb.searchBooks("java", SearchMode.TEXT, 0)));
+        assertEquals(List.of("Java in Action"), titles(booksDb.searchBooks("java", SearchMode.TEXT, 1)));
+    }
+
+    @Test
+    void addedGenresGetTheNextFreeId() {
+        Genre genre = new Genre(0, "Poetry");
+        int genreId = booksDb.addGenre(genre);
+
+        assertEquals(GenreDictionary.DEFAULT_GENRES.size() + 1, genreId);
+        assertEquals(genreId, genre.getId());
+        assertEquals(GenreDictionary.DEFAULT_GENRES.size() + 1, booksDb.getAllGenres().size());
+    }
+
+    private static List<String> titles(List<Book> books) {
+        List<String> titles = new ArrayList<>();
+        for (Book book : books) {
+            titles.add(book.getTitle());
+        }
+        return titles;
+    }
+}
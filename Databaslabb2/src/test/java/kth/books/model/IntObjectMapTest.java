@@ -0,0 +1,105 @@
+package kth.books.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link IntObjectMap}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class IntObjectMapTest {
+
+    @Test
+    void putGetAndReplace() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        assertNull(map.put(1, "one"));
+        assertEquals("one", map.put(1, "uno"));
+        assertEquals("uno", map.get(1));
+        assertNull(map.get(2));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void nullValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IntObjectMap<String>().put(1, null));
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        IntObjectMap<Integer> map = new IntObjectMap<>(4);
+        for (int key = -1_000; key < 1_000; key++) {
+            map.put(key, key * 2);
+        }
+        assertEquals(2_000, map.size());
+        for (int key = -1_000; key < 1_000; key++) {
+            assertEquals(key * 2, map.get(key));
+        }
+    }
+
+    @Test
+    void removeKeepsDisplacedKeysReachable() {
+        // Filled just below the load factor, so that many keys sit away from their home slot.
+        IntObjectMap<Integer> map = new IntObjectMap<>(16);
+        int capacity = 32;
+        int count = (int) (capacity * 0.6f) - 1;
+        for (int key = 0; key < count; key++) {
+            map.put(key * 32, key);
+        }
+        for (int key = 0; key < count; key += 2) {
+            assertEquals(key, map.remove(key * 32));
+        }
+        for (int key = 0; key < count; key++) {
+            assertEquals(key % 2 == 0 ? null : Integer.valueOf(key), map.get(key * 32));
+        }
+        assertEquals(count / 2, map.size());
+        assertNull(map.remove(0));
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        IntObjectMap<Integer> map = new IntObjectMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = 0; key < 2_000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    void copyKeysAndForEachVisitEveryEntry() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        map.put(3, "c");
+        map.put(1, "a");
+        map.put(2, "b");
+        map.remove(2);
+
+        int[] keys = new int[map.size() + 1];
+        assertEquals(3, map.copyKeys(keys, 1));
+        assertEquals(4, keys[1] + keys[2]);
+
+        Map<Integer, String> entries = new HashMap<>();
+        map.forEach(entries::put);
+        assertEquals(Map.of(1, "a", 3, "c"), entries);
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(1));
+    }
+}
@@ -0,0 +1,65 @@
+package kth.books.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link SortedIntSet}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class SortedIntSetTest {
+
+    @Test
+    void valuesAddedOutOfOrderAreSorted() {
+        SortedIntSet set = new SortedIntSet();
+        assertTrue(set.add(5));
+        assertTrue(set.add(1));
+        assertTrue(set.add(3));
+        assertFalse(set.add(3));
+        assertArrayEquals(new int[]{1, 3, 5}, set.toArray());
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    void afterReturnsTheFollowingValuesUpToTheLimit() {
+        SortedIntSet set = new SortedIntSet();
+        for (int value = 2; value <= 20; value += 2) {
+            set.add(value);
+        }
+        assertArrayEquals(new int[]{2, 4, 6}, set.after(0, 3));
+        assertArrayEquals(new int[]{8, 10}, set.after(6, 2));
+        assertArrayEquals(new int[]{8, 10}, set.after(7, 2));
+        assertArrayEquals(new int[]{20}, set.after(18, 5));
+        assertArrayEquals(new int[0], set.after(20, 5));
+        assertArrayEquals(new int[0], set.after(0, 0));
+    }
+
+    @Test
+    void matchesTreeSetUnderRandomOperations() {
+        SortedIntSet set = new SortedIntSet();
+        TreeSet<Integer> expected = new TreeSet<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(1_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+        int[] values = new int[expected.size()];
+        int i = 0;
+        for (int value : expected) {
+            values[i++] = value;
+        }
+        assertArrayEquals(values, set.toArray());
+    }
+}
@@ -0,0 +1,84 @@
+package kth.books.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for {@link StripedIntMap}.
+ * @author Majd & Majid
+ * @version 1.0
+ */
+class StripedIntMapTest {
+
+    @Test
+    void putGetAndRemove() {
+        StripedIntMap<String> map = new StripedIntMap<>();
+        map.put(7, "seven");
+        assertEquals("seven", map.get(7));
+        assertEquals("seven", map.remove(7));
+        assertNull(map.get(7));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void updateReturningNullRemovesTheKey() {
+        StripedIntMap<Integer> map = new StripedIntMap<>();
+        assertEquals(1, map.update(5, count -> count == null ? 1 : count + 1));
+        assertEquals(2, map.update(5, count -> count == null ? 1 : count + 1));
+        assertNull(map.update(5, count -> null));
+        assertNull(map.get(5));
+    }
+
+    @Test
+    void keysCoverEveryStripe() {
+        StripedIntMap<Integer> map = new StripedIntMap<>();
+        for (int key = 1; key <= 1_000; key++) {
+            map.put(key, key);
+        }
+        int[] keys = map.keys();
+        Arrays.sort(keys);
+        assertArrayEquals(IntStream.rangeClosed(1, 1_000).toArray(), keys);
+        assertEquals(1_000, map.size());
+
+        long[] sum = new long[1];
+        map.forEach((key, value) -> sum[0] += value);
+        assertEquals(500_500, sum[0]);
+    }
+
+    @Test
+    void concurrentUpdatesAreNotLost() throws Exception {
+        StripedIntMap<Integer> map = new StripedIntMap<>();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                writers.add(threads.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        map.update(i % 64, count -> count == null ? 1 : count + 1);
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        long total = 0;
+        for (int key = 0; key < 64; key++) {
+            total += map.get(key);
+        }
+        assertEquals(80_000, total);
+    }
+}